@@ -0,0 +1,108 @@
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Benchmark of the any-of and all-of ingredient queries on the Recipe schema, up to 1M ingredient links,
+ * results are written to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IngredientIndexBenchmark {
+    private static final String TAG = "IngredientIndexBench";
+    private static final int INGREDIENTS_PER_RECIPE = 5;
+    private static final int[] LINKS = {10000, 100000, 1000000};
+    private static final int VOCABULARY = 2000;
+    private static final int RUNS = 5;
+
+    private File file;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        file = new File(context.getCacheDir(), "ingredient_index_benchmark.db");
+        SQLiteDatabase.deleteDatabase(file);
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        // The schema of the app, without touching its Database
+        new RecipeDBAdaptor.DBHelper(context).onCreate(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void queryLatency() {
+        int recipes = 0;
+        for (int links : LINKS) {
+            recipes = fill(recipes, links / INGREDIENTS_PER_RECIPE);
+            // Two staples, then two of the spread ingredients
+            String[] staples = {"ingredient 1", "ingredient 2"};
+            String[] spread = {"ingredient 1999", "ingredient 1998"};
+            Log.i(TAG, links + " links: staples any-of " + median(staples, false) / 1000 + " us, all-of "
+                    + median(staples, true) / 1000 + " us, spread any-of " + median(spread, false) / 1000 + " us, all-of "
+                    + median(spread, true) / 1000 + " us");
+        }
+    }
+
+    private int fill(int from, int to) {
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + RecipeDBAdaptor.DATABASE_TABLE + "("
+                + RecipeDBAdaptor.KEY_TITLE + ", " + RecipeDBAdaptor.KEY_INGREDIENTS + ", " + RecipeDBAdaptor.KEY_STEPS + ", "
+                + RecipeDBAdaptor.KEY_TYPE_ID + ") VALUES (?, '', '', 1)");
+        StatementCache statementCache = new StatementCache(db);
+        IngredientIndex ingredientIndex = new IngredientIndex(statementCache);
+        db.beginTransaction();
+        try {
+            for (int i = from; i < to; i++) {
+                insert.bindString(1, "Recipe " + i);
+                long id = insert.executeInsert();
+                // One of 20 staples, used by 5% of the recipes each, then ingredients spread over the whole vocabulary
+                StringBuilder ingredients = new StringBuilder("- Ingredient ").append(i % 20).append('\n');
+                for (int j = 1; j < INGREDIENTS_PER_RECIPE; j++) {
+                    ingredients.append("- Ingredient ").append((i * 7919L + j * 104729L) % VOCABULARY).append('\n');
+                }
+                ingredientIndex.index(id, ingredients.toString());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            statementCache.close();
+        }
+        return to;
+    }
+
+    private long median(String[] names, boolean all) {
+        String selection = RecipeDBAdaptor.ingredientSelection(names.length, all);
+        long[] times = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = db.query(RecipeDBAdaptor.DATABASE_TABLE, new String[]{RecipeDBAdaptor.KEY_ID, RecipeDBAdaptor.KEY_TITLE},
+                    selection, names, null, null, RecipeDBAdaptor.KEY_TITLE + ", " + RecipeDBAdaptor.KEY_ID);
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+            cursor.close();
+            times[run] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
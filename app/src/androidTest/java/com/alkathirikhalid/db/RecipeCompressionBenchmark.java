@@ -0,0 +1,156 @@
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of plain against compressed ingredients and steps: database size, insert time and the latency of
+ * reading one recipe by id, results are written to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeCompressionBenchmark {
+    private static final String TAG = "RecipeCompressionBench";
+    private static final int RECIPES = 5000;
+    private static final int READS = 2000;
+    private static final String[] WORDS = {"flour", "sugar", "butter", "eggs", "milk", "salt", "pepper", "garlic",
+            "onion", "olive oil", "tomato", "cream", "cinnamon", "vanilla", "lemon", "chicken", "rice", "basil"};
+    private static final String[] ACTIONS = {"Preheat the oven to 180 degrees", "Whisk the eggs with the sugar",
+            "Stir in the flour until smooth", "Simmer over a low heat for 20 minutes", "Season to taste with salt and pepper",
+            "Pour into a buttered pan", "Bake until golden brown", "Leave to cool before serving"};
+
+    private File file;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        file = new File(context.getCacheDir(), "recipe_compression_benchmark.db");
+        SQLiteDatabase.deleteDatabase(file);
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("CREATE TABLE recipe_plain(_id INTEGER PRIMARY KEY, title TEXT NOT NULL, ingredients NOT NULL, steps NOT NULL)");
+        db.execSQL("CREATE TABLE recipe_compressed(_id INTEGER PRIMARY KEY, title TEXT NOT NULL, ingredients NOT NULL, steps NOT NULL)");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void sizeAndDecodeLatency() {
+        Random random = new Random(42);
+        String[] ingredients = new String[RECIPES];
+        String[] steps = new String[RECIPES];
+        long textBytes = 0;
+        for (int i = 0; i < RECIPES; i++) {
+            ingredients[i] = ingredients(random);
+            steps[i] = steps(random);
+            textBytes += ingredients[i].length() + steps[i].length();
+        }
+        long plainInsert = fill("recipe_plain", ingredients, steps, false);
+        long plainBytes = tableBytes("recipe_plain");
+        long compressedInsert = fill("recipe_compressed", ingredients, steps, true);
+        long compressedBytes = tableBytes("recipe_compressed");
+
+        long plainRead = medianRead("recipe_plain", ingredients, steps, random);
+        long compressedRead = medianRead("recipe_compressed", ingredients, steps, random);
+
+        Log.i(TAG, RECIPES + " recipes, " + textBytes / RECIPES + " chars of ingredients and steps on average");
+        Log.i(TAG, "size: plain " + plainBytes / 1024 + " KB, compressed " + compressedBytes / 1024 + " KB ("
+                + compressedBytes * 100 / plainBytes + "%)");
+        Log.i(TAG, "insert: plain " + plainInsert / 1000000 + " ms, compressed " + compressedInsert / 1000000 + " ms");
+        Log.i(TAG, "read by id: plain " + plainRead / 1000 + " us, compressed " + compressedRead / 1000 + " us (median)");
+    }
+
+    private long fill(String table, String[] ingredients, String[] steps, boolean compressed) {
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + table + "(_id, title, ingredients, steps) VALUES (?, ?, ?, ?)");
+        long start = SystemClock.elapsedRealtimeNanos();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ingredients.length; i++) {
+                statement.bindLong(1, i + 1);
+                statement.bindString(2, "Recipe " + i);
+                bind(statement, 3, ingredients[i], compressed);
+                bind(statement, 4, steps[i], compressed);
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private static void bind(SQLiteStatement statement, int index, String text, boolean compressed) {
+        byte[] encoded = compressed ? RecipeCodec.encode(text) : null;
+        if (encoded != null) {
+            statement.bindBlob(index, encoded);
+        } else {
+            statement.bindString(index, text);
+        }
+    }
+
+    private long tableBytes(String table) {
+        // Both tables share one file, so compare the stored payload rather than page counts
+        return DatabaseUtils.longForQuery(db, "SELECT SUM(length(title) + length(ingredients) + length(steps)) FROM " + table, null);
+    }
+
+    private long medianRead(String table, String[] ingredients, String[] steps, Random random) {
+        long[] times = new long[READS];
+        for (int read = 0; read < READS; read++) {
+            int i = random.nextInt(ingredients.length);
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = new DecodingCursor(db.rawQuery("SELECT ingredients, steps FROM " + table + " WHERE _id = ?",
+                    new String[]{String.valueOf(i + 1)}));
+            try {
+                cursor.moveToFirst();
+                String readIngredients = cursor.getString(0);
+                String readSteps = cursor.getString(1);
+                times[read] = SystemClock.elapsedRealtimeNanos() - start;
+                assertEquals(ingredients[i], readIngredients);
+                assertEquals(steps[i], readSteps);
+            } finally {
+                cursor.close();
+            }
+        }
+        Arrays.sort(times);
+        return times[READS / 2];
+    }
+
+    private static String ingredients(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0, count = 5 + random.nextInt(15); i < count; i++) {
+            text.append("- ").append(1 + random.nextInt(500)).append(" g ").append(WORDS[random.nextInt(WORDS.length)]).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String steps(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0, count = 5 + random.nextInt(30); i < count; i++) {
+            text.append(i + 1).append(". ").append(ACTIONS[random.nextInt(ACTIONS.length)]).append(", then ")
+                    .append(WORDS[random.nextInt(WORDS.length)]).append(".\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of the type filter before (LIKE on a free text type column) and after
+ * (equality on an indexed type id) the Recipe Type Table, results are written to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeFilterBenchmark {
+    private static final String TAG = "RecipeFilterBenchmark";
+    private static final String[] TYPES = {"Vegetarian", "Fast Food", "Healthy", "No-Cook", "Make Ahead"};
+    private static final int[] SIZES = {10000, 100000, 1000000};
+    private static final int RUNS = 5;
+
+    private File file;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        file = new File(context.getCacheDir(), "recipe_filter_benchmark.db");
+        SQLiteDatabase.deleteDatabase(file);
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("CREATE TABLE recipe_type(_id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+        for (int i = 0; i < TYPES.length; i++) {
+            db.execSQL("INSERT INTO recipe_type(_id, name) VALUES (?, ?)", new Object[]{i + 1, TYPES[i]});
+        }
+        db.execSQL("CREATE TABLE recipe_text(_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, type TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE recipe_id(_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL, type_id INTEGER NOT NULL REFERENCES recipe_type(_id))");
+        db.execSQL("CREATE INDEX recipe_id_type_id_idx ON recipe_id(type_id)");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void filterLatency() {
+        int rows = 0;
+        for (int size : SIZES) {
+            fill(rows, size);
+            rows = size;
+            long before = median("SELECT _id, title FROM recipe_text WHERE type LIKE ?", "%Healthy%", size);
+            long after = median("SELECT _id, title FROM recipe_id WHERE type_id = ?", "3", size);
+            Log.i(TAG, size + " rows: LIKE " + before / 1000 + " us, indexed type_id " + after / 1000 + " us");
+        }
+    }
+
+    private void fill(int from, int to) {
+        SQLiteStatement text = db.compileStatement("INSERT INTO recipe_text(title, type) VALUES (?, ?)");
+        SQLiteStatement id = db.compileStatement("INSERT INTO recipe_id(title, type_id) VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = from; i < to; i++) {
+                int type = i % TYPES.length;
+                text.bindString(1, "Recipe " + i);
+                text.bindString(2, TYPES[type]);
+                text.executeInsert();
+                id.bindString(1, "Recipe " + i);
+                id.bindLong(2, type + 1);
+                id.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            text.close();
+            id.close();
+        }
+    }
+
+    private long median(String sql, String arg, int size) {
+        long[] times = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = db.rawQuery(sql, new String[]{arg});
+            int count = 0;
+            while (cursor.moveToNext()) {
+                count++;
+            }
+            cursor.close();
+            times[run] = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(size / TYPES.length, count);
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
@@ -0,0 +1,86 @@
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of mapping Cursor rows to Recipes, looking the column indexes up on every row against resolving
+ * them once in a RecipeMapper, results are written to logcat. The rows are held in memory so only the mapping is timed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeMapperBenchmark {
+    private static final String TAG = "RecipeMapperBenchmark";
+    private static final int ROWS = 100000;
+    private static final int RUNS = 7;
+    private static final String[] COLUMNS = {RecipeDBAdaptor.KEY_ID, RecipeDBAdaptor.KEY_TITLE, RecipeDBAdaptor.KEY_INGREDIENTS,
+            RecipeDBAdaptor.KEY_STEPS, RecipeDBAdaptor.KEY_TYPE_ID, RecipeDBAdaptor.KEY_TYPE};
+
+    private MatrixCursor cursor;
+
+    @Before
+    public void setUp() throws Exception {
+        cursor = new MatrixCursor(COLUMNS, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{(long) i + 1, "Recipe " + i, "- Flour\n- Sugar", "1. Bake", (long) (i % 5) + 1, "Healthy"});
+        }
+    }
+
+    @Test
+    public void mappingLatency() {
+        long[] lookup = new long[RUNS];
+        long[] mapper = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            lookup[run] = lookupPerRow();
+            mapper[run] = mapper();
+        }
+        Arrays.sort(lookup);
+        Arrays.sort(mapper);
+        Log.i(TAG, ROWS + " rows: index per row " + lookup[RUNS / 2] / 1000000 + " ms, RecipeMapper "
+                + mapper[RUNS / 2] / 1000000 + " ms (median of " + RUNS + ")");
+    }
+
+    private long lookupPerRow() {
+        long sum = 0;
+        cursor.moveToPosition(-1);
+        long start = SystemClock.elapsedRealtimeNanos();
+        while (cursor.moveToNext()) {
+            Recipe recipe = new Recipe(cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_INGREDIENTS)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_STEPS)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE)));
+            sum += recipe.getId();
+        }
+        long time = SystemClock.elapsedRealtimeNanos() - start;
+        // Use the results so the loop is not optimized away
+        assertEquals((long) ROWS * (ROWS + 1) / 2, sum);
+        return time;
+    }
+
+    private long mapper() {
+        long sum = 0;
+        cursor.moveToPosition(-1);
+        long start = SystemClock.elapsedRealtimeNanos();
+        RecipeMapper recipeMapper = new RecipeMapper(cursor);
+        while (cursor.moveToNext()) {
+            sum += recipeMapper.map().getId();
+        }
+        long time = SystemClock.elapsedRealtimeNanos() - start;
+        assertEquals((long) ROWS * (ROWS + 1) / 2, sum);
+        return time;
+    }
+}
@@ -0,0 +1,137 @@
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark of the search before (LIKE over title, ingredients and steps) and after (ranked match on the
+ * Full-Text Search Table) the Search Index, up to 100k recipes, results are written to logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexBenchmark {
+    private static final String TAG = "SearchIndexBenchmark";
+    private static final String[] WORDS = {"Apple", "Banana", "Cherry", "Chocolate", "Lemon", "Orange", "Pear", "Plum",
+            "Butter", "Cream", "Flour", "Sugar", "Honey", "Almond", "Walnut", "Ginger", "Cinnamon", "Vanilla", "Rice", "Oats"};
+    private static final int[] SIZES = {1000, 10000, 100000};
+    private static final int LIMIT = 50;
+    private static final int RUNS = 5;
+
+    private File file;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        file = new File(context.getCacheDir(), "search_index_benchmark.db");
+        SQLiteDatabase.deleteDatabase(file);
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        // The schema of the app, without touching its Database
+        new RecipeDBAdaptor.DBHelper(context).onCreate(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void searchLatency() {
+        int recipes = 0;
+        for (int size : SIZES) {
+            recipes = fill(recipes, size);
+            for (String query : new String[]{"choc", "walnut ging", "vanilla rice oats"}) {
+                Log.i(TAG, size + " recipes, \"" + query + "\": LIKE " + like(query) / 1000 + " us, match "
+                        + match(query) / 1000 + " us");
+            }
+        }
+    }
+
+    private int fill(int from, int to) {
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + RecipeDBAdaptor.DATABASE_TABLE + "("
+                + RecipeDBAdaptor.KEY_TITLE + ", " + RecipeDBAdaptor.KEY_INGREDIENTS + ", " + RecipeDBAdaptor.KEY_STEPS + ", "
+                + RecipeDBAdaptor.KEY_TYPE_ID + ") VALUES (?, ?, ?, 1)");
+        StatementCache statementCache = new StatementCache(db);
+        SearchIndex searchIndex = new SearchIndex(statementCache);
+        db.beginTransaction();
+        try {
+            for (int i = from; i < to; i++) {
+                String title = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i;
+                StringBuilder ingredients = new StringBuilder();
+                StringBuilder steps = new StringBuilder();
+                for (int j = 0; j < 6; j++) {
+                    ingredients.append("- ").append(WORDS[(int) ((i * 7919L + j * 104729L) % WORDS.length)]).append('\n');
+                    steps.append(j + 1).append(". Stir in the ").append(WORDS[(i + j * 3) % WORDS.length]).append(" and wait\n");
+                }
+                // Plain text, as the adaptor indexes it
+                insert.bindString(1, title);
+                insert.bindString(2, ingredients.toString());
+                insert.bindString(3, steps.toString());
+                long id = insert.executeInsert();
+                searchIndex.index(id, title, ingredients.toString(), steps.toString());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            statementCache.close();
+        }
+        return to;
+    }
+
+    private long like(String query) {
+        List<String> terms = RecipeDBAdaptor.toMatchTerms(query);
+        StringBuilder selection = new StringBuilder();
+        String[] args = new String[terms.size() * 3];
+        for (int i = 0; i < terms.size(); i++) {
+            if (i > 0) {
+                selection.append(" AND ");
+            }
+            selection.append("(").append(RecipeDBAdaptor.KEY_TITLE).append(" LIKE ? OR ").append(RecipeDBAdaptor.KEY_INGREDIENTS)
+                    .append(" LIKE ? OR ").append(RecipeDBAdaptor.KEY_STEPS).append(" LIKE ?)");
+            String word = "%" + terms.get(i).substring(0, terms.get(i).length() - 1) + "%";
+            Arrays.fill(args, i * 3, i * 3 + 3, word);
+        }
+        return median(SQLiteQueryBuilder.buildQueryString(false, RecipeDBAdaptor.DATABASE_TABLE,
+                new String[]{RecipeDBAdaptor.KEY_ID, RecipeDBAdaptor.KEY_TITLE}, selection.toString(), null, null,
+                RecipeDBAdaptor.KEY_TITLE, String.valueOf(LIMIT)), args);
+    }
+
+    private long match(String query) {
+        List<String> terms = RecipeDBAdaptor.toMatchTerms(query);
+        return median(SQLiteQueryBuilder.buildQueryString(false, RecipeDBAdaptor.SEARCH_TABLES,
+                RecipeDBAdaptor.SEARCH_SUMMARY_COLUMNS, RecipeDBAdaptor.SEARCH_TABLE + " MATCH ?", null, null,
+                RecipeDBAdaptor.searchOrder(terms.size()), String.valueOf(LIMIT)), RecipeDBAdaptor.searchArgs(terms));
+    }
+
+    private long median(String sql, String[] args) {
+        long[] times = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Cursor cursor = db.rawQuery(sql, args);
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+            cursor.close();
+            times[run] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
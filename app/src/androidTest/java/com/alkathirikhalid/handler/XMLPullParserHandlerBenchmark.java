@@ -0,0 +1,155 @@
+package com.alkathirikhalid.handler;
+
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of parsing Recipe Types XML, the list parse before the visitor was added against the list parse and the
+ * streaming visitor now, results are written to logcat. The files are held in memory so only the parsing is timed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class XMLPullParserHandlerBenchmark {
+    private static final String TAG = "XMLParserBenchmark";
+    private static final int TYPES = 100000;
+    private static final int SMALL_TYPES = 5;
+    private static final int SMALL_PARSES = 1000;
+    private static final int RUNS = 7;
+
+    private byte[] large;
+    private byte[] small;
+
+    @Before
+    public void setUp() throws Exception {
+        large = catalog(TYPES);
+        small = catalog(SMALL_TYPES);
+    }
+
+    @Test
+    public void largeCatalogLatency() throws Exception {
+        long[] before = new long[RUNS];
+        long[] list = new long[RUNS];
+        long[] visitor = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            assertEquals(TYPES, parseBefore(large).size());
+            before[run] = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            assertEquals(TYPES, new XMLPullParserHandler().parse(new ByteArrayInputStream(large)).size());
+            list[run] = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            assertEquals(TYPES, new XMLPullParserHandler().parse(new ByteArrayInputStream(large), new CountingVisitor()));
+            visitor[run] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(before);
+        Arrays.sort(list);
+        Arrays.sort(visitor);
+        Log.i(TAG, TYPES + " types: before " + before[RUNS / 2] / 1000000 + " ms, list " + list[RUNS / 2] / 1000000
+                + " ms, visitor " + visitor[RUNS / 2] / 1000000 + " ms (median of " + RUNS + ")");
+    }
+
+    @Test
+    public void smallCatalogLatency() throws Exception {
+        long[] before = new long[RUNS];
+        long[] list = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < SMALL_PARSES; i++) {
+                assertEquals(SMALL_TYPES, parseBefore(small).size());
+            }
+            before[run] = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < SMALL_PARSES; i++) {
+                assertEquals(SMALL_TYPES, new XMLPullParserHandler().parse(new ByteArrayInputStream(small)).size());
+            }
+            list[run] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(before);
+        Arrays.sort(list);
+        Log.i(TAG, SMALL_PARSES + " parses of " + SMALL_TYPES + " types: before " + before[RUNS / 2] / 1000000
+                + " ms, list " + list[RUNS / 2] / 1000000 + " ms (median of " + RUNS + ")");
+    }
+
+    private static byte[] catalog(int types) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<recipetypes>\n");
+        for (int i = 1; i <= types; i++) {
+            xml.append("    <recipetype id=\"").append(i).append("\">\n        <name>Type ").append(i)
+                    .append("</name>\n    </recipetype>\n");
+        }
+        return xml.append("</recipetypes>\n").toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * The list parse before the visitor was added, a new factory per parse and the text of every event kept
+     */
+    private static List<RecipeType> parseBefore(byte[] xml) throws Exception {
+        List<RecipeType> recipeTypes = new ArrayList<RecipeType>();
+        RecipeType recipeType = null;
+        String text = null;
+        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new ByteArrayInputStream(xml), null);
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            String tagname = parser.getName();
+            switch (eventType) {
+                case XmlPullParser.START_TAG:
+                    if (tagname.equalsIgnoreCase("recipetype")) {
+                        recipeType = new RecipeType();
+                        String id = parser.getAttributeValue(null, "id");
+                        if (id != null) {
+                            recipeType.setId(Long.parseLong(id.trim()));
+                        }
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                    text = parser.getText();
+                    break;
+                case XmlPullParser.END_TAG:
+                    if (tagname.equalsIgnoreCase("recipetype")) {
+                        recipeTypes.add(recipeType);
+                    } else if (tagname.equalsIgnoreCase("name")) {
+                        recipeType.setName(text);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            eventType = parser.next();
+        }
+        return recipeTypes;
+    }
+
+    private static class CountingVisitor implements XMLPullParserHandler.Visitor {
+        @Override
+        public boolean visitRecipeType(RecipeType recipeType) {
+            return true;
+        }
+
+        @Override
+        public boolean visitRecipe(Recipe recipe) {
+            return true;
+        }
+    }
+}
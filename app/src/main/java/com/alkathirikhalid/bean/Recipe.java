@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.bean;
+
+/**
+ * <p><strong>Recipe Bean<strong/></p>
+ * <p>This Class is an immutable value holding one Recipe row, it is safe to share between threads<p/>
+ */
+public final class Recipe {
+    /**
+     * Database Id, 0 for a recipe that is not stored yet
+     */
+    private final long id;
+    /**
+     * Title of the Recipe
+     */
+    private final String title;
+    /**
+     * Ingredients of the Recipe
+     */
+    private final String ingredients;
+    /**
+     * Steps of the Recipe
+     */
+    private final String steps;
+    /**
+     * Recipe Type Id, 0 if only the type name is known
+     */
+    private final long typeId;
+    /**
+     * Recipe Type name
+     */
+    private final String type;
+
+    /**
+     * Constructor
+     *
+     * @param id          of the recipe row, 0 for a recipe that is not stored yet
+     * @param title       of the recipe
+     * @param ingredients of the recipe
+     * @param steps       of the recipe
+     * @param typeId      of the recipe type, 0 if only the type name is known
+     * @param type        name of the recipe type
+     */
+    public Recipe(long id, String title, String ingredients, String steps, long typeId, String type) {
+        this.id = id;
+        this.title = title;
+        this.ingredients = ingredients;
+        this.steps = steps;
+        this.typeId = typeId;
+        this.type = type;
+    }
+
+    /**
+     * Get the Recipe Id
+     *
+     * @return id of the recipe row
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the Recipe Title
+     *
+     * @return title of the recipe
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the Recipe Ingredients
+     *
+     * @return ingredients of the recipe
+     */
+    public String getIngredients() {
+        return ingredients;
+    }
+
+    /**
+     * Get the Recipe Steps
+     *
+     * @return steps of the recipe
+     */
+    public String getSteps() {
+        return steps;
+    }
+
+    /**
+     * Get the Recipe Type Id
+     *
+     * @return id of the recipe type, 0 if only the type name is known
+     */
+    public long getTypeId() {
+        return typeId;
+    }
+
+    /**
+     * Get the Recipe Type name
+     *
+     * @return name of the recipe type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get Recipe String
+     *
+     * @return title of the recipe
+     */
+    @Override
+    public String toString() {
+        return title;
+    }
+}
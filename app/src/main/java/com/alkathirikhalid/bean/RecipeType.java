@@ -26,11 +26,33 @@ package com.alkathirikhalid.bean;
  * <p>This Class is used as a DAO to obtained the XML Recipe Type Data<p/>
  */
 public class RecipeType {
+    /**
+     * Id of Data Type
+     */
+    private long id;
     /**
      * Name of Data Type
      */
     private String name;
 
+    /**
+     * Get the Data Type Id
+     *
+     * @return id of a recipe type, 0 if the XML did not define one
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Set the Data Type Id
+     *
+     * @param id of a recipe type
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Get the Data Type
      *
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * <p><strong>Backfill<strong/></p>
+ * <p>This Class is used to fill new columns, tables or indexes from existing rows in batches of ascending row ids.
+ * Each batch is committed together with its progress, so an interrupted Backfill resumes after the last row done<p/>
+ */
+abstract class Backfill {
+    /**
+     * Unique name, the key of the stored progress
+     */
+    private final String name;
+
+    /**
+     * Class Constructor
+     *
+     * @param name unique name of the Backfill
+     */
+    Backfill(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the unique name of the Backfill
+     *
+     * @return String name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the last row id to process, rows added after the upgrade are kept up to date by the normal writes
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return long highest row id existing at upgrade time
+     */
+    abstract long getUntilId(SQLiteDatabase sqLiteDatabase);
+
+    /**
+     * Process the next rows, called inside a transaction
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param afterId        last row id already processed
+     * @param untilId        last row id to process
+     * @param batchSize      maximum number of rows to process
+     * @return long last row id processed, afterId if no row was left
+     */
+    abstract long backfill(SQLiteDatabase sqLiteDatabase, long afterId, long untilId, int batchSize);
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import java.util.Locale;
+
+/**
+ * <p><strong>Bulk Insert Result<strong/></p>
+ * <p>This Class is used to report how many recipes a bulk insert stored and how fast<p/>
+ */
+public class BulkInsertResult {
+    /**
+     * Number of rows inserted
+     */
+    private final int rows;
+    /**
+     * Number of transactions committed
+     */
+    private final int batches;
+    /**
+     * Time spent inserting in nanoseconds
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Constructor
+     *
+     * @param rows         inserted
+     * @param batches      committed
+     * @param elapsedNanos spent inserting
+     */
+    BulkInsertResult(int rows, int batches, long elapsedNanos) {
+        this.rows = rows;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of rows inserted
+     *
+     * @return int rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of transactions committed
+     *
+     * @return int batches
+     */
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Get the time spent inserting
+     *
+     * @return long nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the insert throughput
+     *
+     * @return double rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1000000000d / elapsedNanos;
+    }
+
+    /**
+     * Get Bulk Insert Result String
+     *
+     * @return summary of rows, batches and throughput
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d rows in %d batches, %.0f rows/sec", rows, batches, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * <p><strong>Compactor<strong/></p>
+ * <p>This Class is used to purge the recipes deleted by RecipeDBAdaptor in bounded batches, then give the pages they
+ * freed back to the file system once enough of the Database is free, a bounded number of pages per batch. Pages are
+ * given back in incremental auto vacuum mode, which only a VACUUM can turn on once a table exists, as android_metadata
+ * does before onCreate. That VACUUM runs once, while the Database is still small or when enough of it is free to be
+ * worth rewriting the whole file<p/>
+ */
+final class Compactor {
+    /**
+     * Default number of deleted recipes purged per transaction
+     */
+    static final int COMPACT_BATCH_SIZE = 200;
+    /**
+     * Share of free pages in the Database file above which free pages are given back
+     */
+    static final double VACUUM_FREE_PAGE_RATIO = 0.25;
+    /**
+     * Free pages below which the Database file is left as it is, whatever their share
+     */
+    static final long VACUUM_MIN_FREE_PAGES = 64;
+    /**
+     * Pages up to which the one-off VACUUM turning incremental auto vacuum on is cheap enough to run at any time
+     */
+    static final long VACUUM_SWITCH_MAX_PAGES = 1024;
+    /**
+     * Pages given back per batch by the incremental vacuum
+     */
+    static final int VACUUM_PAGES_PER_BATCH = 256;
+    /**
+     * auto_vacuum value of a Database in incremental mode
+     */
+    static final long AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * Turn incremental auto vacuum on, takes effect before the first table is created or at the next VACUUM
+     */
+    static final String ENABLE_INCREMENTAL_VACUUM = "PRAGMA auto_vacuum = INCREMENTAL";
+    /**
+     * A batch of deleted recipes, read in the order of the Live Title Index so both purge statements pick the same ones
+     */
+    private static final String PURGE_BATCH = "SELECT " + RecipeDBAdaptor.KEY_ID + " FROM " + RecipeDBAdaptor.DATABASE_TABLE
+            + " WHERE " + RecipeDBAdaptor.KEY_DELETED + " = 1 ORDER BY " + RecipeDBAdaptor.KEY_TITLE + ", "
+            + RecipeDBAdaptor.KEY_ID + " LIMIT ?";
+    /**
+     * Purge Links Statement, ingredient links left to a batch of deleted recipes
+     */
+    private static final String PURGE_LINKS = "DELETE FROM " + IngredientIndex.RECIPE_INGREDIENT_TABLE + " WHERE "
+            + IngredientIndex.KEY_RECIPE_ID + " IN (" + PURGE_BATCH + ")";
+    /**
+     * Purge Statement, a batch of deleted recipes
+     */
+    private static final String PURGE_DELETED = "DELETE FROM " + RecipeDBAdaptor.DATABASE_TABLE + " WHERE " + RecipeDBAdaptor.KEY_ID
+            + " IN (" + PURGE_BATCH + ")";
+    /**
+     * Has Deleted Statement
+     */
+    private static final String HAS_DELETED = "SELECT EXISTS (SELECT 1 FROM " + RecipeDBAdaptor.DATABASE_TABLE + " WHERE "
+            + RecipeDBAdaptor.KEY_DELETED + " = 1)";
+
+    /**
+     * Not instantiable
+     */
+    private Compactor() {
+    }
+
+    /**
+     * Check whether there are deleted recipes to purge, free pages to give back or incremental auto vacuum to turn on
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if compaction work is due
+     */
+    static boolean isDue(SQLiteDatabase sqLiteDatabase) {
+        return hasDeleted(sqLiteDatabase) || isVacuumDue(sqLiteDatabase)
+                || (!isIncremental(sqLiteDatabase) && isSmall(sqLiteDatabase));
+    }
+
+    /**
+     * Run one batch of the compaction, purging deleted recipes first and then giving free pages back
+     *
+     * @param statementCache compiled statements of the Database, not in a transaction
+     * @param batchSize      maximum number of deleted recipes to purge
+     * @return true if compaction work remains
+     */
+    static boolean runBatch(StatementCache statementCache, int batchSize) {
+        SQLiteDatabase sqLiteDatabase = statementCache.getDatabase();
+        if (hasDeleted(sqLiteDatabase)) {
+            purge(statementCache, batchSize);
+            return true;
+        }
+        if (!isIncremental(sqLiteDatabase)) {
+            // A large Database is only rewritten once enough of it is free, the writer is stalled meanwhile
+            if (isSmall(sqLiteDatabase) || isVacuumDue(sqLiteDatabase)) {
+                enableIncrementalVacuum(sqLiteDatabase);
+            }
+            return false;
+        }
+        if (!isVacuumDue(sqLiteDatabase)) {
+            return false;
+        }
+        incrementalVacuum(sqLiteDatabase, VACUUM_PAGES_PER_BATCH);
+        return isVacuumDue(sqLiteDatabase);
+    }
+
+    /**
+     * Purge a batch of deleted recipes in one transaction, with any ingredient links left to them
+     *
+     * @param statementCache compiled statements of the Database
+     * @param batchSize      maximum number of deleted recipes to purge
+     * @return int number of recipes purged
+     */
+    static int purge(StatementCache statementCache, int batchSize) {
+        SQLiteDatabase sqLiteDatabase = statementCache.getDatabase();
+        SQLiteStatement links = statementCache.get(PURGE_LINKS);
+        links.bindLong(1, batchSize);
+        SQLiteStatement statement = statementCache.get(PURGE_DELETED);
+        statement.bindLong(1, batchSize);
+        sqLiteDatabase.beginTransaction();
+        try {
+            links.executeUpdateDelete();
+            int purged = statement.executeUpdateDelete();
+            sqLiteDatabase.setTransactionSuccessful();
+            return purged;
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Give free pages back to the file system, the Database has to be in incremental auto vacuum mode
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param pages          maximum number of pages to give back
+     */
+    static void incrementalVacuum(SQLiteDatabase sqLiteDatabase, int pages) {
+        // Each step of the pragma frees one page, execSQL would stop after the first
+        Cursor cursor = sqLiteDatabase.rawQuery("PRAGMA incremental_vacuum(" + pages + ")", null);
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Turn incremental auto vacuum on by rewriting the whole Database, which also gives all its free pages back
+     *
+     * @param sqLiteDatabase Obj for CRUD operations, not in a transaction
+     */
+    static void enableIncrementalVacuum(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(ENABLE_INCREMENTAL_VACUUM);
+        sqLiteDatabase.execSQL("VACUUM");
+    }
+
+    /**
+     * Check whether enough of the Database file is free to be worth giving back
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if the free pages cross both VACUUM_MIN_FREE_PAGES and VACUUM_FREE_PAGE_RATIO
+     */
+    static boolean isVacuumDue(SQLiteDatabase sqLiteDatabase) {
+        long pages = DatabaseUtils.longForQuery(sqLiteDatabase, "PRAGMA page_count", null);
+        long freePages = DatabaseUtils.longForQuery(sqLiteDatabase, "PRAGMA freelist_count", null);
+        return freePages >= VACUUM_MIN_FREE_PAGES && freePages >= pages * VACUUM_FREE_PAGE_RATIO;
+    }
+
+    /**
+     * Check whether the Database gives free pages back incrementally
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if the Database is in incremental auto vacuum mode
+     */
+    static boolean isIncremental(SQLiteDatabase sqLiteDatabase) {
+        return DatabaseUtils.longForQuery(sqLiteDatabase, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL;
+    }
+
+    /**
+     * Check whether the Database is small enough to be rewritten without a noticeable stall
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if the Database file is at most VACUUM_SWITCH_MAX_PAGES
+     */
+    private static boolean isSmall(SQLiteDatabase sqLiteDatabase) {
+        return DatabaseUtils.longForQuery(sqLiteDatabase, "PRAGMA page_count", null) <= VACUUM_SWITCH_MAX_PAGES;
+    }
+
+    /**
+     * Check whether deleted recipes are waiting to be purged
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if there is at least one deleted recipe
+     */
+    private static boolean hasDeleted(SQLiteDatabase sqLiteDatabase) {
+        return DatabaseUtils.longForQuery(sqLiteDatabase, HAS_DELETED, null) != 0;
+    }
+}
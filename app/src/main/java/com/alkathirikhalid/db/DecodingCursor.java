@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+/**
+ * <p><strong>Decoding Cursor<strong/></p>
+ * <p>This Class is used to return recipe text stored compressed by RecipeCodec as plain Strings, values are only
+ * decoded when they are read so the CursorWindow keeps the compressed bytes<p/>
+ */
+class DecodingCursor extends CursorWrapper {
+
+    /**
+     * Constructor
+     *
+     * @param cursor with recipe columns that may hold compressed values
+     */
+    DecodingCursor(Cursor cursor) {
+        super(cursor);
+    }
+
+    /**
+     * Read recipe text from any Cursor, decoding it if it is stored compressed
+     *
+     * @param cursor      positioned on a row
+     * @param columnIndex of a recipe text column
+     * @return String recipe text
+     */
+    static String getString(Cursor cursor, int columnIndex) {
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+            return RecipeCodec.decode(cursor.getBlob(columnIndex));
+        }
+        return cursor.getString(columnIndex);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        return getString(getWrappedCursor(), columnIndex);
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        int type = super.getType(columnIndex);
+        return type == FIELD_TYPE_BLOB ? FIELD_TYPE_STRING : type;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p><strong>Ingredient Index<strong/></p>
+ * <p>This Class is used to maintain the inverted index from normalized ingredient names to the recipes using them.
+ * Its compiled statements come from a Statement Cache, one instance should be used for a single transaction<p/>
+ */
+class IngredientIndex {
+    /**
+     * Ingredient Table
+     */
+    static final String INGREDIENT_TABLE = "ingredient";
+    /**
+     * Recipe Ingredient join Table
+     */
+    static final String RECIPE_INGREDIENT_TABLE = "recipe_ingredient";
+    /**
+     * Ingredient Table Column Name
+     */
+    static final String KEY_NAME = "name";
+    /**
+     * Recipe Ingredient Table Column Recipe Id
+     */
+    static final String KEY_RECIPE_ID = "recipe_id";
+    /**
+     * Recipe Ingredient Table Column Ingredient Id
+     */
+    static final String KEY_INGREDIENT_ID = "ingredient_id";
+    /**
+     * Create Ingredient Table Statement
+     */
+    private static final String CREATE_INGREDIENT_TABLE = "CREATE TABLE IF NOT EXISTS " + INGREDIENT_TABLE + "(" + RecipeDBAdaptor.KEY_ID + " INTEGER PRIMARY KEY, " + KEY_NAME + " TEXT NOT NULL UNIQUE)";
+    /**
+     * Create Recipe Ingredient Table Statement, the primary key finds the recipes of an ingredient
+     */
+    private static final String CREATE_RECIPE_INGREDIENT_TABLE = "CREATE TABLE IF NOT EXISTS " + RECIPE_INGREDIENT_TABLE + "(" + KEY_INGREDIENT_ID + " INTEGER NOT NULL, " + KEY_RECIPE_ID + " INTEGER NOT NULL, PRIMARY KEY (" + KEY_INGREDIENT_ID + ", " + KEY_RECIPE_ID + "))";
+    /**
+     * Create Recipe Index Statement, finds the ingredients of a recipe when it is updated or deleted
+     */
+    private static final String CREATE_RECIPE_INDEX = "CREATE INDEX IF NOT EXISTS " + RECIPE_INGREDIENT_TABLE + "_" + KEY_RECIPE_ID + "_idx ON " + RECIPE_INGREDIENT_TABLE + "(" + KEY_RECIPE_ID + ")";
+    /**
+     * Add Ingredient Statement
+     */
+    private static final String INSERT_INGREDIENT = "INSERT OR IGNORE INTO " + INGREDIENT_TABLE + "(" + KEY_NAME + ") VALUES (?)";
+    /**
+     * Get Ingredient Id Statement
+     */
+    private static final String SELECT_INGREDIENT = "SELECT " + RecipeDBAdaptor.KEY_ID + " FROM " + INGREDIENT_TABLE + " WHERE " + KEY_NAME + " = ?";
+    /**
+     * Link a Recipe to an Ingredient Statement
+     */
+    private static final String INSERT_LINK = "INSERT OR IGNORE INTO " + RECIPE_INGREDIENT_TABLE + "(" + KEY_INGREDIENT_ID + ", " + KEY_RECIPE_ID + ") VALUES (?, ?)";
+    /**
+     * Unlink a Recipe from all its Ingredients Statement
+     */
+    private static final String DELETE_LINKS = "DELETE FROM " + RECIPE_INGREDIENT_TABLE + " WHERE " + KEY_RECIPE_ID + " = ?";
+    /**
+     * Compiled statements, owned by the Statement Cache
+     */
+    private final SQLiteStatement insertIngredient, selectIngredient, insertLink, deleteLinks;
+    /**
+     * Ingredient ids resolved by this instance
+     */
+    private final Map<String, Long> ingredientIds = new HashMap<String, Long>();
+
+    /**
+     * Constructor
+     *
+     * @param statementCache of the SQLiteDatabase to index
+     */
+    IngredientIndex(StatementCache statementCache) {
+        insertIngredient = statementCache.get(INSERT_INGREDIENT);
+        selectIngredient = statementCache.get(SELECT_INGREDIENT);
+        insertLink = statementCache.get(INSERT_LINK);
+        deleteLinks = statementCache.get(DELETE_LINKS);
+    }
+
+    /**
+     * Create the Ingredient and Recipe Ingredient Tables
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     */
+    static void createTables(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_INGREDIENT_TABLE);
+        sqLiteDatabase.execSQL(CREATE_RECIPE_INGREDIENT_TABLE);
+        sqLiteDatabase.execSQL(CREATE_RECIPE_INDEX);
+    }
+
+    /**
+     * Index the ingredients of every recipe already stored
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     */
+    static void indexAll(SQLiteDatabase sqLiteDatabase) {
+        StatementCache statementCache = new StatementCache(sqLiteDatabase);
+        IngredientIndex ingredientIndex = new IngredientIndex(statementCache);
+        Cursor cursor = sqLiteDatabase.query(RecipeDBAdaptor.DATABASE_TABLE, new String[]{RecipeDBAdaptor.KEY_ID,
+                RecipeDBAdaptor.KEY_INGREDIENTS}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ingredientIndex.index(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+            statementCache.close();
+        }
+    }
+
+    /**
+     * Link a recipe to each of its ingredients, adding ingredients not known yet
+     *
+     * @param recipeId    of the recipe row
+     * @param ingredients free text of the recipe
+     */
+    void index(long recipeId, String ingredients) {
+        for (String name : IngredientParser.parse(ingredients)) {
+            insertLink.bindLong(1, ingredientId(name));
+            insertLink.bindLong(2, recipeId);
+            insertLink.executeInsert();
+        }
+    }
+
+    /**
+     * Replace the ingredients a recipe is linked to
+     *
+     * @param recipeId    of the recipe row
+     * @param ingredients free text of the recipe
+     */
+    void reindex(long recipeId, String ingredients) {
+        remove(recipeId);
+        index(recipeId, ingredients);
+    }
+
+    /**
+     * Unlink a recipe from all its ingredients
+     *
+     * @param recipeId of the recipe row
+     */
+    void remove(long recipeId) {
+        deleteLinks.bindLong(1, recipeId);
+        deleteLinks.executeUpdateDelete();
+    }
+
+    /**
+     * Get the id of an ingredient, adding it if it is not known yet
+     *
+     * @param name normalized ingredient name
+     * @return long id of the ingredient
+     */
+    private long ingredientId(String name) {
+        Long id = ingredientIds.get(name);
+        if (id == null) {
+            insertIngredient.bindString(1, name);
+            insertIngredient.executeInsert();
+            selectIngredient.bindString(1, name);
+            id = selectIngredient.simpleQueryForLong();
+            ingredientIds.put(name, id);
+        }
+        return id;
+    }
+}
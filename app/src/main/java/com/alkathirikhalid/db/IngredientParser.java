@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * <p><strong>Ingredient Parser<strong/></p>
+ * <p>This Class is used to split the free text ingredients of a recipe into normalized ingredient names,
+ * one per line, without list bullets, numbering, case or extra spaces<p/>
+ */
+public final class IngredientParser {
+
+    /**
+     * Not instantiable
+     */
+    private IngredientParser() {
+    }
+
+    /**
+     * Parse the ingredients of a recipe
+     *
+     * @param ingredients free text with one ingredient per line, such as "- Chocolate\n- Flour"
+     * @return List of distinct normalized ingredient names in the order they appear
+     */
+    public static List<String> parse(String ingredients) {
+        Set<String> names = new LinkedHashSet<String>();
+        if (ingredients != null) {
+            for (String line : ingredients.split("[\\r\\n]+")) {
+                String name = normalize(line);
+                if (name.length() > 0) {
+                    names.add(name);
+                }
+            }
+        }
+        return new ArrayList<String>(names);
+    }
+
+    /**
+     * Normalize one ingredient line or a name typed by the user
+     *
+     * @param line such as "  - Brown  Sugar", "2. Eggs" or "* milk"
+     * @return String such as "brown sugar", "eggs" or "milk", empty if nothing is left
+     */
+    public static String normalize(String line) {
+        if (line == null) {
+            return "";
+        }
+        String name = line.trim()
+                // Bullets such as "-", "*", bullet points and numbering such as "1." or "2)"
+                .replaceFirst("^(?:[-*\\u2022]+|\\d+[.)])\\s*", "")
+                .replaceAll("\\s+", " ")
+                .trim();
+        return name.toLowerCase(Locale.US);
+    }
+}
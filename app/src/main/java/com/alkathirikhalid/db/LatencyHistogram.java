@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * <p><strong>Latency Histogram<strong/></p>
+ * <p>This Class is used to count the latencies of one database operation in fixed buckets, from 100 microseconds to
+ * a second. It keeps a few longs whatever the number of samples, percentiles are read as the upper bound of the
+ * bucket they fall in. Not thread safe, QueryStats guards it and hands out copies<p/>
+ */
+public class LatencyHistogram {
+    /**
+     * Upper bound of each bucket in microseconds, the last bucket holds everything slower
+     */
+    static final long[] BUCKET_BOUNDS_MICROS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+            250000, 500000, 1000000};
+    /**
+     * Name of the operation
+     */
+    private final String operation;
+    /**
+     * Samples per bucket, one more than BUCKET_BOUNDS_MICROS
+     */
+    private final long[] buckets;
+    /**
+     * Number of samples
+     */
+    private long count;
+    /**
+     * Sum of the samples in nanoseconds
+     */
+    private long totalNanos;
+    /**
+     * Slowest sample in nanoseconds
+     */
+    private long maxNanos;
+    /**
+     * Samples over the slow query threshold
+     */
+    private long slowCount;
+
+    /**
+     * Class Constructor
+     *
+     * @param operation name of the operation
+     */
+    LatencyHistogram(String operation) {
+        this.operation = operation;
+        this.buckets = new long[BUCKET_BOUNDS_MICROS.length + 1];
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param histogram to copy
+     */
+    LatencyHistogram(LatencyHistogram histogram) {
+        this.operation = histogram.operation;
+        this.buckets = Arrays.copyOf(histogram.buckets, histogram.buckets.length);
+        this.count = histogram.count;
+        this.totalNanos = histogram.totalNanos;
+        this.maxNanos = histogram.maxNanos;
+        this.slowCount = histogram.slowCount;
+    }
+
+    /**
+     * Add a sample
+     *
+     * @param nanos latency of the operation
+     * @param slow  true if the sample was over the slow query threshold
+     */
+    void record(long nanos, boolean slow) {
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        if (slow) {
+            slowCount++;
+        }
+    }
+
+    /**
+     * Get the name of the operation
+     *
+     * @return String operation name
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the number of samples
+     *
+     * @return long count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the mean latency
+     *
+     * @return long mean in nanoseconds, 0 without samples
+     */
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Get the slowest latency
+     *
+     * @return long max in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Get the number of samples over the slow query threshold
+     *
+     * @return long slow count
+     */
+    public long getSlowCount() {
+        return slowCount;
+    }
+
+    /**
+     * Get the latency a share of the samples stays within
+     *
+     * @param percentile between 0 and 100
+     * @return long upper bound in microseconds of the bucket holding the percentile, the max past the last bound
+     */
+    public long getPercentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MICROS.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return BUCKET_BOUNDS_MICROS[bucket];
+            }
+        }
+        return maxNanos / 1000;
+    }
+
+    /**
+     * One line summary of the operation
+     *
+     * @return String such as "fetchRecipe count=12 mean=0.4ms p50<=0.5ms p90<=1.0ms p99<=2.5ms max=3.1ms slow=0"
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s count=%d mean=%.1fms p50<=%.1fms p90<=%.1fms p99<=%.1fms max=%.1fms slow=%d",
+                operation, count, getMeanNanos() / 1e6, getPercentileMicros(50) / 1e3, getPercentileMicros(90) / 1e3,
+                getPercentileMicros(99) / 1e3, maxNanos / 1e6, slowCount);
+    }
+}
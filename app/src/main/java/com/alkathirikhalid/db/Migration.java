@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * <p><strong>Migration<strong/></p>
+ * <p>This Class is used to upgrade the Recipe Database schema from the previous version to its own version.
+ * Work that grows with the number of rows can be handed to a Backfill, run in batches after the upgrade<p/>
+ */
+abstract class Migration {
+    /**
+     * Database Version this Migration upgrades to
+     */
+    private final int version;
+
+    /**
+     * Class Constructor
+     *
+     * @param version Database Version this Migration upgrades to
+     */
+    Migration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Get the Database Version this Migration upgrades to
+     *
+     * @return int version
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Apply the schema changes, called inside a transaction of its own
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     */
+    abstract void migrate(SQLiteDatabase sqLiteDatabase);
+
+    /**
+     * Get the Backfill completing this Migration once the Database is open
+     *
+     * @return Backfill of this Migration, null if everything is done in migrate
+     */
+    Backfill getBackfill() {
+        return null;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p><strong>Migration Engine<strong/></p>
+ * <p>This Class is used to upgrade the Recipe Database one version at a time, each Migration in a transaction of
+ * its own. Backfills of the applied Migrations are recorded in a progress table and run later in small batches,
+ * so a large Database is upgraded without blocking the first frame<p/>
+ */
+class MigrationEngine {
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "MigrationEngine";
+    /**
+     * Default number of rows processed per backfill batch
+     */
+    static final int BACKFILL_BATCH_SIZE = 200;
+    /**
+     * Backfill progress Table
+     */
+    static final String BACKFILL_TABLE = "migration_backfill";
+    /**
+     * Backfill Table Column Name
+     */
+    static final String KEY_NAME = "name";
+    /**
+     * Backfill Table Column Last Id, the last row already processed
+     */
+    static final String KEY_LAST_ID = "last_id";
+    /**
+     * Backfill Table Column Until Id, the last row to process
+     */
+    static final String KEY_UNTIL_ID = "until_id";
+    /**
+     * Create Backfill Table Statement
+     */
+    private static final String CREATE_BACKFILL_TABLE = "CREATE TABLE IF NOT EXISTS " + BACKFILL_TABLE + "(" + KEY_NAME + " TEXT PRIMARY KEY, " + KEY_LAST_ID + " INTEGER NOT NULL, " + KEY_UNTIL_ID + " INTEGER NOT NULL)";
+    /**
+     * Migrations in version order
+     */
+    private final List<Migration> mMigrations;
+    /**
+     * Backfills of every Migration by name
+     */
+    private final Map<String, Backfill> mBackfills = new HashMap<String, Backfill>();
+
+    /**
+     * Class Constructor
+     *
+     * @param migrations one per Database Version, in any order
+     */
+    MigrationEngine(Collection<Migration> migrations) {
+        mMigrations = new ArrayList<Migration>(migrations);
+        Collections.sort(mMigrations, new Comparator<Migration>() {
+            @Override
+            public int compare(Migration lhs, Migration rhs) {
+                return lhs.getVersion() < rhs.getVersion() ? -1 : (lhs.getVersion() == rhs.getVersion() ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < mMigrations.size(); i++) {
+            Migration migration = mMigrations.get(i);
+            if (i > 0 && mMigrations.get(i - 1).getVersion() == migration.getVersion()) {
+                throw new IllegalArgumentException("Duplicate migration to version " + migration.getVersion());
+            }
+            Backfill backfill = migration.getBackfill();
+            if (backfill != null && mBackfills.put(backfill.getName(), backfill) != null) {
+                throw new IllegalArgumentException("Duplicate backfill " + backfill.getName());
+            }
+        }
+    }
+
+    /**
+     * Create the Backfill progress Table
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     */
+    static void createTables(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_BACKFILL_TABLE);
+    }
+
+    /**
+     * Apply every Migration after oldVersion up to newVersion, in order. Called from SQLiteOpenHelper.onUpgrade the
+     * whole upgrade is one transaction, a failed step rolls every step back and the Database keeps oldVersion
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param oldVersion     int version of the Database
+     * @param newVersion     int version to upgrade to
+     * @throws IllegalStateException if a version in between has no Migration
+     */
+    void migrate(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        createTables(sqLiteDatabase);
+        int version = oldVersion;
+        for (Migration migration : mMigrations) {
+            if (migration.getVersion() <= oldVersion || migration.getVersion() > newVersion) {
+                continue;
+            }
+            if (migration.getVersion() != version + 1) {
+                throw new IllegalStateException("No migration to version " + (version + 1));
+            }
+            // Nested in the transaction of onUpgrade, it only commits on its own when called on a bare Database
+            sqLiteDatabase.beginTransaction();
+            try {
+                migration.migrate(sqLiteDatabase);
+                Backfill backfill = migration.getBackfill();
+                if (backfill != null) {
+                    schedule(sqLiteDatabase, backfill);
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
+            version = migration.getVersion();
+        }
+        if (version != newVersion) {
+            throw new IllegalStateException("No migration to version " + (version + 1));
+        }
+    }
+
+    /**
+     * Check whether a Backfill is waiting to run
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @return true if backfill work remains
+     */
+    boolean hasPendingBackfills(SQLiteDatabase sqLiteDatabase) {
+        // Databases created before the progress table existed have nothing to backfill
+        if (DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{BACKFILL_TABLE}) == 0) {
+            return false;
+        }
+        return DatabaseUtils.queryNumEntries(sqLiteDatabase, BACKFILL_TABLE) > 0;
+    }
+
+    /**
+     * Run the next batch of the oldest pending Backfill, committed together with its progress
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param batchSize      maximum number of rows to process
+     * @return true if backfill work remains
+     */
+    boolean runBackfillBatch(SQLiteDatabase sqLiteDatabase, int batchSize) {
+        if (!hasPendingBackfills(sqLiteDatabase)) {
+            return false;
+        }
+        sqLiteDatabase.beginTransaction();
+        try {
+            Cursor cursor = sqLiteDatabase.query(BACKFILL_TABLE, new String[]{KEY_NAME, KEY_LAST_ID, KEY_UNTIL_ID},
+                    null, null, null, null, "rowid", "1");
+            try {
+                if (cursor.moveToFirst()) {
+                    runBackfillBatch(sqLiteDatabase, cursor.getString(0), cursor.getLong(1), cursor.getLong(2), batchSize);
+                }
+            } finally {
+                cursor.close();
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+        return hasPendingBackfills(sqLiteDatabase);
+    }
+
+    /**
+     * Run every pending Backfill to the end
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param batchSize      maximum number of rows per transaction
+     */
+    void runPendingBackfills(SQLiteDatabase sqLiteDatabase, int batchSize) {
+        while (runBackfillBatch(sqLiteDatabase, batchSize)) {
+            // Each batch is committed on its own
+        }
+    }
+
+    /**
+     * Record a Backfill to run over the rows existing now
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param backfill       to record
+     */
+    private void schedule(SQLiteDatabase sqLiteDatabase, Backfill backfill) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(KEY_NAME, backfill.getName());
+        contentValues.put(KEY_LAST_ID, 0);
+        contentValues.put(KEY_UNTIL_ID, backfill.getUntilId(sqLiteDatabase));
+        sqLiteDatabase.insertWithOnConflict(BACKFILL_TABLE, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Run one batch of a Backfill and store how far it got
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param name           of the Backfill
+     * @param lastId         last row id already processed
+     * @param untilId        last row id to process
+     * @param batchSize      maximum number of rows to process
+     */
+    private void runBackfillBatch(SQLiteDatabase sqLiteDatabase, String name, long lastId, long untilId, int batchSize) {
+        String[] whereArgs = new String[]{name};
+        Backfill backfill = mBackfills.get(name);
+        if (backfill == null) {
+            // Left by a Migration this version no longer knows, there is nothing to run it with
+            Log.w(TAG, "Dropping unknown backfill " + name);
+            sqLiteDatabase.delete(BACKFILL_TABLE, KEY_NAME + " = ?", whereArgs);
+            return;
+        }
+        long processedId = backfill.backfill(sqLiteDatabase, lastId, untilId, batchSize);
+        if (processedId >= untilId || processedId == lastId) {
+            sqLiteDatabase.delete(BACKFILL_TABLE, KEY_NAME + " = ?", whereArgs);
+        } else {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(KEY_LAST_ID, processedId);
+            sqLiteDatabase.update(BACKFILL_TABLE, contentValues, KEY_NAME + " = ?", whereArgs);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * <p><strong>Query Stats<strong/></p>
+ * <p>This Class is used to keep a Latency Histogram for every RecipeDBAdaptor operation of the process, and to log
+ * queries slower than a configurable threshold. Their EXPLAIN QUERY PLAN runs on the Recipe Writer thread and is kept
+ * with the latest slow queries, so the stats can be dumped for tests, dumpsys and the debug screen<p/>
+ */
+public class QueryStats {
+    /**
+     * Default slow query threshold, a little over three frames
+     */
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 50;
+    /**
+     * Number of slow queries kept for the dump
+     */
+    static final int SLOW_QUERY_HISTORY = 20;
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "QueryStats";
+    /**
+     * Process wide instance
+     */
+    private static QueryStats sInstance;
+    /**
+     * Latency Histogram by operation name, guarded by this
+     */
+    private final Map<String, LatencyHistogram> mHistograms = new TreeMap<String, LatencyHistogram>();
+    /**
+     * Latest slow queries, the oldest first, guarded by this
+     */
+    private final LinkedList<SlowQuery> mSlowQueries = new LinkedList<SlowQuery>();
+    /**
+     * Slow query threshold
+     */
+    private volatile long mSlowQueryThresholdNanos = DEFAULT_SLOW_QUERY_THRESHOLD_MS * 1000000;
+
+    /**
+     * Class Constructor
+     */
+    private QueryStats() {
+    }
+
+    /**
+     * Get the process wide Query Stats
+     *
+     * @return QueryStats shared instance
+     */
+    public static synchronized QueryStats getInstance() {
+        if (sInstance == null) {
+            sInstance = new QueryStats();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Set the latency above which an operation is logged as slow
+     *
+     * @param thresholdMs slow query threshold in milliseconds, 0 logs every operation
+     */
+    public void setSlowQueryThresholdMs(long thresholdMs) {
+        mSlowQueryThresholdNanos = thresholdMs * 1000000;
+    }
+
+    /**
+     * Get the latency above which an operation is logged as slow
+     *
+     * @return long slow query threshold in milliseconds
+     */
+    public long getSlowQueryThresholdMs() {
+        return mSlowQueryThresholdNanos / 1000000;
+    }
+
+    /**
+     * Record the latency of a write or of work without a single query to explain
+     *
+     * @param operation name of the operation
+     * @param nanos     latency of the operation
+     */
+    void record(String operation, long nanos) {
+        if (add(operation, nanos)) {
+            slow(new SlowQuery(String.format(Locale.US, "%s took %.1fms", operation, nanos / 1e6), null));
+        }
+    }
+
+    /**
+     * Record the latency of a query, explaining its plan on the Recipe Writer thread if it was slow
+     *
+     * @param context       of the Application the query ran in
+     * @param operation     name of the operation
+     * @param nanos         latency of the operation
+     * @param sql           of the query, only reported in debug builds
+     * @param selectionArgs of the query, may be null, only reported in debug builds
+     */
+    void recordQuery(Context context, String operation, long nanos, String sql, String[] selectionArgs) {
+        if (add(operation, nanos)) {
+            // The SQL and its bound values hold user data, release builds only report the operation and its plan
+            String query = BuildConfig.DEBUG ? ": " + sql + " "
+                    + (selectionArgs == null ? "[]" : Arrays.toString(selectionArgs)) : "";
+            slow(new SlowQuery(String.format(Locale.US, "%s took %.1fms%s", operation, nanos / 1e6, query),
+                    RecipeWriter.getInstance(context).explain(sql, selectionArgs)));
+        }
+    }
+
+    /**
+     * Get the Latency Histogram of an operation
+     *
+     * @param operation name of the operation
+     * @return LatencyHistogram copy, empty if the operation never ran
+     */
+    public synchronized LatencyHistogram getStats(String operation) {
+        LatencyHistogram histogram = mHistograms.get(operation);
+        return histogram == null ? new LatencyHistogram(operation) : new LatencyHistogram(histogram);
+    }
+
+    /**
+     * Get the Latency Histogram of every operation that ran
+     *
+     * @return List of LatencyHistogram copies by operation name
+     */
+    public synchronized List<LatencyHistogram> getAllStats() {
+        List<LatencyHistogram> stats = new ArrayList<LatencyHistogram>();
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            stats.add(new LatencyHistogram(histogram));
+        }
+        return stats;
+    }
+
+    /**
+     * Get the latest slow queries
+     *
+     * @return List of slow query reports, the oldest first
+     */
+    public List<String> getSlowQueries() {
+        List<SlowQuery> slowQueries;
+        synchronized (this) {
+            slowQueries = new ArrayList<SlowQuery>(mSlowQueries);
+        }
+        List<String> reports = new ArrayList<String>();
+        for (SlowQuery slowQuery : slowQueries) {
+            reports.add(slowQuery.toString());
+        }
+        return reports;
+    }
+
+    /**
+     * Forget every sample and slow query
+     */
+    public synchronized void reset() {
+        mHistograms.clear();
+        mSlowQueries.clear();
+    }
+
+    /**
+     * Write the stats of every operation and the latest slow queries
+     *
+     * @param writer to write to
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Query stats, slow query threshold " + getSlowQueryThresholdMs() + "ms");
+        for (LatencyHistogram histogram : getAllStats()) {
+            writer.println("  " + histogram);
+        }
+        List<String> slowQueries = getSlowQueries();
+        writer.println("Slow queries, latest " + slowQueries.size());
+        for (String slowQuery : slowQueries) {
+            writer.println("  " + slowQuery.replace("\n", "\n    "));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Add a sample to the Latency Histogram of an operation
+     *
+     * @param operation name of the operation
+     * @param nanos     latency of the operation
+     * @return true if the operation was slow
+     */
+    private synchronized boolean add(String operation, long nanos) {
+        boolean slow = nanos > mSlowQueryThresholdNanos;
+        LatencyHistogram histogram = mHistograms.get(operation);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(operation);
+            mHistograms.put(operation, histogram);
+        }
+        histogram.record(nanos, slow);
+        return slow;
+    }
+
+    /**
+     * Log a slow query and keep it for the dump
+     *
+     * @param slowQuery to report
+     */
+    private void slow(SlowQuery slowQuery) {
+        Log.w(TAG, "Slow query " + slowQuery.report);
+        synchronized (this) {
+            mSlowQueries.add(slowQuery);
+            if (mSlowQueries.size() > SLOW_QUERY_HISTORY) {
+                mSlowQueries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Explain how SQLite runs a query
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     * @param sql            of the query
+     * @param selectionArgs  of the query, may be null
+     * @return String with one line per step of the plan, the detail column only
+     */
+    static String explain(SQLiteDatabase sqLiteDatabase, String sql, String[] selectionArgs) {
+        List<String> plan = new ArrayList<String>();
+        Cursor cursor = sqLiteDatabase.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            // The detail column is the last one on every SQLite version
+            int detail = cursor.getColumnCount() - 1;
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return TextUtils.join("\n", plan);
+    }
+
+    /**
+     * A slow operation, with the plan of its query once the Recipe Writer explained it
+     */
+    private static final class SlowQuery {
+        /**
+         * Operation, latency and, in debug builds, the query
+         */
+        final String report;
+        /**
+         * Future of the query plan, null for an operation without a single query
+         */
+        final Future<String> plan;
+
+        /**
+         * Constructor
+         *
+         * @param report operation, latency and, in debug builds, the query
+         * @param plan   Future of the query plan, may be null
+         */
+        SlowQuery(String report, Future<String> plan) {
+            this.report = report;
+            this.plan = plan;
+        }
+
+        /**
+         * Get the report followed by the plan, if it was explained by now
+         *
+         * @return String report of the slow query
+         */
+        @Override
+        public String toString() {
+            if (plan == null) {
+                return report;
+            }
+            if (!plan.isDone()) {
+                return report + "\n(plan not explained yet)";
+            }
+            try {
+                return report + "\n" + plan.get();
+            } catch (ExecutionException e) {
+                return report + "\n(plan failed: " + e.getCause() + ")";
+            } catch (InterruptedException e) {
+                // Not thrown once the plan is done
+                return report;
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.util.LruCache;
+
+import com.alkathirikhalid.bean.Recipe;
+
+/**
+ * <p><strong>Recipe Cache<strong/></p>
+ * <p>This Class is used to keep the Recipes read by id in memory, least recently used first out once their estimated
+ * size passes the byte budget. Every write of a recipe invalidates it and moves the generation on, so a read that
+ * started before the write can not put the old values back<p/>
+ */
+class RecipeCache {
+    /**
+     * Default byte budget, a few hundred typical recipes
+     */
+    static final int MAX_BYTES = 1024 * 1024;
+    /**
+     * Estimated bytes of a Recipe object and its six references, without its Strings
+     */
+    private static final int RECIPE_OVERHEAD_BYTES = 64;
+    /**
+     * Estimated bytes of a String object and its char array header, without its chars
+     */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    /**
+     * Process wide instance
+     */
+    private static RecipeCache sInstance;
+    /**
+     * Recipes by id, sized in bytes
+     */
+    private final LruCache<Long, Recipe> recipes;
+    /**
+     * Number of invalidations so far, guarded by this
+     */
+    private long generation;
+
+    /**
+     * Constructor
+     *
+     * @param maxBytes byte budget of the cached recipes
+     */
+    RecipeCache(int maxBytes) {
+        recipes = new LruCache<Long, Recipe>(maxBytes) {
+            @Override
+            protected int sizeOf(Long id, Recipe recipe) {
+                return estimateBytes(recipe);
+            }
+        };
+    }
+
+    /**
+     * Get the process wide Recipe Cache
+     *
+     * @return RecipeCache shared by every RecipeDBAdaptor
+     */
+    static synchronized RecipeCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new RecipeCache(MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Get a cached Recipe
+     *
+     * @param id of the recipe row
+     * @return Recipe, null if it is not cached
+     */
+    Recipe get(long id) {
+        return recipes.get(id);
+    }
+
+    /**
+     * Get the generation to pass to put, read before the recipe is read from the Database
+     *
+     * @return long current generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache a Recipe read from the Database, unless a write happened since the read started
+     *
+     * @param recipe     read from the Database
+     * @param generation returned by getGeneration before the read
+     */
+    synchronized void put(Recipe recipe, long generation) {
+        if (generation == this.generation) {
+            recipes.put(recipe.getId(), recipe);
+        }
+    }
+
+    /**
+     * Drop a Recipe that is being written
+     *
+     * @param id of the recipe row
+     */
+    synchronized void invalidate(long id) {
+        generation++;
+        recipes.remove(id);
+    }
+
+    /**
+     * Drop every Recipe, the Database file may have changed while it was closed
+     */
+    synchronized void invalidateAll() {
+        generation++;
+        recipes.evictAll();
+    }
+
+    /**
+     * Get the number of reads served from the cache
+     *
+     * @return int hits since the cache was created
+     */
+    int getHits() {
+        return recipes.hitCount();
+    }
+
+    /**
+     * Get the number of reads that had to go to the Database
+     *
+     * @return int misses since the cache was created
+     */
+    int getMisses() {
+        return recipes.missCount();
+    }
+
+    /**
+     * Get the estimated size of the cached recipes
+     *
+     * @return int bytes in use, at most the byte budget
+     */
+    int getBytes() {
+        return recipes.size();
+    }
+
+    /**
+     * Estimate the memory a Recipe holds, Java Strings take two bytes per char
+     *
+     * @param recipe to measure
+     * @return int estimated bytes
+     */
+    static int estimateBytes(Recipe recipe) {
+        return RECIPE_OVERHEAD_BYTES + estimateBytes(recipe.getTitle()) + estimateBytes(recipe.getIngredients())
+                + estimateBytes(recipe.getSteps()) + estimateBytes(recipe.getType());
+    }
+
+    /**
+     * Estimate the memory a String holds
+     *
+     * @param value to measure, may be null
+     * @return int estimated bytes, 0 for null
+     */
+    private static int estimateBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2 * value.length();
+    }
+}
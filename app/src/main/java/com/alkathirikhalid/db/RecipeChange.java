@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+/**
+ * <p><strong>Recipe Change<strong/></p>
+ * <p>This Class is used to describe one committed change of a Recipe row, with the title and type id it had
+ * before and after the change, so a list can find the row by its sort key without reading the Database<p/>
+ */
+public final class RecipeChange {
+    /**
+     * A Recipe was added
+     */
+    public static final int INSERTED = 1;
+    /**
+     * A Recipe was updated
+     */
+    public static final int UPDATED = 2;
+    /**
+     * A Recipe was deleted
+     */
+    public static final int DELETED = 3;
+    /**
+     * Kind of change, INSERTED, UPDATED or DELETED
+     */
+    private final int kind;
+    /**
+     * Recipe row id
+     */
+    private final long id;
+    /**
+     * Title before the change, null for an insert
+     */
+    private final String oldTitle;
+    /**
+     * Type id before the change, 0 for an insert
+     */
+    private final long oldTypeId;
+    /**
+     * Title after the change, null for a delete
+     */
+    private final String title;
+    /**
+     * Type id after the change, 0 for a delete
+     */
+    private final long typeId;
+
+    /**
+     * Class Constructor
+     *
+     * @param kind      of change
+     * @param id        of recipe row
+     * @param oldTitle  before the change
+     * @param oldTypeId before the change
+     * @param title     after the change
+     * @param typeId    after the change
+     */
+    private RecipeChange(int kind, long id, String oldTitle, long oldTypeId, String title, long typeId) {
+        this.kind = kind;
+        this.id = id;
+        this.oldTitle = oldTitle;
+        this.oldTypeId = oldTypeId;
+        this.title = title;
+        this.typeId = typeId;
+    }
+
+    /**
+     * A Recipe was added
+     *
+     * @param id     of recipe row
+     * @param title  of recipe
+     * @param typeId of recipe type
+     * @return RecipeChange
+     */
+    static RecipeChange inserted(long id, String title, long typeId) {
+        return new RecipeChange(INSERTED, id, null, 0, title, typeId);
+    }
+
+    /**
+     * A Recipe was updated
+     *
+     * @param id        of recipe row
+     * @param oldTitle  before the update
+     * @param oldTypeId before the update
+     * @param title     after the update
+     * @param typeId    after the update
+     * @return RecipeChange
+     */
+    static RecipeChange updated(long id, String oldTitle, long oldTypeId, String title, long typeId) {
+        return new RecipeChange(UPDATED, id, oldTitle, oldTypeId, title, typeId);
+    }
+
+    /**
+     * A Recipe was deleted
+     *
+     * @param id        of recipe row
+     * @param oldTitle  before the delete
+     * @param oldTypeId before the delete
+     * @return RecipeChange
+     */
+    static RecipeChange deleted(long id, String oldTitle, long oldTypeId) {
+        return new RecipeChange(DELETED, id, oldTitle, oldTypeId, null, 0);
+    }
+
+    /**
+     * Get the kind of change
+     *
+     * @return int INSERTED, UPDATED or DELETED
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the Recipe row id
+     *
+     * @return long id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the title before the change
+     *
+     * @return String title, null for an insert
+     */
+    public String getOldTitle() {
+        return oldTitle;
+    }
+
+    /**
+     * Get the type id before the change
+     *
+     * @return long type id, 0 for an insert
+     */
+    public long getOldTypeId() {
+        return oldTypeId;
+    }
+
+    /**
+     * Get the title after the change
+     *
+     * @return String title, null for a delete
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the type id after the change
+     *
+     * @return long type id, 0 for a delete
+     */
+    public long getTypeId() {
+        return typeId;
+    }
+
+    @Override
+    public String toString() {
+        return (kind == INSERTED ? "inserted " : kind == UPDATED ? "updated " : "deleted ") + id;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p><strong>Recipe Change Notifier<strong/></p>
+ * <p>This Class is used to deliver the Recipe changes committed by any RecipeDBAdaptor to listeners on the main thread.
+ * Changes committed while a delivery is waiting are merged into it, every delivery carries a growing sequence number<p/>
+ */
+public class RecipeChangeNotifier {
+    /**
+     * Process wide instance
+     */
+    private static RecipeChangeNotifier sInstance;
+    /**
+     * Message delivering the waiting changes
+     */
+    private static final int MSG_DELIVER = 1;
+    /**
+     * Listeners, used on the main thread only
+     */
+    private final List<OnRecipesChangedListener> mListeners = new ArrayList<OnRecipesChangedListener>();
+    /**
+     * Changes waiting for delivery, guarded by this
+     */
+    private List<RecipeChange> mPending = new ArrayList<RecipeChange>();
+    /**
+     * Sequence number of the last published changes, guarded by this
+     */
+    private long mSequence;
+    /**
+     * Handler delivering the waiting changes on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            List<RecipeChange> changes;
+            long sequence;
+            synchronized (RecipeChangeNotifier.this) {
+                // Already delivered by the message before, if this one was sent while that was running
+                if (mPending.isEmpty()) {
+                    return true;
+                }
+                changes = Collections.unmodifiableList(mPending);
+                sequence = mSequence;
+                mPending = new ArrayList<RecipeChange>();
+            }
+            for (OnRecipesChangedListener listener : new ArrayList<OnRecipesChangedListener>(mListeners)) {
+                listener.onRecipesChanged(sequence, changes);
+            }
+            return true;
+        }
+    });
+
+    /**
+     * Receives committed Recipe changes on the main thread
+     */
+    public interface OnRecipesChangedListener {
+        /**
+         * Called on the main thread after the changes are committed
+         *
+         * @param sequence number of the last change, rows read once getSequence returned it already show every change
+         * @param changes  in commit order
+         */
+        void onRecipesChanged(long sequence, List<RecipeChange> changes);
+    }
+
+    /**
+     * Class Constructor
+     */
+    private RecipeChangeNotifier() {
+    }
+
+    /**
+     * Get the process wide Recipe Change Notifier
+     *
+     * @return RecipeChangeNotifier shared instance
+     */
+    public static synchronized RecipeChangeNotifier getInstance() {
+        if (sInstance == null) {
+            sInstance = new RecipeChangeNotifier();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Add a listener, must be called on the main thread
+     *
+     * @param listener to add
+     */
+    public void addListener(OnRecipesChangedListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener, must be called on the main thread
+     *
+     * @param listener to remove
+     */
+    public void removeListener(OnRecipesChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Get the sequence number of the last published changes, read it before a query to know which changes it shows
+     *
+     * @return long sequence number
+     */
+    public synchronized long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * Publish committed changes, may be called on any thread
+     *
+     * @param changes in commit order
+     */
+    void publish(List<RecipeChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            mPending.addAll(changes);
+            mSequence++;
+            // Asked of the queue itself, a delivery dropped with it, as between Robolectric tests, is sent again
+            if (!mMainHandler.hasMessages(MSG_DELIVER)) {
+                mMainHandler.sendEmptyMessage(MSG_DELIVER);
+            }
+        }
+    }
+
+    /**
+     * Publish one committed change, may be called on any thread
+     *
+     * @param change committed
+     */
+    void publish(RecipeChange change) {
+        publish(Collections.singletonList(change));
+    }
+}
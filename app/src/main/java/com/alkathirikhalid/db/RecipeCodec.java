@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p><strong>Recipe Codec<strong/></p>
+ * <p>This Class is used to compress long recipe text with deflate primed by a dictionary of common recipe words,
+ * so even a few hundred characters of ingredients or steps shrink. Encoded values start with a format byte,
+ * values not worth compressing are left as text<p/>
+ */
+public final class RecipeCodec {
+    /**
+     * Format byte of deflate primed with DICTIONARY
+     */
+    static final byte FORMAT_DEFLATE_DICTIONARY = 1;
+    /**
+     * Shortest text worth compressing, shorter text does not pay for the deflate header and decode time
+     */
+    public static final int MIN_LENGTH = 200;
+    /**
+     * Text encoding
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * Words common in recipe ingredients and steps, the most frequent last as deflate reaches them with shorter distances
+     */
+    private static final byte[] DICTIONARY = (" pinch clove sliced minced diced chopped grated peeled large small medium"
+            + " ounces pounds grams kg ml litre fresh dried ground black pepper salt butter oil olive garlic onion"
+            + " tomato water milk cream sugar flour eggs egg 1/2 1/4 3/4 teaspoon tablespoon tsp tbsp cups cup"
+            + " preheat oven degrees bake simmer boil stir whisk pour serve season taste until golden brown heat"
+            + " pan bowl add mix the and with into for of to a in\n1. \n2. \n3. \n4. \n5. \n- ").getBytes(UTF_8);
+
+    /**
+     * Not instantiable
+     */
+    private RecipeCodec() {
+    }
+
+    /**
+     * Compress recipe text
+     *
+     * @param text to compress
+     * @return byte[] encoded value, null if the text is too short or does not get smaller
+     */
+    public static byte[] encode(String text) {
+        if (text == null || text.length() < MIN_LENGTH) {
+            return null;
+        }
+        byte[] input = text.getBytes(UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+            output.write(FORMAT_DEFLATE_DICTIONARY);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+                if (output.size() >= input.length) {
+                    // Already as large as the text, keep the text
+                    return null;
+                }
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress a value written by encode
+     *
+     * @param value encoded value
+     * @return String recipe text
+     * @throws IllegalArgumentException if the value is not in a known format or is corrupt
+     */
+    public static String decode(byte[] value) {
+        if (value == null || value.length == 0 || value[0] != FORMAT_DEFLATE_DICTIONARY) {
+            throw new IllegalArgumentException("Unknown recipe text format");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, 1, value.length - 1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(value.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated recipe text");
+                    }
+                }
+                output.write(buffer, 0, length);
+            }
+            return new String(output.toByteArray(), UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt recipe text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
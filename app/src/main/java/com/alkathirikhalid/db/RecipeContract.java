@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * <p><strong>Recipe Contract<strong/></p>
+ * <p>This Class is used to define the URIs, columns and paging parameters of the Recipe Provider for other apps.
+ * Lists are served one page at a time, the caller pages on with the title and id of the last row it read, or with
+ * an offset. Reading needs the READ_RECIPES permission, granted to apps signed with the same key<p/>
+ */
+public final class RecipeContract {
+    /**
+     * Authority of the Recipe Provider
+     */
+    public static final String AUTHORITY = "com.alkathirikhalid.recipeapp.provider";
+    /**
+     * Permission needed to read recipes
+     */
+    public static final String READ_PERMISSION = "com.alkathirikhalid.recipeapp.permission.READ_RECIPES";
+    /**
+     * Recipes: the list of live recipes ordered by title, append a recipe id for its detail.
+     * Observe it to be told about every committed change
+     */
+    public static final Uri CONTENT_URI = Uri.parse(ContentResolver.SCHEME_CONTENT + "://" + AUTHORITY + "/recipes");
+    /**
+     * Recipes of a Recipe Type, append the type id
+     */
+    public static final Uri TYPE_URI = Uri.withAppendedPath(CONTENT_URI, "type");
+    /**
+     * Recipes matching PARAM_QUERY, the best match first, pages with PARAM_LIMIT only
+     */
+    public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, "search");
+    /**
+     * MIME type of a list of recipes
+     */
+    public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd.com.alkathirikhalid.recipe";
+    /**
+     * MIME type of a single recipe
+     */
+    public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.com.alkathirikhalid.recipe";
+    /**
+     * Column ID, in lists and details
+     */
+    public static final String COLUMN_ID = RecipeDBAdaptor.KEY_ID;
+    /**
+     * Column Title, in lists and details
+     */
+    public static final String COLUMN_TITLE = RecipeDBAdaptor.KEY_TITLE;
+    /**
+     * Column Ingredients, in details only
+     */
+    public static final String COLUMN_INGREDIENTS = RecipeDBAdaptor.KEY_INGREDIENTS;
+    /**
+     * Column Steps, in details only
+     */
+    public static final String COLUMN_STEPS = RecipeDBAdaptor.KEY_STEPS;
+    /**
+     * Column Type Id, in details only
+     */
+    public static final String COLUMN_TYPE_ID = RecipeDBAdaptor.KEY_TYPE_ID;
+    /**
+     * Column Type name, in details only
+     */
+    public static final String COLUMN_TYPE = RecipeDBAdaptor.KEY_TYPE;
+    /**
+     * Query parameter, maximum number of rows, PAGE_SIZE by default and at most MAX_PAGE_SIZE
+     */
+    public static final String PARAM_LIMIT = "limit";
+    /**
+     * Query parameter, number of rows to skip
+     */
+    public static final String PARAM_OFFSET = "offset";
+    /**
+     * Query parameter, title of the last row of the previous page
+     */
+    public static final String PARAM_AFTER_TITLE = "after_title";
+    /**
+     * Query parameter, id of the last row of the previous page, used with PARAM_AFTER_TITLE
+     */
+    public static final String PARAM_AFTER_ID = "after_id";
+    /**
+     * Query parameter, words to search for
+     */
+    public static final String PARAM_QUERY = "q";
+    /**
+     * Rows per page when PARAM_LIMIT is not given
+     */
+    public static final int PAGE_SIZE = RecipeDBAdaptor.PAGE_SIZE;
+    /**
+     * Most rows per page, a page stays well within one CursorWindow
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Not instantiable
+     */
+    private RecipeContract() {
+    }
+}
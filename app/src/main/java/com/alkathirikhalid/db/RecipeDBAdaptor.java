@@ -24,9 +24,29 @@ package com.alkathirikhalid.db;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.handler.RecipeTypeRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p><strong>Recipe Database Adaptor<strong/></p>
@@ -36,15 +56,15 @@ public class RecipeDBAdaptor {
     /**
      * Database Name
      */
-    private static final String DATABASE_NAME = "recipedb";
+    static final String DATABASE_NAME = "recipedb";
     /**
      * Database Table
      */
-    private static final String DATABASE_TABLE = "recipe";
+    static final String DATABASE_TABLE = "recipe";
     /**
      * Database Version
      */
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 9;
     /**
      * Table Column ID
      */
@@ -62,29 +82,246 @@ public class RecipeDBAdaptor {
      */
     public static final String KEY_STEPS = "steps";
     /**
-     * Table Column Type
+     * Table Column Type Id, references the recipe type table
+     */
+    public static final String KEY_TYPE_ID = "type_id";
+    /**
+     * Type Name Column, joined from the recipe type table into every recipe Cursor
      */
     public static final String KEY_TYPE = "type";
+    /**
+     * Table Column Deleted, 1 for a recipe deleted but not purged by the Compactor yet
+     */
+    static final String KEY_DELETED = "deleted";
+    /**
+     * Table Column Client Key, set by the editor of a new recipe so a save repeated after a restart finds its row
+     */
+    static final String KEY_CLIENT_KEY = "client_key";
+    /**
+     * Recipe Type Table
+     */
+    private static final String TYPE_TABLE = "recipe_type";
+    /**
+     * Recipe Type Table Column Name
+     */
+    private static final String KEY_TYPE_NAME = "name";
+    /**
+     * Create Recipe Type Table Statement, ids are kept from the XML asset
+     */
+    private static final String CREATE_TYPE_TABLE = "CREATE TABLE IF NOT EXISTS " + TYPE_TABLE + "(" + KEY_ID + " INTEGER PRIMARY KEY, " + KEY_TYPE_NAME + " TEXT NOT NULL UNIQUE)";
     /**
      * Create Table Statement
      */
-    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + DATABASE_TABLE + "(" + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " + KEY_TITLE + " TEXT NOT NULL, " + KEY_INGREDIENTS + " TEXT NOT NULL, " + KEY_STEPS + " TEXT NOT NULL, " + KEY_TYPE + " TEXT NOT NULL)";
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + DATABASE_TABLE + "(" + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " + KEY_TITLE + " TEXT NOT NULL, " + KEY_INGREDIENTS + " TEXT NOT NULL, " + KEY_STEPS + " TEXT NOT NULL, " + KEY_TYPE_ID + " INTEGER NOT NULL REFERENCES " + TYPE_TABLE + "(" + KEY_ID + "))";
     /**
-     * Drop Table Statement
+     * Add Deleted Column Statement, the recipe table of version 8 onwards
      */
-    private static String DROP_TABLE = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
+    static final String ADD_DELETED_COLUMN = "ALTER TABLE " + DATABASE_TABLE + " ADD COLUMN " + KEY_DELETED + " INTEGER NOT NULL DEFAULT 0";
     /**
-     * Application Context
+     * Add Client Key Column Statement, the recipe table of version 9 onwards
      */
-    private final Context mContext;
+    static final String ADD_CLIENT_KEY_COLUMN = "ALTER TABLE " + DATABASE_TABLE + " ADD COLUMN " + KEY_CLIENT_KEY + " TEXT";
+    /**
+     * Create Client Key Index Statement, recipes inserted without a key are NULL and never collide
+     */
+    static final String CREATE_CLIENT_KEY_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS " + DATABASE_TABLE + "_" + KEY_CLIENT_KEY + "_idx ON " + DATABASE_TABLE + "(" + KEY_CLIENT_KEY + ")";
+    /**
+     * Live Recipes, the selection every read adds so deleted recipes waiting for the Compactor stay hidden
+     */
+    static final String LIVE = KEY_DELETED + " = 0";
+    /**
+     * Type Id Index, replaced by the Type Title Index in version 5
+     */
+    static final String TYPE_INDEX = DATABASE_TABLE + "_" + KEY_TYPE_ID + "_idx";
+    /**
+     * Create Type Id Index Statement, turns the type filter into an indexed lookup
+     */
+    private static final String CREATE_TYPE_INDEX = "CREATE INDEX IF NOT EXISTS " + TYPE_INDEX + " ON " + DATABASE_TABLE + "(" + KEY_TYPE_ID + ")";
+    /**
+     * Type Title Index, replaced by the Live Type Title Index in version 8
+     */
+    static final String TYPE_TITLE_INDEX = DATABASE_TABLE + "_" + KEY_TYPE_ID + "_" + KEY_TITLE + "_idx";
+    /**
+     * Create Type Title Index Statement, covers the summary columns of a type filter in title order
+     */
+    static final String CREATE_TYPE_TITLE_INDEX = "CREATE INDEX IF NOT EXISTS " + TYPE_TITLE_INDEX + " ON " + DATABASE_TABLE + "(" + KEY_TYPE_ID + ", " + KEY_TITLE + ")";
+    /**
+     * Title Index, replaced by the Live Title Index in version 8
+     */
+    static final String TITLE_INDEX = DATABASE_TABLE + "_" + KEY_TITLE + "_idx";
+    /**
+     * Create Title Index Statement, serves the keyset pages ordered by title and id
+     */
+    static final String CREATE_TITLE_INDEX = "CREATE INDEX IF NOT EXISTS " + TITLE_INDEX + " ON " + DATABASE_TABLE + "(" + KEY_TITLE + ")";
+    /**
+     * Live Type Title Index name
+     */
+    static final String LIVE_TYPE_TITLE_INDEX = DATABASE_TABLE + "_" + KEY_DELETED + "_" + KEY_TYPE_ID + "_" + KEY_TITLE + "_idx";
+    /**
+     * Create Live Type Title Index Statement, the Type Title Index of live recipes, deleted ones sort after them all.
+     * SQLite on API 16 has no partial indexes, so the deleted flag leads the key instead of a WHERE clause
+     */
+    static final String CREATE_LIVE_TYPE_TITLE_INDEX = "CREATE INDEX IF NOT EXISTS " + LIVE_TYPE_TITLE_INDEX + " ON " + DATABASE_TABLE + "(" + KEY_DELETED + ", " + KEY_TYPE_ID + ", " + KEY_TITLE + ")";
+    /**
+     * Live Title Index name
+     */
+    static final String LIVE_TITLE_INDEX = DATABASE_TABLE + "_" + KEY_DELETED + "_" + KEY_TITLE + "_idx";
+    /**
+     * Create Live Title Index Statement, the Title Index of live recipes, also finds the deleted ones for the Compactor
+     */
+    static final String CREATE_LIVE_TITLE_INDEX = "CREATE INDEX IF NOT EXISTS " + LIVE_TITLE_INDEX + " ON " + DATABASE_TABLE + "(" + KEY_DELETED + ", " + KEY_TITLE + ")";
+    /**
+     * Default number of recipes per page
+     */
+    public static final int PAGE_SIZE = 50;
+    /**
+     * Type Id matching every Recipe Type
+     */
+    public static final long ALL_TYPES = 0;
+    /**
+     * Summary Columns, all a recipe list item needs, served from the title indexes without reading the rows
+     */
+    public static final String[] SUMMARY_COLUMNS = {KEY_ID, KEY_TITLE};
+    /**
+     * Recipe table joined with its type name
+     */
+    private static final String RECIPE_TABLES = DATABASE_TABLE + " LEFT JOIN " + TYPE_TABLE + " ON " + DATABASE_TABLE + "." + KEY_TYPE_ID + " = " + TYPE_TABLE + "." + KEY_ID;
+    /**
+     * Detail Columns read from RECIPE_TABLES, everything a recipe page shows
+     */
+    private static final String[] RECIPE_COLUMNS = {
+            DATABASE_TABLE + "." + KEY_ID + " AS " + KEY_ID,
+            DATABASE_TABLE + "." + KEY_TITLE + " AS " + KEY_TITLE,
+            DATABASE_TABLE + "." + KEY_INGREDIENTS + " AS " + KEY_INGREDIENTS,
+            DATABASE_TABLE + "." + KEY_STEPS + " AS " + KEY_STEPS,
+            DATABASE_TABLE + "." + KEY_TYPE_ID + " AS " + KEY_TYPE_ID,
+            TYPE_TABLE + "." + KEY_TYPE_NAME + " AS " + KEY_TYPE
+    };
+    /**
+     * Full-Text Search Table, an external content FTS4 index over the recipe table
+     */
+    static final String SEARCH_TABLE = "recipe_fts";
+    /**
+     * Default maximum number of search results
+     */
+    public static final int SEARCH_LIMIT = 100;
+    /**
+     * Create Full-Text Search Table Statement
+     */
+    private static final String CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " + SEARCH_TABLE + " USING fts4(content=\"" + DATABASE_TABLE + "\", " + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ", tokenize=porter)";
+    /**
+     * Suffixes of the triggers that kept the Full-Text Search Table in sync with the recipe table until version 7
+     */
+    private static final String[] SEARCH_TRIGGERS = {"_bu", "_bd", "_au", "_ai"};
+    /**
+     * Create Trigger Statements keeping the Full-Text Search Table in sync, in the order of SEARCH_TRIGGERS, used by version 2 to 6
+     */
+    private static final String[] CREATE_SEARCH_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE + "_bu BEFORE UPDATE ON " + DATABASE_TABLE + " BEGIN DELETE FROM " + SEARCH_TABLE + " WHERE docid = old." + KEY_ID + "; END",
+            "CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE + "_bd BEFORE DELETE ON " + DATABASE_TABLE + " BEGIN DELETE FROM " + SEARCH_TABLE + " WHERE docid = old." + KEY_ID + "; END",
+            "CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE + "_au AFTER UPDATE ON " + DATABASE_TABLE + " BEGIN INSERT INTO " + SEARCH_TABLE + "(docid, " + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ") VALUES (new." + KEY_ID + ", new." + KEY_TITLE + ", new." + KEY_INGREDIENTS + ", new." + KEY_STEPS + "); END",
+            "CREATE TRIGGER IF NOT EXISTS " + SEARCH_TABLE + "_ai AFTER INSERT ON " + DATABASE_TABLE + " BEGIN INSERT INTO " + SEARCH_TABLE + "(docid, " + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ") VALUES (new." + KEY_ID + ", new." + KEY_TITLE + ", new." + KEY_INGREDIENTS + ", new." + KEY_STEPS + "); END"
+    };
+    /**
+     * Rebuild the Full-Text Search Table from the rows already in the recipe table
+     */
+    static final String REBUILD_SEARCH_TABLE = "INSERT INTO " + SEARCH_TABLE + "(" + SEARCH_TABLE + ") VALUES ('rebuild')";
+    /**
+     * Search Statement tables, the recipes found by the Full-Text Search Table
+     */
+    static final String SEARCH_TABLES = SEARCH_TABLE + " JOIN " + DATABASE_TABLE + " ON " + DATABASE_TABLE + "." + KEY_ID + " = " + SEARCH_TABLE + ".docid";
+    /**
+     * Search Summary Columns, the Summary Columns read from SEARCH_TABLES
+     */
+    static final String[] SEARCH_SUMMARY_COLUMNS = {
+            DATABASE_TABLE + "." + KEY_ID + " AS " + KEY_ID,
+            DATABASE_TABLE + "." + KEY_TITLE + " AS " + KEY_TITLE
+    };
+    /**
+     * Default number of recipes committed per bulk insert transaction
+     */
+    public static final int BULK_INSERT_BATCH_SIZE = 500;
+    /**
+     * Insert Recipe Statement
+     */
+    private static final String INSERT_RECIPE = "INSERT INTO " + DATABASE_TABLE + "(" + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ", " + KEY_TYPE_ID + ") VALUES (?, ?, ?, ?)";
+    /**
+     * Add Recipe with a Client Key Statement
+     */
+    private static final String INSERT_KEYED_RECIPE = "INSERT INTO " + DATABASE_TABLE + "(" + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ", " + KEY_TYPE_ID + ", " + KEY_CLIENT_KEY + ") VALUES (?, ?, ?, ?, ?)";
+    /**
+     * Get Recipe Id by Client Key Statement, -1 if no recipe has the key
+     */
+    private static final String SELECT_CLIENT_KEY = "SELECT IFNULL((SELECT " + KEY_ID + " FROM " + DATABASE_TABLE + " WHERE " + KEY_CLIENT_KEY + " = ?), -1)";
+    /**
+     * Update Recipe Statement
+     */
+    private static final String UPDATE_RECIPE = "UPDATE " + DATABASE_TABLE + " SET " + KEY_TITLE + " = ?, " + KEY_INGREDIENTS + " = ?, " + KEY_STEPS + " = ?, " + KEY_TYPE_ID + " = ? WHERE " + KEY_ID + " = ? AND " + LIVE;
+    /**
+     * Delete Recipe Statement, only marks the row and empties its text, the Compactor removes it later in batches
+     */
+    private static final String DELETE_RECIPE = "UPDATE " + DATABASE_TABLE + " SET " + KEY_DELETED + " = 1, " + KEY_INGREDIENTS
+            + " = '', " + KEY_STEPS + " = '' WHERE " + KEY_ID + " = ? AND " + LIVE;
+    /**
+     * Add Recipe Type Statement, a type already stored is kept
+     */
+    private static final String INSERT_TYPE = "INSERT OR IGNORE INTO " + TYPE_TABLE + "(" + KEY_TYPE_NAME + ") VALUES (?)";
+    /**
+     * Get Recipe Type Id Statement
+     */
+    private static final String SELECT_TYPE_ID = "SELECT " + KEY_ID + " FROM " + TYPE_TABLE + " WHERE " + KEY_TYPE_NAME + " = ?";
+    /**
+     * Prepared statements SQLite keeps per connection, enough for every query of the adaptor
+     */
+    private static final int SQL_CACHE_SIZE = 50;
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "RecipeDBAdaptor";
+    /**
+     * Process wide Database Manager
+     */
+    private final RecipeDatabaseManager mDatabaseManager;
     /**
-     * Subclass
+     * Application Context, used to explain slow queries on the Recipe Writer thread
      */
-    private DBHelper mDBHelper;
+    private final Context mContext;
     /**
-     * SQLiteDatabase
+     * SQLiteDatabase, shared with every other RecipeDBAdaptor
      */
     private SQLiteDatabase mSQLiteDatabase;
+    /**
+     * Compiled statements of this adaptor, kept across close and open while the shared Database stays the same
+     */
+    private StatementCache mStatementCache;
+    /**
+     * Process wide Recipe Change Notifier, told about every committed write
+     */
+    private final RecipeChangeNotifier mChangeNotifier;
+    /**
+     * Process wide Query Stats, told the latency of every operation
+     */
+    private final QueryStats mQueryStats;
+    /**
+     * Process wide Recipe Cache, invalidated by every update and delete
+     */
+    private final RecipeCache mRecipeCache;
+    /**
+     * True if long ingredients and steps are written compressed, shared by every RecipeDBAdaptor
+     */
+    private static volatile boolean sCompressedStorage = true;
+
+    /**
+     * Receives the progress of a bulk insert
+     */
+    public interface OnBatchCommittedListener {
+        /**
+         * Called on the inserting thread after each batch is committed
+         *
+         * @param progress rows, batches and throughput of the bulk insert so far
+         */
+        void onBatchCommitted(BulkInsertResult progress);
+    }
 
     /**
      * Class Constructor
@@ -92,13 +329,26 @@ public class RecipeDBAdaptor {
      * @param context of the class instantiating RecipeDBAdaptor
      */
     public RecipeDBAdaptor(Context context) {
-        this.mContext = context;
+        this.mContext = context.getApplicationContext();
+        this.mDatabaseManager = RecipeDatabaseManager.getInstance(context);
+        this.mChangeNotifier = RecipeChangeNotifier.getInstance();
+        this.mQueryStats = QueryStats.getInstance();
+        this.mRecipeCache = RecipeCache.getInstance();
     }
 
     /**
-     * This Subclass is used to execute CRUD database statements
+     * This Subclass is used to execute CRUD database statements, a single instance is owned by RecipeDatabaseManager
      */
-    private static class DBHelper extends SQLiteOpenHelper {
+    static class DBHelper extends SQLiteOpenHelper {
+        /**
+         * Application Context, used to read the Recipe Types XML asset
+         */
+        private final Context mContext;
+        /**
+         * Migration Engine upgrading older Databases one version at a time
+         */
+        private final MigrationEngine mMigrationEngine;
+
         /**
          * Subclass Constructor
          *
@@ -109,6 +359,21 @@ public class RecipeDBAdaptor {
              * SQLiteOpenHelper Constructor
              */
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            this.mContext = context;
+            this.mMigrationEngine = new MigrationEngine(RecipeMigrations.all(context));
+            // Write-Ahead Logging lets the UI thread read while the writer thread commits
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        /**
+         * When the Database connection is being configured
+         *
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        @Override
+        public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+            // Every query binds its values, so each one is prepared once per connection and then reused
+            sqLiteDatabase.setMaxSqlCacheSize(SQL_CACHE_SIZE);
         }
 
         /**
@@ -118,27 +383,46 @@ public class RecipeDBAdaptor {
          */
         @Override
         public void onCreate(SQLiteDatabase sqLiteDatabase) {
+            // Only applies at once while no table exists, on a device android_metadata already does and the
+            // Compactor runs the one-off VACUUM that applies it
+            sqLiteDatabase.execSQL(Compactor.ENABLE_INCREMENTAL_VACUUM);
+            // Create Recipe Type Table seeded from the XML asset
+            createTypeTable(mContext, sqLiteDatabase);
             // Create Table
             sqLiteDatabase.execSQL(CREATE_TABLE);
+            sqLiteDatabase.execSQL(ADD_DELETED_COLUMN);
+            sqLiteDatabase.execSQL(CREATE_LIVE_TYPE_TITLE_INDEX);
+            sqLiteDatabase.execSQL(CREATE_LIVE_TITLE_INDEX);
+            sqLiteDatabase.execSQL(ADD_CLIENT_KEY_COLUMN);
+            sqLiteDatabase.execSQL(CREATE_CLIENT_KEY_INDEX);
+            // Create Full-Text Search Table, kept in step by the adaptor
+            createSearchTable(sqLiteDatabase);
             // Dummy Data 1
             ContentValues contentValues = new ContentValues();
             contentValues.put(KEY_TITLE, "Chocolate Cake");
             contentValues.put(KEY_INGREDIENTS, "- Chocolate\n- Flour\n- Milk\n- Sugar\n- Eggs");
             contentValues.put(KEY_STEPS, "1. Mix Eggs with Milk\n2. Mix Flour with Chocolate and Sugar\n3. Mix all together\n4. Bake for 40min");
-            contentValues.put(KEY_TYPE, "Make Ahead");
+            contentValues.put(KEY_TYPE_ID, typeId(sqLiteDatabase, "Make Ahead"));
             sqLiteDatabase.insert(DATABASE_TABLE, null, contentValues);
             // Dummy Data 2
             contentValues.put(KEY_TITLE, "Vanilla Cake");
             contentValues.put(KEY_INGREDIENTS, "- Vanilla\n- Flour\n- Milk\n- Sugar\n- Eggs");
             contentValues.put(KEY_STEPS, "1. Mix Eggs with Milk\n2. Mix Flour with Vanilla and Sugar\n3. Mix all together\n4. Bake for 40min");
-            contentValues.put(KEY_TYPE, "No-Cook");
+            contentValues.put(KEY_TYPE_ID, typeId(sqLiteDatabase, "No-Cook"));
             sqLiteDatabase.insert(DATABASE_TABLE, null, contentValues);
             // Dummy Data 3
             contentValues.put(KEY_TITLE, "Strawberry Cake");
             contentValues.put(KEY_INGREDIENTS, "- Strawberry\n- Flour\n- Milk\n- Sugar\n- Eggs");
             contentValues.put(KEY_STEPS, "1. Mix Eggs with Milk\n2. Mix Flour with Strawberry and Sugar\n3. Mix all together\n4. Bake for 40min");
-            contentValues.put(KEY_TYPE, "Healthy");
+            contentValues.put(KEY_TYPE_ID, typeId(sqLiteDatabase, "Healthy"));
             sqLiteDatabase.insert(DATABASE_TABLE, null, contentValues);
+            // Index the words of the Dummy Data
+            sqLiteDatabase.execSQL(REBUILD_SEARCH_TABLE);
+            // Create the Ingredient index of the Dummy Data
+            IngredientIndex.createTables(sqLiteDatabase);
+            IngredientIndex.indexAll(sqLiteDatabase);
+            // Nothing to backfill yet, the progress table is ready for later versions
+            MigrationEngine.createTables(sqLiteDatabase);
         }
 
         /**
@@ -150,11 +434,112 @@ public class RecipeDBAdaptor {
          */
         @Override
         public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-            // Drop Table
-            sqLiteDatabase.execSQL(DROP_TABLE);
-            // Recreate Table
-            onCreate(sqLiteDatabase);
+            // Every version in between is applied in order, large backfills are left for the writer thread
+            mMigrationEngine.migrate(sqLiteDatabase, oldVersion, newVersion);
+        }
+
+        /**
+         * Get the Migration Engine of this Database
+         *
+         * @return MigrationEngine upgrading this Database
+         */
+        MigrationEngine getMigrationEngine() {
+            return mMigrationEngine;
+        }
+
+        /**
+         * Create the Recipe Type Table and seed it with the types from the XML asset
+         *
+         * @param context        used to read the Recipe Types XML asset
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        static void createTypeTable(Context context, SQLiteDatabase sqLiteDatabase) {
+            sqLiteDatabase.execSQL(CREATE_TYPE_TABLE);
+            List<RecipeType> recipeTypes;
+            try {
+                // Shared with the spinners, built from the constants generated from the asset
+                recipeTypes = RecipeTypeRegistry.get(context).getRecipeTypes();
+            } catch (IOException e) {
+                throw new SQLException("Unable to read " + RecipeTypeRegistry.RECIPE_TYPES_ASSET, e);
+            }
+            ContentValues contentValues = new ContentValues();
+            for (RecipeType recipeType : recipeTypes) {
+                contentValues.clear();
+                // Keep the id from the XML asset, let SQLite assign one if it is missing
+                if (recipeType.getId() > 0) {
+                    contentValues.put(KEY_ID, recipeType.getId());
+                }
+                contentValues.put(KEY_TYPE_NAME, recipeType.getName());
+                sqLiteDatabase.insertWithOnConflict(TYPE_TABLE, null, contentValues, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+        }
+
+        /**
+         * Rebuild the recipe table of a version 2 Database with a type id instead of a type name
+         *
+         * @param context        used to read the Recipe Types XML asset
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        static void upgradeToTypeTable(Context context, SQLiteDatabase sqLiteDatabase) {
+            String oldTable = DATABASE_TABLE + "_v2";
+            createTypeTable(context, sqLiteDatabase);
+            // Types stored by users that are not in the XML asset get an id of their own
+            sqLiteDatabase.execSQL("INSERT OR IGNORE INTO " + TYPE_TABLE + "(" + KEY_TYPE_NAME + ") SELECT DISTINCT " + KEY_TYPE + " FROM " + DATABASE_TABLE);
+            // The Full-Text Search rows keep their docid, only the triggers have to move to the new table
+            dropSearchTriggers(sqLiteDatabase);
+            sqLiteDatabase.execSQL("ALTER TABLE " + DATABASE_TABLE + " RENAME TO " + oldTable);
+            sqLiteDatabase.execSQL(CREATE_TABLE);
+            sqLiteDatabase.execSQL("INSERT INTO " + DATABASE_TABLE + "(" + KEY_ID + ", " + KEY_TITLE + ", " + KEY_INGREDIENTS + ", " + KEY_STEPS + ", " + KEY_TYPE_ID + ")"
+                    + " SELECT r." + KEY_ID + ", r." + KEY_TITLE + ", r." + KEY_INGREDIENTS + ", r." + KEY_STEPS + ", t." + KEY_ID
+                    + " FROM " + oldTable + " r JOIN " + TYPE_TABLE + " t ON t." + KEY_TYPE_NAME + " = r." + KEY_TYPE);
+            sqLiteDatabase.execSQL("DROP TABLE " + oldTable);
+            sqLiteDatabase.execSQL(CREATE_TYPE_INDEX);
+            createSearchTriggers(sqLiteDatabase);
+        }
+
+        /**
+         * Create the Full-Text Search Table
+         *
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        static void createSearchTable(SQLiteDatabase sqLiteDatabase) {
+            sqLiteDatabase.execSQL(CREATE_SEARCH_TABLE);
+        }
+
+        /**
+         * Create the triggers keeping the Full-Text Search Table in sync
+         *
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        static void createSearchTriggers(SQLiteDatabase sqLiteDatabase) {
+            for (String trigger : CREATE_SEARCH_TRIGGERS) {
+                sqLiteDatabase.execSQL(trigger);
+            }
+        }
+
+        /**
+         * Drop the triggers keeping the Full-Text Search Table in sync
+         *
+         * @param sqLiteDatabase Obj for CRUD operations
+         */
+        static void dropSearchTriggers(SQLiteDatabase sqLiteDatabase) {
+            for (String trigger : SEARCH_TRIGGERS) {
+                sqLiteDatabase.execSQL("DROP TRIGGER IF EXISTS " + SEARCH_TABLE + trigger);
+            }
+        }
 
+        /**
+         * Get the id of a Recipe Type, adding the type if it is not known yet
+         *
+         * @param sqLiteDatabase Obj for CRUD operations
+         * @param name of the recipe type
+         * @return long id of the recipe type
+         */
+        static long typeId(SQLiteDatabase sqLiteDatabase, String name) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(KEY_TYPE_NAME, name);
+            sqLiteDatabase.insertWithOnConflict(TYPE_TABLE, null, contentValues, SQLiteDatabase.CONFLICT_IGNORE);
+            return DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT " + KEY_ID + " FROM " + TYPE_TABLE + " WHERE " + KEY_TYPE_NAME + " = ?", new String[]{name});
         }
     }
 
@@ -165,10 +550,17 @@ public class RecipeDBAdaptor {
      * @throws SQLException throw SQL Exception
      */
     public RecipeDBAdaptor open() throws SQLException {
-        // Get an instant of DBHelper Subclass and pass in the constructor
-        mDBHelper = new DBHelper(mContext);
-        // Get Writable Database
-        mSQLiteDatabase = mDBHelper.getWritableDatabase();
+        // Acquire the shared Database, opening it if this is the first user
+        if (mSQLiteDatabase == null) {
+            mSQLiteDatabase = mDatabaseManager.acquireDatabase();
+            // Statements compiled for a Database closed since can not be reused
+            if (mStatementCache == null || mStatementCache.getDatabase() != mSQLiteDatabase) {
+                if (mStatementCache != null) {
+                    mStatementCache.close();
+                }
+                mStatementCache = new StatementCache(mSQLiteDatabase);
+            }
+        }
         return this;
     }
 
@@ -176,8 +568,36 @@ public class RecipeDBAdaptor {
      * Close Database
      */
     public void close() {
-        // Close the instants of Database Helper Subclass
-        mDBHelper.close();
+        // Release the shared Database, it is closed once the last user releases it
+        if (mSQLiteDatabase != null) {
+            mSQLiteDatabase = null;
+            mDatabaseManager.releaseDatabase();
+        }
+    }
+
+    /**
+     * Run one batch of the backfills left by the last upgrade, committed on its own
+     *
+     * @param batchSize maximum number of rows to process
+     * @return true if backfill work remains
+     */
+    boolean runBackfillBatch(int batchSize) {
+        return mDatabaseManager.getMigrationEngine().runBackfillBatch(mSQLiteDatabase, batchSize);
+    }
+
+    /**
+     * Run one batch of the compaction, purging deleted recipes first and then giving free pages back to the file system
+     *
+     * @param batchSize maximum number of deleted recipes to purge
+     * @return true if compaction work remains
+     */
+    boolean runCompactionBatch(int batchSize) {
+        long start = System.nanoTime();
+        try {
+            return Compactor.runBatch(mStatementCache, batchSize);
+        } finally {
+            mQueryStats.record("runCompactionBatch", System.nanoTime() - start);
+        }
     }
 
     /**
@@ -186,26 +606,355 @@ public class RecipeDBAdaptor {
      * @param title of recipe
      * @param ingredients of recipe
      * @param steps of recipe
-     * @param type of recipe
+     * @param type name of recipe, added to the recipe types if it is not known yet
      */
     public long createRecipe(String title, String ingredients, String steps, String type) {
+        return createRecipe(title, ingredients, steps, typeId(type));
+    }
+
+    /**
+     * Add a Recipe to Database
+     *
+     * @param title of recipe
+     * @param ingredients of recipe
+     * @param steps of recipe
+     * @param typeId of recipe type
+     */
+    public long createRecipe(String title, String ingredients, String steps, long typeId) {
+        return createRecipe(title, ingredients, steps, typeId, null);
+    }
+
+    /**
+     * Add a Recipe to Database under a Client Key, the recipe already added under the key is updated instead. As with
+     * SQLiteDatabase.insert a recipe the Database refuses is logged and not added, bulkInsert throws instead
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @param clientKey   unique key chosen by the caller before the first insert, null for none
+     * @return long id of the recipe row, -1 if it could not be written
+     */
+    public long createRecipe(String title, String ingredients, String steps, long typeId, String clientKey) {
+        if (clientKey != null) {
+            long id = findRecipeByClientKey(clientKey);
+            if (id != -1) {
+                // Inserted by an earlier save, maybe of a process since killed, the latest values win
+                return updateRecipe(id, title, ingredients, steps, typeId) ? id : -1;
+            }
+        }
+        long start = System.nanoTime();
         // Add the Recipe data to database
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(KEY_TITLE, title);
-        contentValues.put(KEY_INGREDIENTS, ingredients);
-        contentValues.put(KEY_STEPS, steps);
-        contentValues.put(KEY_TYPE, type);
-        return mSQLiteDatabase.insert(DATABASE_TABLE, null, contentValues);
+        SQLiteStatement statement = mStatementCache.get(clientKey == null ? INSERT_RECIPE : INSERT_KEYED_RECIPE);
+        bindString(statement, 1, title);
+        bindText(statement, 2, ingredients);
+        bindText(statement, 3, steps);
+        statement.bindLong(4, typeId);
+        if (clientKey != null) {
+            statement.bindString(5, clientKey);
+        }
+        IngredientIndex ingredientIndex = new IngredientIndex(mStatementCache);
+        SearchIndex searchIndex = new SearchIndex(mStatementCache);
+        long id;
+        mSQLiteDatabase.beginTransaction();
+        try {
+            try {
+                id = statement.executeInsert();
+            } catch (SQLException e) {
+                // As with SQLiteDatabase.insert, a recipe breaking a constraint is not added
+                Log.e(TAG, "Error inserting recipe " + title, e);
+                id = -1;
+            }
+            if (id != -1) {
+                ingredientIndex.index(id, ingredients);
+                searchIndex.index(id, title, ingredients, steps);
+            }
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+        mQueryStats.record("createRecipe", System.nanoTime() - start);
+        // Tell the lists once the row is committed
+        if (id != -1) {
+            mChangeNotifier.publish(RecipeChange.inserted(id, title, typeId));
+        }
+        return id;
+    }
+
+    /**
+     * Get the id of the Recipe added under a Client Key
+     *
+     * @param clientKey given to createRecipe
+     * @return long id of the recipe row, -1 if no recipe was added under the key
+     */
+    public long findRecipeByClientKey(String clientKey) {
+        SQLiteStatement statement = mStatementCache.get(SELECT_CLIENT_KEY);
+        statement.bindString(1, clientKey);
+        return statement.simpleQueryForLong();
+    }
+
+    /**
+     * Add many Recipes to Database in batches of BULK_INSERT_BATCH_SIZE
+     *
+     * @param recipes to add, read one at a time so they can be streamed
+     * @return BulkInsertResult with the number of rows and throughput
+     * @throws SQLException if a recipe can not be added, only its batch is rolled back
+     */
+    public BulkInsertResult bulkInsert(Iterable<Recipe> recipes) throws SQLException {
+        return bulkInsert(recipes, BULK_INSERT_BATCH_SIZE);
+    }
+
+    /**
+     * Add many Recipes to Database reusing the compiled statements, committing one transaction per batch
+     *
+     * @param recipes   to add, read one at a time so they can be streamed
+     * @param batchSize number of recipes committed per transaction
+     * @return BulkInsertResult with the number of rows and throughput
+     * @throws SQLException if a recipe can not be added, only its batch is rolled back
+     */
+    public BulkInsertResult bulkInsert(Iterable<Recipe> recipes, int batchSize) throws SQLException {
+        return bulkInsert(recipes, batchSize, null);
+    }
+
+    /**
+     * Add many Recipes to Database reusing the compiled statements, committing one transaction per batch. Unlike
+     * createRecipe a recipe the Database refuses is not skipped: its whole batch is rolled back and the exception
+     * thrown, so an import stops at the first bad record. The batches committed before stay, as told to the listener
+     *
+     * @param recipes   to add, read one at a time so they can be streamed
+     * @param batchSize number of recipes committed per transaction
+     * @param listener  told after each committed batch, may be null
+     * @return BulkInsertResult with the number of rows and throughput
+     * @throws SQLException if a recipe can not be added, only its batch is rolled back
+     */
+    public BulkInsertResult bulkInsert(Iterable<Recipe> recipes, int batchSize, OnBatchCommittedListener listener)
+            throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        // Recipe types resolved by name during this insert
+        Map<String, Long> typeIds = new HashMap<String, Long>();
+        Iterator<Recipe> iterator = recipes.iterator();
+        SQLiteStatement statement = mStatementCache.get(INSERT_RECIPE);
+        IngredientIndex ingredientIndex = new IngredientIndex(mStatementCache);
+        SearchIndex searchIndex = new SearchIndex(mStatementCache);
+        int rows = 0;
+        int batches = 0;
+        long start = System.nanoTime();
+        while (iterator.hasNext()) {
+            List<RecipeChange> changes = new ArrayList<RecipeChange>();
+            mSQLiteDatabase.beginTransaction();
+            try {
+                for (int i = 0; i < batchSize && iterator.hasNext(); i++) {
+                    Recipe recipe = iterator.next();
+                    long typeId = typeId(recipe, typeIds);
+                    statement.bindString(1, recipe.getTitle());
+                    bindText(statement, 2, recipe.getIngredients());
+                    bindText(statement, 3, recipe.getSteps());
+                    statement.bindLong(4, typeId);
+                    // Throws on a refused recipe, leaving the transaction to roll back
+                    long id = statement.executeInsert();
+                    if (id != -1) {
+                        ingredientIndex.index(id, recipe.getIngredients());
+                        searchIndex.index(id, recipe.getTitle(), recipe.getIngredients(), recipe.getSteps());
+                        changes.add(RecipeChange.inserted(id, recipe.getTitle(), typeId));
+                        rows++;
+                    }
+                }
+                mSQLiteDatabase.setTransactionSuccessful();
+            } finally {
+                mSQLiteDatabase.endTransaction();
+            }
+            // Each committed batch is visible on its own
+            mChangeNotifier.publish(changes);
+            batches++;
+            if (listener != null) {
+                listener.onBatchCommitted(new BulkInsertResult(rows, batches, System.nanoTime() - start));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        mQueryStats.record("bulkInsert", elapsedNanos);
+        return new BulkInsertResult(rows, batches, elapsedNanos);
+    }
+
+    /**
+     * Get the Recipe Type Id of a Recipe, resolving its type name at most once per bulk insert
+     *
+     * @param recipe  with a type id or a type name
+     * @param typeIds type ids already resolved by name
+     * @return long id of the recipe type
+     */
+    private long typeId(Recipe recipe, Map<String, Long> typeIds) {
+        if (recipe.getTypeId() > 0) {
+            return recipe.getTypeId();
+        }
+        Long typeId = typeIds.get(recipe.getType());
+        if (typeId == null) {
+            typeId = typeId(recipe.getType());
+            typeIds.put(recipe.getType(), typeId);
+        }
+        return typeId;
     }
 
     /**
-     * Delete Recipe by Id from Database
+     * Delete Recipe by Id from Database, the row is hidden at once and purged later by the Compactor
      *
      * @param keyID of recipe row
      * @return boolean true if deletion is successful
      */
     public boolean deleteRecipe(long keyID) {
-        return mSQLiteDatabase.delete(DATABASE_TABLE, KEY_ID + "=" + keyID, null) > 0;
+        long start = System.nanoTime();
+        SQLiteStatement statement = mStatementCache.get(DELETE_RECIPE);
+        statement.bindLong(1, keyID);
+        IngredientIndex ingredientIndex = new IngredientIndex(mStatementCache);
+        SearchIndex searchIndex = new SearchIndex(mStatementCache);
+        RecipeChange change;
+        mSQLiteDatabase.beginTransaction();
+        try {
+            change = deletedChange(keyID);
+            // A deleted row is already out of both indexes
+            if (change != null) {
+                ingredientIndex.remove(keyID);
+                searchIndex.remove(keyID);
+                // Drops the text the search table needed, so the tombstone is smaller than the row was
+                statement.executeUpdateDelete();
+            }
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+        mQueryStats.record("deleteRecipe", System.nanoTime() - start);
+        // Tell the lists once the row is gone
+        if (change != null) {
+            mRecipeCache.invalidate(keyID);
+            mChangeNotifier.publish(change);
+        }
+        return change != null;
+    }
+
+    /**
+     * Read the title and type id of a Recipe about to change, the key lists sort and filter it by
+     *
+     * @param keyID of recipe row
+     * @return RecipeChange deleting the row as it is now, null if there is no such live row
+     */
+    private RecipeChange deletedChange(long keyID) {
+        Cursor cursor = mSQLiteDatabase.query(DATABASE_TABLE, new String[]{KEY_TITLE, KEY_TYPE_ID}, KEY_ID + " = ? AND " + LIVE,
+                new String[]{String.valueOf(keyID)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? RecipeChange.deleted(keyID, cursor.getString(0), cursor.getLong(1)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Choose whether long ingredients and steps are written compressed, recipes already stored are read either way
+     *
+     * @param compressed true to compress text of RecipeCodec.MIN_LENGTH characters or more
+     */
+    public static void setCompressedStorage(boolean compressed) {
+        sCompressedStorage = compressed;
+    }
+
+    /**
+     * Check whether long ingredients and steps are written compressed
+     *
+     * @return true if compressed storage is on
+     */
+    public static boolean isCompressedStorage() {
+        return sCompressedStorage;
+    }
+
+    /**
+     * Get the number of statements the adaptors reused instead of compiling them
+     *
+     * @return long statement cache hits since the process started
+     */
+    public static long getStatementCacheHits() {
+        return StatementCache.getHits();
+    }
+
+    /**
+     * Get the number of statements the adaptors compiled
+     *
+     * @return long statement compilations since the process started
+     */
+    public static long getStatementCompilations() {
+        return StatementCache.getCompilations();
+    }
+
+    /**
+     * Get the number of Recipes read by id from the Recipe Cache
+     *
+     * @return int recipe cache hits since the process started
+     */
+    public static int getRecipeCacheHits() {
+        return RecipeCache.getInstance().getHits();
+    }
+
+    /**
+     * Get the number of Recipes read by id from the Database
+     *
+     * @return int recipe cache misses since the process started
+     */
+    public static int getRecipeCacheMisses() {
+        return RecipeCache.getInstance().getMisses();
+    }
+
+    /**
+     * Get the estimated memory held by the Recipe Cache
+     *
+     * @return int bytes, at most RecipeCache.MAX_BYTES
+     */
+    public static int getRecipeCacheBytes() {
+        return RecipeCache.getInstance().getBytes();
+    }
+
+    /**
+     * Get the id of a Recipe Type, adding the type if it is not known yet
+     *
+     * @param name of the recipe type
+     * @return long id of the recipe type
+     */
+    private long typeId(String name) {
+        SQLiteStatement insertType = mStatementCache.get(INSERT_TYPE);
+        bindString(insertType, 1, name);
+        insertType.executeInsert();
+        SQLiteStatement selectTypeId = mStatementCache.get(SELECT_TYPE_ID);
+        bindString(selectTypeId, 1, name);
+        return selectTypeId.simpleQueryForLong();
+    }
+
+    /**
+     * Bind a value to a compiled statement, null values are bound as NULL
+     *
+     * @param statement compiled statement
+     * @param index     of the parameter
+     * @param value     to bind
+     */
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Bind recipe text to a compiled statement, compressed if it is long enough and compressed storage is on
+     *
+     * @param statement compiled statement
+     * @param index     of the parameter
+     * @param text      of recipe
+     */
+    private static void bindText(SQLiteStatement statement, int index, String text) {
+        byte[] encoded = sCompressedStorage ? RecipeCodec.encode(text) : null;
+        if (encoded != null) {
+            statement.bindBlob(index, encoded);
+        } else {
+            bindString(statement, index, text);
+        }
     }
 
     /**
@@ -214,8 +963,238 @@ public class RecipeDBAdaptor {
      * @return Cursor with recipes
      */
     public Cursor fetchAllRecipes() {
-        return mSQLiteDatabase.query(DATABASE_TABLE, new String[]{KEY_ID, KEY_TITLE,
-                KEY_INGREDIENTS, KEY_STEPS, KEY_TYPE}, null, null, null, null, null);
+        return new DecodingCursor(query("fetchAllRecipes", false, RECIPE_TABLES, RECIPE_COLUMNS, DATABASE_TABLE + "." + LIVE, null, null, null));
+    }
+
+    /**
+     * Get a batch of Recipes in id order, used to walk the whole table a bounded number of rows at a time
+     *
+     * @param afterId id of the last recipe of the previous batch, 0 for the first batch
+     * @param limit   maximum number of recipes in the batch
+     * @return Cursor with at most limit recipes with an id above afterId
+     */
+    public Cursor fetchRecipesAfter(long afterId, int limit) {
+        return new DecodingCursor(query("fetchRecipesAfter", false, RECIPE_TABLES, RECIPE_COLUMNS, DATABASE_TABLE + "." + KEY_ID + " > ? AND "
+                + DATABASE_TABLE + "." + LIVE, new String[]{String.valueOf(afterId)}, DATABASE_TABLE + "." + KEY_ID, String.valueOf(limit)));
+    }
+
+    /**
+     * Get a batch of Recipes in id order as Recipe objects
+     *
+     * @param afterId id of the last recipe of the previous batch, 0 for the first batch
+     * @param limit   maximum number of recipes in the batch
+     * @return List of at most limit recipes with an id above afterId
+     */
+    public List<Recipe> getRecipesAfter(long afterId, int limit) {
+        return RecipeMapper.mapAll(fetchRecipesAfter(afterId, limit));
+    }
+
+    /**
+     * Get a page of Recipes ordered by title, with only the id and title columns
+     *
+     * @param afterTitle title of the last recipe of the previous page, null for the first page
+     * @param afterId    id of the last recipe of the previous page, ignored for the first page
+     * @param pageSize   maximum number of recipes in the page
+     * @return Cursor with at most pageSize recipes following the given title and id
+     */
+    public Cursor fetchRecipePage(String afterTitle, long afterId, int pageSize) {
+        return fetchRecipePage(ALL_TYPES, afterTitle, afterId, pageSize);
+    }
+
+    /**
+     * Get a page of Recipes of a Recipe Type ordered by title, with the Summary Columns only
+     *
+     * @param typeId     of the recipe type, ALL_TYPES for every recipe
+     * @param afterTitle title of the last recipe of the previous page, null for the first page
+     * @param afterId    id of the last recipe of the previous page, ignored for the first page
+     * @param pageSize   maximum number of recipes in the page
+     * @return Cursor with at most pageSize recipes following the given title and id
+     */
+    public Cursor fetchRecipePage(long typeId, String afterTitle, long afterId, int pageSize) {
+        List<String> selectionArgs = new ArrayList<String>();
+        String selection = keysetSelection(typeId, afterTitle, afterId, null, 0, selectionArgs);
+        return query("fetchRecipePage", false, DATABASE_TABLE, SUMMARY_COLUMNS, selection,
+                selectionArgs.toArray(new String[selectionArgs.size()]), KEY_TITLE + ", " + KEY_ID, String.valueOf(pageSize));
+    }
+
+    /**
+     * Get the Recipes of a Recipe Type between two keys ordered by title, with the Summary Columns only.
+     * A page read again this way holds every row of its range, however many were added or removed since
+     *
+     * @param typeId     of the recipe type, ALL_TYPES for every recipe
+     * @param afterTitle title of the last recipe before the range, null to start from the first recipe
+     * @param afterId    id of the last recipe before the range, ignored without afterTitle
+     * @param lastTitle  title of the last recipe of the range, null to read to the last recipe
+     * @param lastId     id of the last recipe of the range, ignored without lastTitle
+     * @return Cursor with the recipes following afterTitle and afterId up to lastTitle and lastId
+     */
+    public Cursor fetchRecipeRange(long typeId, String afterTitle, long afterId, String lastTitle, long lastId) {
+        List<String> selectionArgs = new ArrayList<String>();
+        String selection = keysetSelection(typeId, afterTitle, afterId, lastTitle, lastId, selectionArgs);
+        return query("fetchRecipeRange", false, DATABASE_TABLE, SUMMARY_COLUMNS, selection,
+                selectionArgs.toArray(new String[selectionArgs.size()]), KEY_TITLE + ", " + KEY_ID, null);
+    }
+
+    /**
+     * Build the WHERE clause of a keyset page, read in title and id order from the Live Title Index, or the Live Type
+     * Title Index for a single Recipe Type
+     *
+     * @param typeId        of the recipe type, ALL_TYPES for every recipe
+     * @param afterTitle    title of the last recipe before the page, null to start from the first recipe
+     * @param afterId       id of the last recipe before the page, ignored without afterTitle
+     * @param lastTitle     title of the last recipe of the page, null for no upper bound
+     * @param lastId        id of the last recipe of the page, ignored without lastTitle
+     * @param selectionArgs receiving the values of the ? in the clause
+     * @return String WHERE clause without the WHERE
+     */
+    static String keysetSelection(long typeId, String afterTitle, long afterId, String lastTitle, long lastId,
+                                  List<String> selectionArgs) {
+        StringBuilder selection = new StringBuilder(LIVE);
+        if (typeId != ALL_TYPES) {
+            selection.append(" AND ").append(KEY_TYPE_ID).append(" = ?");
+            selectionArgs.add(String.valueOf(typeId));
+        }
+        if (afterTitle != null) {
+            // Seek on the title index instead of skipping rows with an offset
+            selection.append(" AND ").append(KEY_TITLE).append(" >= ? AND (").append(KEY_TITLE).append(" > ? OR ").append(KEY_ID).append(" > ?)");
+            selectionArgs.add(afterTitle);
+            selectionArgs.add(afterTitle);
+            selectionArgs.add(String.valueOf(afterId));
+        }
+        if (lastTitle != null) {
+            selection.append(" AND ").append(KEY_TITLE).append(" <= ? AND (").append(KEY_TITLE).append(" < ? OR ").append(KEY_ID).append(" <= ?)");
+            selectionArgs.add(lastTitle);
+            selectionArgs.add(lastTitle);
+            selectionArgs.add(String.valueOf(lastId));
+        }
+        return selection.toString();
+    }
+
+    /**
+     * Get a page of Recipes of a Recipe Type ordered by title, skipping the rows before offset, with the Summary Columns only.
+     * SQLite still walks the skipped rows, fetchRecipePage with the last title and id is cheaper for deep pages
+     *
+     * @param typeId   of the recipe type, ALL_TYPES for every recipe
+     * @param offset   number of recipes to skip
+     * @param pageSize maximum number of recipes in the page
+     * @return Cursor with at most pageSize recipes from offset on
+     */
+    public Cursor fetchRecipePageAt(long typeId, int offset, int pageSize) {
+        String selection = LIVE;
+        String[] selectionArgs = null;
+        if (typeId != ALL_TYPES) {
+            selection += " AND " + KEY_TYPE_ID + " = ?";
+            selectionArgs = new String[]{String.valueOf(typeId)};
+        }
+        return query("fetchRecipePageAt", false, DATABASE_TABLE, SUMMARY_COLUMNS, selection, selectionArgs,
+                KEY_TITLE + ", " + KEY_ID, offset + ", " + pageSize);
+    }
+
+    /**
+     * Get all Recipes ordered by title, with the Summary Columns only
+     *
+     * @return Cursor with the id and title of every recipe
+     */
+    public Cursor fetchAllRecipeSummaries() {
+        return query("fetchAllRecipeSummaries", false, DATABASE_TABLE, SUMMARY_COLUMNS, LIVE, null, KEY_TITLE + ", " + KEY_ID, null);
+    }
+
+    /**
+     * Get Recipes of a Recipe Type ordered by title, with the Summary Columns only
+     *
+     * @param typeId of the recipe type
+     * @return Cursor with the id and title of the recipes of the type, read from the covering index
+     */
+    public Cursor fetchSummariesByType(long typeId) {
+        return query("fetchSummariesByType", false, DATABASE_TABLE, SUMMARY_COLUMNS, LIVE + " AND " + KEY_TYPE_ID + " = ?",
+                new String[]{String.valueOf(typeId)}, KEY_TITLE + ", " + KEY_ID, null);
+    }
+
+    /**
+     * Get Recipes using any of the given ingredients, with the Summary Columns only
+     *
+     * @param ingredients names as typed by the user, normalized like the recipe ingredients
+     * @return Cursor with the id and title of the recipes using at least one of the ingredients
+     */
+    public Cursor fetchRecipesWithAnyIngredient(Collection<String> ingredients) {
+        return fetchRecipesWithIngredients("fetchRecipesWithAnyIngredient", ingredients, false);
+    }
+
+    /**
+     * Get Recipes using all of the given ingredients, with the Summary Columns only
+     *
+     * @param ingredients names as typed by the user, normalized like the recipe ingredients
+     * @return Cursor with the id and title of the recipes using every one of the ingredients
+     */
+    public Cursor fetchRecipesWithAllIngredients(Collection<String> ingredients) {
+        return fetchRecipesWithIngredients("fetchRecipesWithAllIngredients", ingredients, true);
+    }
+
+    /**
+     * Get Recipes by ingredients from the Ingredient index
+     *
+     * @param operation   name the latency is recorded under
+     * @param ingredients names as typed by the user
+     * @param all         true if a recipe must use every ingredient, false if any one is enough
+     * @return Cursor with the id and title of the matching recipes ordered by title
+     */
+    private Cursor fetchRecipesWithIngredients(String operation, Collection<String> ingredients, boolean all) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String ingredient : ingredients) {
+            String name = IngredientParser.normalize(ingredient);
+            if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        if (names.isEmpty()) {
+            return query(operation, false, DATABASE_TABLE, SUMMARY_COLUMNS, "0", null, KEY_TITLE + ", " + KEY_ID, null);
+        }
+        return query(operation, false, DATABASE_TABLE, SUMMARY_COLUMNS, ingredientSelection(names.size(), all),
+                names.toArray(new String[names.size()]), KEY_TITLE + ", " + KEY_ID, null);
+    }
+
+    /**
+     * Build the selection of recipes by ingredients, bound to the normalized ingredient names
+     *
+     * @param count number of distinct ingredient names, at least one
+     * @param all   true if a recipe must use every ingredient, false if any one is enough
+     * @return String selection on the Recipe Table
+     */
+    static String ingredientSelection(int count, boolean all) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        // Resolve the names on the unique name index, then the recipes on the ingredient primary key
+        String recipeIds = "SELECT l." + IngredientIndex.KEY_RECIPE_ID + " FROM " + IngredientIndex.RECIPE_INGREDIENT_TABLE + " l"
+                + " JOIN " + IngredientIndex.INGREDIENT_TABLE + " i ON i." + KEY_ID + " = l." + IngredientIndex.KEY_INGREDIENT_ID
+                + " WHERE i." + IngredientIndex.KEY_NAME + " IN (" + placeholders + ")";
+        if (all) {
+            // An integer literal, a bound String would compare COUNT(*) to TEXT and never match
+            recipeIds += " GROUP BY l." + IngredientIndex.KEY_RECIPE_ID + " HAVING COUNT(*) = " + count;
+        }
+        return LIVE + " AND " + KEY_ID + " IN (" + recipeIds + ")";
+    }
+
+    /**
+     * Get Recipes of a Recipe Type, an indexed lookup on the type id
+     *
+     * @param typeId of the recipe type
+     * @return Cursor with recipes of the type
+     */
+    public Cursor fetchByType(long typeId) {
+        return new DecodingCursor(query("fetchByType", false, RECIPE_TABLES, RECIPE_COLUMNS, DATABASE_TABLE + "." + LIVE + " AND "
+                + DATABASE_TABLE + "." + KEY_TYPE_ID + " = ?", new String[]{String.valueOf(typeId)}, null, null));
+    }
+
+    /**
+     * Get Recipes of a Recipe Type as Recipe objects
+     *
+     * @param typeId of the recipe type
+     * @return List of recipes of the type
+     */
+    public List<Recipe> getRecipesByType(long typeId) {
+        return RecipeMapper.mapAll(fetchByType(typeId));
     }
 
     /**
@@ -225,10 +1204,168 @@ public class RecipeDBAdaptor {
      * @return Cursor with selection recipes matching filter
      */
     public Cursor fetchLike(String filter) {
-        return mSQLiteDatabase.query(true, DATABASE_TABLE, new String[]{KEY_ID,
-                        KEY_TITLE, KEY_INGREDIENTS, KEY_STEPS, KEY_TYPE}, KEY_TYPE + " LIKE ?",
-                new String[]{"%" + filter + "%"}, null, null, null,
-                null, null);
+        // Match the names on the small Recipe Type Table, then use the type id index on recipes
+        return new DecodingCursor(query("fetchLike", false, RECIPE_TABLES, RECIPE_COLUMNS, DATABASE_TABLE + "." + LIVE + " AND " + DATABASE_TABLE + "." + KEY_TYPE_ID + " IN (SELECT "
+                        + KEY_ID + " FROM " + TYPE_TABLE + " WHERE " + KEY_TYPE_NAME + " LIKE ?)",
+                new String[]{"%" + filter + "%"}, null, null));
+    }
+
+    /**
+     * Search Recipes by title, ingredients and steps
+     *
+     * @param query words to search for, each word also matches as a prefix
+     * @return Cursor with matching recipes, the best match first
+     */
+    public Cursor searchRecipes(String query) {
+        return searchRecipes(query, SEARCH_LIMIT);
+    }
+
+    /**
+     * Search Recipes by title, ingredients and steps
+     *
+     * @param query words to search for, each word also matches as a prefix
+     * @param limit maximum number of recipes returned
+     * @return Cursor with matching recipes, the best match first
+     */
+    public Cursor searchRecipes(String query, int limit) {
+        List<String> terms = toMatchTerms(query);
+        // Nothing to search for, show every recipe
+        if (terms.isEmpty()) {
+            return fetchAllRecipes();
+        }
+        return new DecodingCursor(search("searchRecipes", SEARCH_TABLES + " LEFT JOIN " + TYPE_TABLE + " ON " + DATABASE_TABLE + "." + KEY_TYPE_ID
+                + " = " + TYPE_TABLE + "." + KEY_ID, RECIPE_COLUMNS, terms, limit));
+    }
+
+    /**
+     * Search Recipes by title, ingredients and steps, with the Summary Columns only
+     *
+     * @param query words to search for, each word also matches as a prefix
+     * @param limit maximum number of recipes returned
+     * @return Cursor with the id and title of matching recipes, the best match first
+     */
+    public Cursor searchRecipeSummaries(String query, int limit) {
+        List<String> terms = toMatchTerms(query);
+        // Nothing to search for, show every recipe
+        if (terms.isEmpty()) {
+            return fetchAllRecipeSummaries();
+        }
+        return search("searchRecipeSummaries", SEARCH_TABLES, SEARCH_SUMMARY_COLUMNS, terms, limit);
+    }
+
+    /**
+     * Search Recipes matching every term, recipes with more of the terms in their title first
+     *
+     * @param operation name the latency is recorded under
+     * @param tables    joined to the Full-Text Search Table
+     * @param columns   to read
+     * @param terms     prefix terms of the search
+     * @param limit     maximum number of recipes returned
+     * @return Cursor with matching recipes
+     */
+    private Cursor search(String operation, String tables, String[] columns, List<String> terms, int limit) {
+        return query(operation, false, tables, columns, SEARCH_TABLE + " MATCH ?", searchArgs(terms),
+                searchOrder(terms.size()), String.valueOf(limit));
+    }
+
+    /**
+     * Build the ORDER BY clause of a search, recipes with more of the terms in their title first
+     *
+     * @param count number of terms
+     * @return String ORDER BY clause without the ORDER BY, taking the arguments of searchArgs after the match
+     */
+    static String searchOrder(int count) {
+        // Ranked from the index alone, offsets() would have to tokenize the stored and maybe compressed text
+        StringBuilder rank = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                rank.append(" + ");
+            }
+            rank.append("(").append(SEARCH_TABLE).append(".docid IN (SELECT docid FROM ").append(SEARCH_TABLE)
+                    .append(" WHERE ").append(SEARCH_TABLE).append(" MATCH ?))");
+        }
+        return "(" + rank + ") DESC, " + DATABASE_TABLE + "." + KEY_TITLE;
+    }
+
+    /**
+     * Build the arguments of a search, the match of every term then one title match per term for searchOrder
+     *
+     * @param terms prefix terms of the search
+     * @return String[] selection arguments
+     */
+    static String[] searchArgs(List<String> terms) {
+        String[] selectionArgs = new String[terms.size() + 1];
+        selectionArgs[0] = TextUtils.join(" ", terms);
+        for (int i = 0; i < terms.size(); i++) {
+            selectionArgs[i + 1] = KEY_TITLE + ":" + terms.get(i);
+        }
+        return selectionArgs;
+    }
+
+    /**
+     * Run a query and record its latency once the first window of rows is filled, SQLite only runs the query then
+     *
+     * @param operation     name the latency is recorded under
+     * @param distinct      true if each row must be unique
+     * @param tables        to query
+     * @param columns       to read
+     * @param selection     WHERE clause without the WHERE, may be null
+     * @param selectionArgs values of the ? in selection, may be null
+     * @param orderBy       ORDER BY clause without the ORDER BY, may be null
+     * @param limit         LIMIT clause without the LIMIT, may be null
+     * @return Cursor positioned before the first row
+     */
+    private Cursor query(final String operation, boolean distinct, String tables, String[] columns, String selection,
+                         final String[] selectionArgs, String orderBy, String limit) {
+        final String sql = SQLiteQueryBuilder.buildQueryString(distinct, tables, columns, selection, null, null, orderBy,
+                limit);
+        return mSQLiteDatabase.rawQueryWithFactory(TimedCursor.factory(new TimedCursor.Recorder() {
+            @Override
+            public void record(long nanos) {
+                mQueryStats.recordQuery(mContext, operation, nanos, sql, selectionArgs);
+            }
+        }), sql, selectionArgs, null);
+    }
+
+    /**
+     * Explain how SQLite runs a query
+     *
+     * @param sql           of the query
+     * @param selectionArgs of the query, may be null
+     * @return String with one line per step of the plan
+     */
+    String explain(String sql, String[] selectionArgs) {
+        return QueryStats.explain(mSQLiteDatabase, sql, selectionArgs);
+    }
+
+    /**
+     * Turn free user input into an FTS match expression of prefix terms
+     *
+     * @param query free text from the user
+     * @return String match expression such as "choc* cake*", empty if there is nothing to match
+     */
+    static String toMatchExpression(String query) {
+        return TextUtils.join(" ", toMatchTerms(query));
+    }
+
+    /**
+     * Turn free user input into FTS prefix terms
+     *
+     * @param query free text from the user
+     * @return List of terms such as "choc*", empty if there is nothing to match
+     */
+    static List<String> toMatchTerms(String query) {
+        List<String> terms = new ArrayList<String>();
+        if (query == null) {
+            return terms;
+        }
+        // Keep letters and digits only, lower cased so words like OR and NOT are not read as operators
+        for (String term : query.toLowerCase(Locale.US).split("[^\\p{L}\\p{Nd}]+")) {
+            if (term.length() > 0) {
+                terms.add(term + "*");
+            }
+        }
+        return terms;
     }
 
     /**
@@ -240,9 +1377,8 @@ public class RecipeDBAdaptor {
      */
     public Cursor fetchRecipe(long keyID) throws SQLException {
 
-        Cursor mCursor = mSQLiteDatabase.query(true, DATABASE_TABLE, new String[]{KEY_ID,
-                        KEY_TITLE, KEY_INGREDIENTS, KEY_STEPS, KEY_TYPE}, KEY_ID + "=" + keyID, null,
-                null, null, null, null, null);
+        Cursor mCursor = new DecodingCursor(query("fetchRecipe", true, RECIPE_TABLES, RECIPE_COLUMNS, DATABASE_TABLE + "." + KEY_ID + " = ? AND "
+                + DATABASE_TABLE + "." + LIVE, new String[]{String.valueOf(keyID)}, null, null));
         if (mCursor != null) {
             mCursor.moveToFirst();
         }
@@ -250,6 +1386,43 @@ public class RecipeDBAdaptor {
 
     }
 
+    /**
+     * Get a Recipe by Id, from the Recipe Cache if it was read since its last write
+     *
+     * @param keyID row id of Recipe
+     * @return Recipe, null if there is no such live recipe
+     */
+    public Recipe getRecipe(long keyID) {
+        Recipe recipe = mRecipeCache.get(keyID);
+        if (recipe != null) {
+            return recipe;
+        }
+        return readRecipe(keyID);
+    }
+
+    /**
+     * Read a Recipe by Id from Database into the Recipe Cache, for callers that already missed the cache
+     *
+     * @param keyID row id of Recipe
+     * @return Recipe, null if there is no such live recipe
+     */
+    Recipe readRecipe(long keyID) {
+        Recipe recipe;
+        // Read before the query, a write committed meanwhile keeps the old values out of the cache
+        long generation = mRecipeCache.getGeneration();
+        Cursor cursor = fetchRecipe(keyID);
+        try {
+            if (cursor.getCount() == 0) {
+                return null;
+            }
+            recipe = new RecipeMapper(cursor).map();
+        } finally {
+            cursor.close();
+        }
+        mRecipeCache.put(recipe, generation);
+        return recipe;
+    }
+
     /**
      * Update a Recipe values in Database
      *
@@ -257,16 +1430,56 @@ public class RecipeDBAdaptor {
      * @param title of recipe
      * @param ingredients of recipe
      * @param steps of recipe
-     * @param type of recipe
+     * @param type name of recipe, added to the recipe types if it is not known yet
      * @return boolean true if update recipe is successful
      */
     public boolean updateRecipe(long keyID, String title, String ingredients, String steps, String type) {
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(KEY_TITLE, title);
-        contentValues.put(KEY_INGREDIENTS, ingredients);
-        contentValues.put(KEY_STEPS, steps);
-        contentValues.put(KEY_TYPE, type);
+        return updateRecipe(keyID, title, ingredients, steps, typeId(type));
+    }
+
+    /**
+     * Update a Recipe values in Database
+     *
+     * @param keyID of recipe row
+     * @param title of recipe
+     * @param ingredients of recipe
+     * @param steps of recipe
+     * @param typeId of recipe type
+     * @return boolean true if update recipe is successful
+     */
+    public boolean updateRecipe(long keyID, String title, String ingredients, String steps, long typeId) {
+        long start = System.nanoTime();
+        SQLiteStatement statement = mStatementCache.get(UPDATE_RECIPE);
+        bindString(statement, 1, title);
+        bindText(statement, 2, ingredients);
+        bindText(statement, 3, steps);
+        statement.bindLong(4, typeId);
+        statement.bindLong(5, keyID);
 
-        return mSQLiteDatabase.update(DATABASE_TABLE, contentValues, KEY_ID + "=" + keyID, null) > 0;
+        IngredientIndex ingredientIndex = new IngredientIndex(mStatementCache);
+        SearchIndex searchIndex = new SearchIndex(mStatementCache);
+        RecipeChange change = null;
+        mSQLiteDatabase.beginTransaction();
+        try {
+            RecipeChange before = deletedChange(keyID);
+            if (before != null) {
+                // The old words leave the search table while the row still holds them
+                searchIndex.remove(keyID);
+                statement.executeUpdateDelete();
+                searchIndex.index(keyID, title, ingredients, steps);
+                ingredientIndex.reindex(keyID, ingredients);
+                change = RecipeChange.updated(keyID, before.getOldTitle(), before.getOldTypeId(), title, typeId);
+            }
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+        mQueryStats.record("updateRecipe", System.nanoTime() - start);
+        // Tell the lists once the new values are committed
+        if (change != null) {
+            mRecipeCache.invalidate(keyID);
+            mChangeNotifier.publish(change);
+        }
+        return change != null;
     }
 }
\ No newline at end of file
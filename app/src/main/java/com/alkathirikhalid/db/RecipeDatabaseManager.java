@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * <p><strong>Recipe Database Manager<strong/></p>
+ * <p>This Class is used to share a single Recipe Database connection across the whole application,
+ * the connection is reference counted and only closed when the last user releases it<p/>
+ */
+public class RecipeDatabaseManager {
+    /**
+     * Instance of the current Application
+     */
+    private static RecipeDatabaseManager sInstance;
+    /**
+     * Application Context, used to reach the Recipe Writer and to tell a new Application apart
+     */
+    private final Context mContext;
+    /**
+     * Database Helper shared by every RecipeDBAdaptor
+     */
+    private final RecipeDBAdaptor.DBHelper mDBHelper;
+    /**
+     * Shared SQLiteDatabase, null while no one holds a reference
+     */
+    private SQLiteDatabase mSQLiteDatabase;
+    /**
+     * Number of users currently holding the database
+     */
+    private int mReferenceCount;
+    /**
+     * Number of times the database was physically opened
+     */
+    private int mOpenCount;
+    /**
+     * Number of times the database was physically closed
+     */
+    private int mCloseCount;
+    /**
+     * True once the pending backfills were handed to the Recipe Writer
+     */
+    private boolean mBackfillScheduled;
+    /**
+     * True once the Database was checked for compaction work left by an earlier process
+     */
+    private boolean mCompactionChecked;
+
+    /**
+     * Class Constructor
+     *
+     * @param context Application Context
+     */
+    private RecipeDatabaseManager(Context context) {
+        mContext = context;
+        mDBHelper = new RecipeDBAdaptor.DBHelper(context);
+    }
+
+    /**
+     * Get the Recipe Database Manager of the Application, a process has a single one unless it is created again as
+     * under Robolectric, where each test has its own Application and Database directory
+     *
+     * @param context of any component, only its Application Context is kept
+     * @return RecipeDatabaseManager shared instance
+     */
+    public static synchronized RecipeDatabaseManager getInstance(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != applicationContext) {
+            sInstance = new RecipeDatabaseManager(applicationContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Acquire a reference to the shared Database, opening it on first use
+     *
+     * @return SQLiteDatabase shared writable database
+     * @throws SQLException throw SQL Exception
+     */
+    public SQLiteDatabase acquireDatabase() throws SQLException {
+        SQLiteDatabase sqLiteDatabase;
+        boolean scheduleBackfill = false;
+        boolean scheduleCompaction = false;
+        synchronized (this) {
+            if (mReferenceCount == 0 || mSQLiteDatabase == null) {
+                mSQLiteDatabase = mDBHelper.getWritableDatabase();
+                mOpenCount++;
+                // Recipes cached from an earlier open may no longer match the file
+                RecipeCache.getInstance().invalidateAll();
+                // Backfills left by an upgrade, or by a process killed before finishing them
+                if (!mBackfillScheduled && mDBHelper.getMigrationEngine().hasPendingBackfills(mSQLiteDatabase)) {
+                    mBackfillScheduled = true;
+                    scheduleBackfill = true;
+                }
+                // Deleted recipes or free pages left by a process stopped before compacting them
+                if (!mCompactionChecked) {
+                    mCompactionChecked = true;
+                    scheduleCompaction = Compactor.isDue(mSQLiteDatabase);
+                }
+            }
+            mReferenceCount++;
+            sqLiteDatabase = mSQLiteDatabase;
+        }
+        if (scheduleBackfill) {
+            RecipeWriter.getInstance(mContext).runBackfills();
+        }
+        if (scheduleCompaction) {
+            RecipeWriter.getInstance(mContext).scheduleCompaction();
+        }
+        return sqLiteDatabase;
+    }
+
+    /**
+     * Release a reference to the shared Database, closing it when no one holds it anymore
+     */
+    public synchronized void releaseDatabase() {
+        if (mReferenceCount == 0) {
+            throw new IllegalStateException("Database released more times than acquired");
+        }
+        mReferenceCount--;
+        if (mReferenceCount == 0) {
+            mDBHelper.close();
+            mSQLiteDatabase = null;
+            mCloseCount++;
+        }
+    }
+
+    /**
+     * Get the Migration Engine of the Database
+     *
+     * @return MigrationEngine upgrading the Database
+     */
+    MigrationEngine getMigrationEngine() {
+        return mDBHelper.getMigrationEngine();
+    }
+
+    /**
+     * Get the number of users currently holding the Database
+     *
+     * @return int reference count
+     */
+    public synchronized int getReferenceCount() {
+        return mReferenceCount;
+    }
+
+    /**
+     * Get the number of times the Database was physically opened
+     *
+     * @return int open count
+     */
+    public synchronized int getOpenCount() {
+        return mOpenCount;
+    }
+
+    /**
+     * Get the number of times the Database was physically closed
+     *
+     * @return int close count
+     */
+    public synchronized int getCloseCount() {
+        return mCloseCount;
+    }
+}
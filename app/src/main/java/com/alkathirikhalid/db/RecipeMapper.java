@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+
+import com.alkathirikhalid.bean.Recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p><strong>Recipe Mapper<strong/></p>
+ * <p>This Class turns Cursor rows into Recipes, the column indexes are resolved once per Cursor so reading a row
+ * is only the typed getters. Columns missing from the Cursor, like the ingredients of a summary, are read as null or 0<p/>
+ */
+public final class RecipeMapper {
+    /**
+     * Cursor the rows are read from
+     */
+    private final Cursor mCursor;
+    /**
+     * Index of the id column
+     */
+    private final int mIdIndex;
+    /**
+     * Index of the title column
+     */
+    private final int mTitleIndex;
+    /**
+     * Index of the ingredients column, -1 if absent
+     */
+    private final int mIngredientsIndex;
+    /**
+     * Index of the steps column, -1 if absent
+     */
+    private final int mStepsIndex;
+    /**
+     * Index of the type id column, -1 if absent
+     */
+    private final int mTypeIdIndex;
+    /**
+     * Index of the type name column, -1 if absent
+     */
+    private final int mTypeIndex;
+
+    /**
+     * Constructor, resolves the column indexes of the Cursor
+     *
+     * @param cursor with at least the id and title columns
+     * @throws IllegalArgumentException if the id or title column is missing
+     */
+    public RecipeMapper(Cursor cursor) {
+        mCursor = cursor;
+        mIdIndex = cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID);
+        mTitleIndex = cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE);
+        mIngredientsIndex = cursor.getColumnIndex(RecipeDBAdaptor.KEY_INGREDIENTS);
+        mStepsIndex = cursor.getColumnIndex(RecipeDBAdaptor.KEY_STEPS);
+        mTypeIdIndex = cursor.getColumnIndex(RecipeDBAdaptor.KEY_TYPE_ID);
+        mTypeIndex = cursor.getColumnIndex(RecipeDBAdaptor.KEY_TYPE);
+    }
+
+    /**
+     * Read the row the Cursor is on
+     *
+     * @return Recipe of the current row
+     */
+    public Recipe map() {
+        return new Recipe(mCursor.getLong(mIdIndex),
+                mCursor.getString(mTitleIndex),
+                mIngredientsIndex < 0 ? null : mCursor.getString(mIngredientsIndex),
+                mStepsIndex < 0 ? null : mCursor.getString(mStepsIndex),
+                mTypeIdIndex < 0 ? 0 : mCursor.getLong(mTypeIdIndex),
+                mTypeIndex < 0 ? null : mCursor.getString(mTypeIndex));
+    }
+
+    /**
+     * Read the rows after the current position and close the Cursor
+     *
+     * @param cursor positioned before the first row to read
+     * @return List of Recipes in Cursor order
+     */
+    public static List<Recipe> mapAll(Cursor cursor) {
+        try {
+            List<Recipe> recipes = new ArrayList<Recipe>(Math.max(cursor.getCount() - cursor.getPosition() - 1, 0));
+            RecipeMapper mapper = new RecipeMapper(cursor);
+            while (cursor.moveToNext()) {
+                recipes.add(mapper.map());
+            }
+            return recipes;
+        } finally {
+            cursor.close();
+        }
+    }
+}
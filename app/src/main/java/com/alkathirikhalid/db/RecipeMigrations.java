@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p><strong>Recipe Migrations<strong/></p>
+ * <p>This Class is used to list the Migrations of the Recipe Database, one per version after the first<p/>
+ */
+final class RecipeMigrations {
+
+    /**
+     * Not instantiable
+     */
+    private RecipeMigrations() {
+    }
+
+    /**
+     * Get every Migration of the Recipe Database
+     *
+     * @param context Application Context, used to read the Recipe Types XML asset
+     * @return List of Migration in version order
+     */
+    static List<Migration> all(final Context context) {
+        List<Migration> migrations = new ArrayList<Migration>();
+        // Version 2 adds the Full-Text Search Table, indexing the recipes already stored
+        migrations.add(new Migration(2) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                // Rebuilt at once, the delete triggers of an external content table expect every row to be indexed
+                RecipeDBAdaptor.DBHelper.createSearchTable(sqLiteDatabase);
+                RecipeDBAdaptor.DBHelper.createSearchTriggers(sqLiteDatabase);
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.REBUILD_SEARCH_TABLE);
+            }
+        });
+        // Version 3 moves the free text type into the Recipe Type Table, referenced by id
+        migrations.add(new Migration(3) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                RecipeDBAdaptor.DBHelper.upgradeToTypeTable(context, sqLiteDatabase);
+            }
+        });
+        // Version 4 adds the title index used by the paged recipe list
+        migrations.add(new Migration(4) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.CREATE_TITLE_INDEX);
+            }
+        });
+        // Version 5 covers the type filter with a type and title index, the type id index is its prefix
+        migrations.add(new Migration(5) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.CREATE_TYPE_TITLE_INDEX);
+                sqLiteDatabase.execSQL("DROP INDEX IF EXISTS " + RecipeDBAdaptor.TYPE_INDEX);
+            }
+        });
+        // Version 6 adds the Ingredient index, filled from the recipes already stored in the background
+        migrations.add(new Migration(6) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                IngredientIndex.createTables(sqLiteDatabase);
+            }
+
+            @Override
+            Backfill getBackfill() {
+                return new IngredientBackfill();
+            }
+        });
+        // Version 7 keeps the Full-Text Search Table in step from the adaptor, so long text can be stored compressed
+        migrations.add(new Migration(7) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                RecipeDBAdaptor.DBHelper.dropSearchTriggers(sqLiteDatabase);
+            }
+
+            @Override
+            Backfill getBackfill() {
+                return new CompressionBackfill();
+            }
+        });
+        // Version 8 keeps deleted recipes for the Compactor, the title indexes lead with the deleted flag
+        migrations.add(new Migration(8) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.ADD_DELETED_COLUMN);
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.CREATE_LIVE_TYPE_TITLE_INDEX);
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.CREATE_LIVE_TITLE_INDEX);
+                sqLiteDatabase.execSQL("DROP INDEX IF EXISTS " + RecipeDBAdaptor.TYPE_TITLE_INDEX);
+                sqLiteDatabase.execSQL("DROP INDEX IF EXISTS " + RecipeDBAdaptor.TITLE_INDEX);
+            }
+        });
+        // Version 9 lets the editor find a new recipe again by the key it was inserted under
+        migrations.add(new Migration(9) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.ADD_CLIENT_KEY_COLUMN);
+                sqLiteDatabase.execSQL(RecipeDBAdaptor.CREATE_CLIENT_KEY_INDEX);
+            }
+        });
+        return migrations;
+    }
+
+    /**
+     * Index the ingredients of the recipes stored before version 6, new and updated recipes index themselves, deleted
+     * ones are skipped as they left the index
+     */
+    static final class IngredientBackfill extends Backfill {
+        /**
+         * Constructor
+         */
+        IngredientBackfill() {
+            super("ingredient_index");
+        }
+
+        @Override
+        long getUntilId(SQLiteDatabase sqLiteDatabase) {
+            return DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT IFNULL(MAX(" + RecipeDBAdaptor.KEY_ID + "), 0) FROM "
+                    + RecipeDBAdaptor.DATABASE_TABLE, null);
+        }
+
+        @Override
+        long backfill(SQLiteDatabase sqLiteDatabase, long afterId, long untilId, int batchSize) {
+            long lastId = afterId;
+            StatementCache statementCache = new StatementCache(sqLiteDatabase);
+            IngredientIndex ingredientIndex = new IngredientIndex(statementCache);
+            Cursor cursor = sqLiteDatabase.query(RecipeDBAdaptor.DATABASE_TABLE, new String[]{RecipeDBAdaptor.KEY_ID,
+                            RecipeDBAdaptor.KEY_INGREDIENTS}, RecipeDBAdaptor.LIVE + " AND " + RecipeDBAdaptor.KEY_ID + " > ? AND "
+                            + RecipeDBAdaptor.KEY_ID + " <= ?",
+                    new String[]{String.valueOf(afterId), String.valueOf(untilId)}, null, null, RecipeDBAdaptor.KEY_ID,
+                    String.valueOf(batchSize));
+            try {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    ingredientIndex.index(lastId, DecodingCursor.getString(cursor, 1));
+                }
+            } finally {
+                cursor.close();
+                statementCache.close();
+            }
+            return lastId;
+        }
+    }
+
+    /**
+     * Compress the long ingredients and steps stored before version 7, the search table keeps the words it indexed,
+     * deleted ones are left for the Compactor to purge
+     */
+    static final class CompressionBackfill extends Backfill {
+        /**
+         * Constructor
+         */
+        CompressionBackfill() {
+            super("compress_text");
+        }
+
+        @Override
+        long getUntilId(SQLiteDatabase sqLiteDatabase) {
+            return DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT IFNULL(MAX(" + RecipeDBAdaptor.KEY_ID + "), 0) FROM "
+                    + RecipeDBAdaptor.DATABASE_TABLE, null);
+        }
+
+        @Override
+        long backfill(SQLiteDatabase sqLiteDatabase, long afterId, long untilId, int batchSize) {
+            long lastId = afterId;
+            Cursor cursor = sqLiteDatabase.query(RecipeDBAdaptor.DATABASE_TABLE, new String[]{RecipeDBAdaptor.KEY_ID,
+                            RecipeDBAdaptor.KEY_INGREDIENTS, RecipeDBAdaptor.KEY_STEPS}, RecipeDBAdaptor.LIVE + " AND "
+                            + RecipeDBAdaptor.KEY_ID + " > ? AND " + RecipeDBAdaptor.KEY_ID + " <= ?", new String[]{String.valueOf(afterId), String.valueOf(untilId)},
+                    null, null, RecipeDBAdaptor.KEY_ID, String.valueOf(batchSize));
+            try {
+                ContentValues contentValues = new ContentValues();
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    // Turned off meanwhile, the rows are skipped and stay readable as they are
+                    if (!RecipeDBAdaptor.isCompressedStorage()) {
+                        continue;
+                    }
+                    contentValues.clear();
+                    putEncoded(contentValues, RecipeDBAdaptor.KEY_INGREDIENTS, cursor, 1);
+                    putEncoded(contentValues, RecipeDBAdaptor.KEY_STEPS, cursor, 2);
+                    if (contentValues.size() > 0) {
+                        sqLiteDatabase.update(RecipeDBAdaptor.DATABASE_TABLE, contentValues, RecipeDBAdaptor.KEY_ID + " = ?",
+                                new String[]{String.valueOf(lastId)});
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return lastId;
+        }
+
+        /**
+         * Put the compressed value of a plain text column, if compressing it pays
+         *
+         * @param contentValues to fill
+         * @param key           column name
+         * @param cursor        positioned on the row
+         * @param columnIndex   of the column
+         */
+        private static void putEncoded(ContentValues contentValues, String key, Cursor cursor, int columnIndex) {
+            if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_STRING) {
+                byte[] encoded = RecipeCodec.encode(cursor.getString(columnIndex));
+                if (encoded != null) {
+                    contentValues.put(key, encoded);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.os.Process;
+
+import com.alkathirikhalid.bean.Recipe;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p><strong>Recipe Prefetcher<strong/></p>
+ * <p>This Class is used to read the Recipes shown on the list into the Recipe Cache on a background thread, so the
+ * detail screen opened from a row renders from memory. It counts how many detail opens were served by a prefetch<p/>
+ */
+public class RecipePrefetcher {
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "RecipePrefetcher";
+    /**
+     * Maximum number of recipes waiting to be read, more requests are dropped until the queue drains
+     */
+    static final int MAX_PENDING = 32;
+    /**
+     * Maximum number of prefetched recipes remembered until they are opened
+     */
+    static final int MAX_PREFETCHED = 256;
+    /**
+     * Process wide instance
+     */
+    private static RecipePrefetcher sInstance;
+    /**
+     * Application Context, used to tell a new Application apart
+     */
+    private final Context mContext;
+    /**
+     * Recipe Database Adaptor used on the prefetch thread only
+     */
+    private final RecipeDBAdaptor mRecipeDBAdaptor;
+    /**
+     * Recipe Cache the recipes are read into
+     */
+    private final RecipeCache mRecipeCache = RecipeCache.getInstance();
+    /**
+     * Single prefetch thread
+     */
+    private final ExecutorService mExecutor;
+    /**
+     * Reads queued or running by id, guarded by itself
+     */
+    private final Map<Long, Future<Recipe>> mPending = new HashMap<Long, Future<Recipe>>();
+    /**
+     * Ids read by a prefetch and not opened yet, oldest first, guarded by itself
+     */
+    private final Map<Long, Boolean> mPrefetched = new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_PREFETCHED;
+        }
+    };
+    /**
+     * Number of recipes read by a prefetch
+     */
+    private final AtomicInteger mPrefetches = new AtomicInteger();
+    /**
+     * Number of detail opens
+     */
+    private final AtomicInteger mOpens = new AtomicInteger();
+    /**
+     * Number of detail opens served from a prefetched recipe
+     */
+    private final AtomicInteger mServed = new AtomicInteger();
+
+    /**
+     * Class Constructor
+     *
+     * @param context Application Context
+     */
+    private RecipePrefetcher(Context context) {
+        mContext = context;
+        mRecipeDBAdaptor = new RecipeDBAdaptor(context);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, TAG);
+            }
+        });
+    }
+
+    /**
+     * Get the process wide Recipe Prefetcher
+     *
+     * @param context of any component, only its Application Context is kept
+     * @return RecipePrefetcher shared instance
+     */
+    public static synchronized RecipePrefetcher getInstance(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != applicationContext) {
+            sInstance = new RecipePrefetcher(applicationContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Read a Recipe into the Recipe Cache on the prefetch thread, unless it is already queued
+     *
+     * @param keyID of recipe row, ignored if not positive
+     */
+    public void prefetch(final long keyID) {
+        if (keyID <= 0) {
+            return;
+        }
+        FutureTask<Recipe> read = new FutureTask<Recipe>(new Callable<Recipe>() {
+            @Override
+            public Recipe call() {
+                return load(keyID);
+            }
+        }) {
+            @Override
+            protected void done() {
+                // Read, failed or cancelled by a detail open
+                synchronized (mPending) {
+                    mPending.remove(keyID);
+                }
+            }
+        };
+        synchronized (mPending) {
+            // Rows scrolled past quickly are not worth a read, drop requests while the queue is full
+            if (mPending.size() >= MAX_PENDING || mPending.containsKey(keyID)) {
+                return;
+            }
+            mPending.put(keyID, read);
+        }
+        mExecutor.execute(read);
+    }
+
+    /**
+     * Read a Recipe into the Recipe Cache, on the prefetch thread
+     *
+     * @param keyID of recipe row
+     * @return Recipe, null if there is no such live recipe
+     */
+    private Recipe load(long keyID) {
+        mRecipeDBAdaptor.open();
+        try {
+            Recipe recipe = mRecipeDBAdaptor.getRecipe(keyID);
+            if (recipe != null) {
+                synchronized (mPrefetched) {
+                    mPrefetched.put(keyID, Boolean.TRUE);
+                }
+                mPrefetches.incrementAndGet();
+            }
+            return recipe;
+        } finally {
+            mRecipeDBAdaptor.close();
+        }
+    }
+
+    /**
+     * Get a Recipe for its detail screen, from memory if a prefetch read it and no write replaced it since. A prefetch
+     * of the recipe already running is waited for, one still queued is cancelled and read here instead
+     *
+     * @param recipeDBAdaptor open Recipe Database Adaptor read from when the recipe is not in memory
+     * @param keyID           of recipe row
+     * @return Recipe, null if there is no such live recipe
+     */
+    public Recipe getRecipe(RecipeDBAdaptor recipeDBAdaptor, long keyID) {
+        mOpens.incrementAndGet();
+        boolean prefetched;
+        synchronized (mPrefetched) {
+            prefetched = mPrefetched.remove(keyID) != null;
+        }
+        Recipe recipe = mRecipeCache.get(keyID);
+        if (recipe != null) {
+            if (prefetched) {
+                mServed.incrementAndGet();
+            }
+            return recipe;
+        }
+        Future<Recipe> pending;
+        synchronized (mPending) {
+            pending = mPending.get(keyID);
+        }
+        if (pending != null && !pending.cancel(false)) {
+            // Running or just finished, waiting is shorter than reading the recipe twice
+            try {
+                recipe = pending.get();
+                synchronized (mPrefetched) {
+                    mPrefetched.remove(keyID);
+                }
+                if (recipe != null) {
+                    mServed.incrementAndGet();
+                }
+                return recipe;
+            } catch (ExecutionException e) {
+                // Read again below
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // The cache was already missed above, read without counting a second miss
+        return recipeDBAdaptor.readRecipe(keyID);
+    }
+
+    /**
+     * Get the number of recipes read by a prefetch
+     *
+     * @return int prefetched recipes
+     */
+    public int getPrefetches() {
+        return mPrefetches.get();
+    }
+
+    /**
+     * Get the number of detail opens
+     *
+     * @return int detail opens
+     */
+    public int getOpens() {
+        return mOpens.get();
+    }
+
+    /**
+     * Get the number of detail opens served from a prefetched recipe
+     *
+     * @return int detail opens served from a prefetch
+     */
+    public int getServedFromPrefetch() {
+        return mServed.get();
+    }
+
+    /**
+     * Get Prefetch Stats String
+     *
+     * @return String with the prefetches, detail opens and opens served from a prefetch
+     */
+    @Override
+    public String toString() {
+        int opens = mOpens.get();
+        int served = mServed.get();
+        return "prefetch loaded=" + mPrefetches.get() + " opens=" + opens + " served=" + served
+                + (opens > 0 ? " (" + served * 100 / opens + "%)" : "");
+    }
+}
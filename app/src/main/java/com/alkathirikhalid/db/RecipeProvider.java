@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.ContentProvider;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.List;
+
+/**
+ * <p><strong>Recipe Provider<strong/></p>
+ * <p>This Class is used to let other apps read recipes through the URIs of RecipeContract. Lists are returned one
+ * bounded page at a time so a cursor never carries the whole table across the binder, and every committed change
+ * is forwarded to the observers of RecipeContract.CONTENT_URI. Recipes are written by this app only<p/>
+ */
+public class RecipeProvider extends ContentProvider {
+    /**
+     * List of recipes
+     */
+    private static final int RECIPES = 1;
+    /**
+     * One recipe by id
+     */
+    private static final int RECIPE_ID = 2;
+    /**
+     * Recipes of a type
+     */
+    private static final int RECIPES_BY_TYPE = 3;
+    /**
+     * Recipes matching a search
+     */
+    private static final int SEARCH = 4;
+    /**
+     * URI Matcher of RecipeContract
+     */
+    private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        URI_MATCHER.addURI(RecipeContract.AUTHORITY, "recipes", RECIPES);
+        URI_MATCHER.addURI(RecipeContract.AUTHORITY, "recipes/#", RECIPE_ID);
+        URI_MATCHER.addURI(RecipeContract.AUTHORITY, "recipes/type/#", RECIPES_BY_TYPE);
+        URI_MATCHER.addURI(RecipeContract.AUTHORITY, "recipes/search", SEARCH);
+    }
+
+    /**
+     * Recipe Database Adaptor, opened on the first query and held until shutdown
+     */
+    private RecipeDBAdaptor mRecipeDBAdaptor;
+    /**
+     * Forwards committed changes to the observers of the provider
+     */
+    private final RecipeChangeNotifier.OnRecipesChangedListener mChangeListener = new RecipeChangeNotifier.OnRecipesChangedListener() {
+        @Override
+        public void onRecipesChanged(long sequence, List<RecipeChange> changes) {
+            getContext().getContentResolver().notifyChange(RecipeContract.CONTENT_URI, null);
+        }
+    };
+
+    /**
+     * When the provider is created, on the main thread
+     *
+     * @return true once the provider is ready
+     */
+    @Override
+    public boolean onCreate() {
+        // The Database is opened on the first query, so starting the process stays cheap
+        RecipeChangeNotifier.getInstance().addListener(mChangeListener);
+        return true;
+    }
+
+    /**
+     * Read recipes, selection and sort order are fixed by each URI
+     *
+     * @param uri           one of the RecipeContract URIs, with its paging parameters
+     * @param projection    ignored, every URI returns the columns listed in RecipeContract
+     * @param selection     must be null
+     * @param selectionArgs must be null
+     * @param sortOrder     must be null
+     * @return Cursor with at most one page of recipes
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        if (selection != null || sortOrder != null) {
+            throw new IllegalArgumentException("Selection and sort order are not supported: " + uri);
+        }
+        RecipeDBAdaptor recipeDBAdaptor = getRecipeDBAdaptor();
+        Cursor cursor;
+        switch (URI_MATCHER.match(uri)) {
+            case RECIPES:
+                cursor = fetchPage(recipeDBAdaptor, RecipeDBAdaptor.ALL_TYPES, uri);
+                break;
+            case RECIPES_BY_TYPE:
+                cursor = fetchPage(recipeDBAdaptor, ContentUris.parseId(uri), uri);
+                break;
+            case RECIPE_ID:
+                cursor = recipeDBAdaptor.fetchRecipe(ContentUris.parseId(uri));
+                break;
+            case SEARCH:
+                String query = uri.getQueryParameter(RecipeContract.PARAM_QUERY);
+                // Nothing to search for, the first page of every recipe rather than all of them
+                cursor = RecipeDBAdaptor.toMatchTerms(query).isEmpty()
+                        ? recipeDBAdaptor.fetchRecipePage(RecipeDBAdaptor.ALL_TYPES, null, 0, getLimit(uri))
+                        : recipeDBAdaptor.searchRecipeSummaries(query, getLimit(uri));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), RecipeContract.CONTENT_URI);
+        return cursor;
+    }
+
+    /**
+     * Read a page of recipes ordered by title, by keyset if the last title is given, else by offset
+     *
+     * @param recipeDBAdaptor open adaptor
+     * @param typeId          of the recipe type, ALL_TYPES for every recipe
+     * @param uri             with the paging parameters
+     * @return Cursor with the Summary Columns of at most one page of recipes
+     */
+    private static Cursor fetchPage(RecipeDBAdaptor recipeDBAdaptor, long typeId, Uri uri) {
+        int limit = getLimit(uri);
+        String afterTitle = uri.getQueryParameter(RecipeContract.PARAM_AFTER_TITLE);
+        if (afterTitle != null) {
+            long afterId = getLongParameter(uri, RecipeContract.PARAM_AFTER_ID, 0);
+            return recipeDBAdaptor.fetchRecipePage(typeId, afterTitle, afterId, limit);
+        }
+        long offset = getLongParameter(uri, RecipeContract.PARAM_OFFSET, 0);
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid " + RecipeContract.PARAM_OFFSET + ": " + uri);
+        }
+        return offset == 0 ? recipeDBAdaptor.fetchRecipePage(typeId, null, 0, limit)
+                : recipeDBAdaptor.fetchRecipePageAt(typeId, (int) offset, limit);
+    }
+
+    /**
+     * Get the page size of a query
+     *
+     * @param uri with the paging parameters
+     * @return int PARAM_LIMIT, PAGE_SIZE if it is not given
+     */
+    private static int getLimit(Uri uri) {
+        long limit = getLongParameter(uri, RecipeContract.PARAM_LIMIT, RecipeContract.PAGE_SIZE);
+        if (limit < 1 || limit > RecipeContract.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(RecipeContract.PARAM_LIMIT + " must be between 1 and "
+                    + RecipeContract.MAX_PAGE_SIZE + ": " + uri);
+        }
+        return (int) limit;
+    }
+
+    /**
+     * Get a numeric query parameter
+     *
+     * @param uri          with the query parameters
+     * @param key          of the parameter
+     * @param defaultValue returned if the parameter is not given
+     * @return long value of the parameter
+     */
+    private static long getLongParameter(Uri uri, String key, long defaultValue) {
+        String value = uri.getQueryParameter(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + uri, e);
+        }
+    }
+
+    /**
+     * Get the Recipe Database Adaptor, opening it on first use
+     *
+     * @return RecipeDBAdaptor open until shutdown
+     */
+    private synchronized RecipeDBAdaptor getRecipeDBAdaptor() {
+        if (mRecipeDBAdaptor == null) {
+            mRecipeDBAdaptor = new RecipeDBAdaptor(getContext()).open();
+        }
+        return mRecipeDBAdaptor;
+    }
+
+    /**
+     * Stop forwarding changes and release the Database, the system never calls it but tests do
+     */
+    @Override
+    public synchronized void shutdown() {
+        RecipeChangeNotifier.getInstance().removeListener(mChangeListener);
+        if (mRecipeDBAdaptor != null) {
+            mRecipeDBAdaptor.close();
+            mRecipeDBAdaptor = null;
+        }
+        super.shutdown();
+    }
+
+    /**
+     * Get the MIME type of a URI
+     *
+     * @param uri one of the RecipeContract URIs
+     * @return String CONTENT_ITEM_TYPE for a single recipe, CONTENT_TYPE for lists
+     */
+    @Override
+    public String getType(Uri uri) {
+        switch (URI_MATCHER.match(uri)) {
+            case RECIPE_ID:
+                return RecipeContract.CONTENT_ITEM_TYPE;
+            case RECIPES:
+            case RECIPES_BY_TYPE:
+            case SEARCH:
+                return RecipeContract.CONTENT_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Recipes are read only: " + uri);
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Recipes are read only: " + uri);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Recipes are read only: " + uri);
+    }
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p><strong>Recipe Writer<strong/></p>
+ * <p>This Class is used to run every Recipe mutation on a single background writer thread, in the order submitted.
+ * Updates of a recipe still waiting in the queue are coalesced into one write, results are returned as a Future
+ * and delivered to an optional Callback on the main thread, as are the errors of failed mutations<p/>
+ */
+public class RecipeWriter {
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "RecipeWriter";
+    /**
+     * Delay before deleted recipes are purged, so a burst of deletes is compacted in one go
+     */
+    static final long COMPACTION_DELAY_MS = 30000;
+    /**
+     * Instance of the current Application
+     */
+    private static RecipeWriter sInstance;
+    /**
+     * Application Context, used to tell a new Application apart
+     */
+    private final Context mContext;
+    /**
+     * Recipe Database Adaptor used on the writer thread only
+     */
+    private final RecipeDBAdaptor mRecipeDBAdaptor;
+    /**
+     * Single writer thread
+     */
+    private final ExecutorService mExecutor;
+    /**
+     * Handler delivering Callbacks on the main thread
+     */
+    private final Handler mMainHandler;
+    /**
+     * Updates waiting in the queue by recipe id, guarded by itself
+     */
+    private final Map<Long, Update> mPendingUpdates = new HashMap<Long, Update>();
+    /**
+     * True while a compaction is waiting or running
+     */
+    private final AtomicBoolean mCompactionScheduled = new AtomicBoolean();
+    /**
+     * Number of mutations queued or running, the Database is held while it is not 0
+     */
+    private final AtomicInteger mQueued = new AtomicInteger();
+    /**
+     * True while the writer holds a reference to the shared Database, used on the writer thread only
+     */
+    private boolean mDatabaseHeld;
+
+    /**
+     * Result of a mutation delivered on the main thread
+     *
+     * @param <T> type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Called on the main thread once the mutation is committed
+         *
+         * @param result of the mutation
+         */
+        void onComplete(T result);
+
+        /**
+         * Called on the main thread if the mutation threw, its transaction is rolled back
+         *
+         * @param error thrown by the mutation
+         */
+        void onFailed(Throwable error);
+    }
+
+    /**
+     * Class Constructor
+     *
+     * @param context Application Context
+     */
+    private RecipeWriter(Context context) {
+        mContext = context;
+        mRecipeDBAdaptor = new RecipeDBAdaptor(context);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, TAG);
+            }
+        });
+    }
+
+    /**
+     * Get the Recipe Writer of the Application, writing to the Database of its Recipe Database Manager
+     *
+     * @param context of any component, only its Application Context is kept
+     * @return RecipeWriter shared instance
+     */
+    public static synchronized RecipeWriter getInstance(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != applicationContext) {
+            sInstance = new RecipeWriter(applicationContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Add a Recipe to Database
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @param callback    receiving the new row id, may be null
+     * @return Future of the new row id, -1 if the insert failed
+     */
+    public Future<Long> createRecipe(String title, String ingredients, String steps, long typeId,
+                                     Callback<Long> callback) {
+        return createRecipe(title, ingredients, steps, typeId, null, callback);
+    }
+
+    /**
+     * Add a Recipe to Database under a Client Key, kept in saved instance state until the row id is known. Inserting
+     * again under the same key, even after the process was restarted, updates the recipe instead of adding another
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @param clientKey   unique key chosen before the first insert, null for none
+     * @param callback    receiving the row id, may be null
+     * @return Future of the row id, -1 if the write failed
+     */
+    public Future<Long> createRecipe(final String title, final String ingredients, final String steps,
+                                     final long typeId, final String clientKey, Callback<Long> callback) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return mRecipeDBAdaptor.createRecipe(title, ingredients, steps, typeId, clientKey);
+            }
+        }, callback);
+    }
+
+    /**
+     * Update a Recipe, merged with any update of the same recipe still waiting in the queue
+     *
+     * @param keyID       of recipe row
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @param callback    receiving true if the update was successful, may be null
+     * @return Future of the update result
+     */
+    public Future<Boolean> updateRecipe(long keyID, String title, String ingredients, String steps,
+                                        long typeId, Callback<Boolean> callback) {
+        synchronized (mPendingUpdates) {
+            Update update = mPendingUpdates.get(keyID);
+            if (update != null) {
+                // Not started yet, the latest values win and a single write is made
+                update.set(title, ingredients, steps, typeId);
+                update.task.addCallback(callback);
+                return update.task;
+            }
+            update = new Update(keyID);
+            update.set(title, ingredients, steps, typeId);
+            update.task = new Mutation<Boolean>(update);
+            update.task.addCallback(callback);
+            mPendingUpdates.put(keyID, update);
+            execute(update.task);
+            return update.task;
+        }
+    }
+
+    /**
+     * Update a Recipe whose insert is still in the queue
+     *
+     * @param pendingId   Future returned by createRecipe
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @param callback    receiving true if the update was successful, may be null
+     * @return Future of the update result
+     */
+    public Future<Boolean> updateRecipe(final Future<Long> pendingId, final String title, final String ingredients,
+                                        final String steps, final long typeId, Callback<Boolean> callback) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                // The insert was queued first on this single thread, so it is already done
+                long keyID = pendingId.get();
+                return keyID > 0 && mRecipeDBAdaptor.updateRecipe(keyID, title, ingredients, steps, typeId);
+            }
+        }, callback);
+    }
+
+    /**
+     * Delete a Recipe, dropping any update of it still waiting in the queue
+     *
+     * @param keyID    of recipe row
+     * @param callback receiving true if the deletion was successful, may be null
+     * @return Future of the deletion result
+     */
+    public Future<Boolean> deleteRecipe(final long keyID, Callback<Boolean> callback) {
+        synchronized (mPendingUpdates) {
+            Update update = mPendingUpdates.remove(keyID);
+            if (update != null) {
+                update.cancelled = true;
+            }
+        }
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean deleted = mRecipeDBAdaptor.deleteRecipe(keyID);
+                if (deleted) {
+                    scheduleCompaction();
+                }
+                return deleted;
+            }
+        }, callback);
+    }
+
+    /**
+     * Explain how SQLite runs a slow query, on the writer thread so the thread that ran it does not run a second one
+     *
+     * @param sql           of the query
+     * @param selectionArgs of the query, may be null
+     * @return Future of the plan, one line per step
+     */
+    Future<String> explain(final String sql, final String[] selectionArgs) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return mRecipeDBAdaptor.explain(sql, selectionArgs);
+            }
+        }, null);
+    }
+
+    /**
+     * Run the backfills left by a Database upgrade, one batch per task so recipe writes are not held back
+     */
+    void runBackfills() {
+        execute(new Mutation<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean pending = mRecipeDBAdaptor.runBackfillBatch(MigrationEngine.BACKFILL_BATCH_SIZE);
+                if (pending) {
+                    // Queued behind the writes submitted meanwhile
+                    runBackfills();
+                }
+                return pending;
+            }
+        }));
+    }
+
+    /**
+     * Run a compaction once COMPACTION_DELAY_MS passed, unless one is already waiting or running
+     */
+    void scheduleCompaction() {
+        if (mCompactionScheduled.compareAndSet(false, true)) {
+            mMainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    runCompaction();
+                }
+            }, COMPACTION_DELAY_MS);
+        }
+    }
+
+    /**
+     * Purge deleted recipes and give free pages back, one batch per task so recipe writes are not held back
+     */
+    void runCompaction() {
+        execute(new Mutation<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean pending = false;
+                try {
+                    pending = mRecipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE);
+                } finally {
+                    if (pending) {
+                        // Queued behind the writes submitted meanwhile
+                        runCompaction();
+                    } else {
+                        mCompactionScheduled.set(false);
+                    }
+                }
+                return pending;
+            }
+        }));
+    }
+
+    /**
+     * Queue a mutation on the writer thread
+     *
+     * @param callable mutation
+     * @param callback receiving the result, may be null
+     * @param <T>      type of the result
+     * @return Future of the result
+     */
+    private <T> Future<T> submit(Callable<T> callable, Callback<T> callback) {
+        Mutation<T> task = new Mutation<T>(callable);
+        task.addCallback(callback);
+        execute(task);
+        return task;
+    }
+
+    /**
+     * Queue a mutation on the writer thread, counted until it ran
+     *
+     * @param task mutation
+     */
+    private void execute(Mutation<?> task) {
+        mQueued.incrementAndGet();
+        mExecutor.execute(task);
+    }
+
+    /**
+     * Run a mutation with the shared Database held open, one reference is held until the queue is empty so a burst
+     * of writes does not reopen the Database, and empty its caches, for each write
+     *
+     * @param callable mutation
+     * @param <T>      type of the result
+     * @return result of the mutation
+     * @throws Exception thrown by the mutation
+     */
+    private <T> T write(Callable<T> callable) throws Exception {
+        try {
+            if (!mDatabaseHeld) {
+                mRecipeDBAdaptor.open();
+                mDatabaseHeld = true;
+            }
+            return callable.call();
+        } finally {
+            // A mutation queued meanwhile runs after this one on this thread and opens it again if needed
+            if (mQueued.decrementAndGet() == 0 && mDatabaseHeld) {
+                mRecipeDBAdaptor.close();
+                mDatabaseHeld = false;
+            }
+        }
+    }
+
+    /**
+     * A queued mutation delivering its result to Callbacks on the main thread
+     *
+     * @param <T> type of the result
+     */
+    private final class Mutation<T> extends FutureTask<T> {
+        /**
+         * Callbacks waiting for the result, guarded by itself
+         */
+        private final List<Callback<T>> callbacks = new ArrayList<Callback<T>>();
+        /**
+         * True once the callbacks were handed the result, guarded by callbacks
+         */
+        private boolean delivered;
+
+        /**
+         * Constructor
+         *
+         * @param callable mutation
+         */
+        Mutation(final Callable<T> callable) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return write(callable);
+                }
+            });
+        }
+
+        /**
+         * Add a Callback for the result, delivered at once if the mutation already finished
+         *
+         * @param callback to add, ignored if null
+         */
+        void addCallback(Callback<T> callback) {
+            if (callback == null) {
+                return;
+            }
+            synchronized (callbacks) {
+                if (!delivered) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            deliver(Collections.singletonList(callback));
+        }
+
+        /**
+         * Called on the writer thread once the mutation finished
+         */
+        @Override
+        protected void done() {
+            List<Callback<T>> waiting;
+            synchronized (callbacks) {
+                delivered = true;
+                waiting = new ArrayList<Callback<T>>(callbacks);
+                callbacks.clear();
+            }
+            try {
+                get();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Recipe write failed", e.getCause());
+            } catch (InterruptedException e) {
+                // Not thrown once the mutation finished
+            }
+            deliver(waiting);
+        }
+
+        /**
+         * Writes are not cancellable, a queued mutation always runs so it is counted out of mQueued, and a Future
+         * shared by merged updates is never dropped by one of their callers
+         *
+         * @param mayInterruptIfRunning ignored
+         * @return false, the mutation was not cancelled
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        /**
+         * Post the result, or the error, of the finished mutation to Callbacks on the main thread
+         *
+         * @param callbacks to deliver to
+         */
+        private void deliver(final List<Callback<T>> callbacks) {
+            T result = null;
+            Throwable error = null;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                error = e.getCause();
+            } catch (InterruptedException e) {
+                // Not thrown once the mutation finished
+                return;
+            }
+            if (callbacks.isEmpty()) {
+                return;
+            }
+            final T delivered = result;
+            final Throwable failure = error;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Callback<T> callback : callbacks) {
+                        if (failure != null) {
+                            callback.onFailed(failure);
+                        } else {
+                            callback.onComplete(delivered);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A queued update, its values can be replaced until it starts
+     */
+    private final class Update implements Callable<Boolean> {
+        /**
+         * Recipe row id
+         */
+        private final long keyID;
+        /**
+         * Task running this update
+         */
+        private Mutation<Boolean> task;
+        /**
+         * Latest values, guarded by mPendingUpdates
+         */
+        private String title, ingredients, steps;
+        /**
+         * Latest type id, guarded by mPendingUpdates
+         */
+        private long typeId;
+        /**
+         * True if a delete of the recipe was queued before the update started
+         */
+        private boolean cancelled;
+
+        /**
+         * Constructor
+         *
+         * @param keyID of recipe row
+         */
+        Update(long keyID) {
+            this.keyID = keyID;
+        }
+
+        /**
+         * Replace the values to write
+         *
+         * @param title       of recipe
+         * @param ingredients of recipe
+         * @param steps       of recipe
+         * @param typeId      of recipe type
+         */
+        void set(String title, String ingredients, String steps, long typeId) {
+            this.title = title;
+            this.ingredients = ingredients;
+            this.steps = steps;
+            this.typeId = typeId;
+        }
+
+        /**
+         * Write the latest values, later updates of the recipe are queued again
+         *
+         * @return true if the update was successful
+         */
+        @Override
+        public Boolean call() {
+            String title, ingredients, steps;
+            long typeId;
+            synchronized (mPendingUpdates) {
+                if (mPendingUpdates.get(keyID) == this) {
+                    mPendingUpdates.remove(keyID);
+                }
+                if (cancelled) {
+                    return false;
+                }
+                title = this.title;
+                ingredients = this.ingredients;
+                steps = this.steps;
+                typeId = this.typeId;
+            }
+            return mRecipeDBAdaptor.updateRecipe(keyID, title, ingredients, steps, typeId);
+        }
+    }
+}
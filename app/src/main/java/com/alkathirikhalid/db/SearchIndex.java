@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * <p><strong>Search Index<strong/></p>
+ * <p>This Class is used to keep the Full-Text Search Table in step with the recipe table. The search table reads
+ * removed rows back from the recipe table, so compressed text is written back as plain text before a row leaves it.
+ * Its compiled statements come from a Statement Cache, one instance should be used for a single transaction<p/>
+ */
+class SearchIndex {
+    /**
+     * Add Document Statement
+     */
+    private static final String INSERT_DOCUMENT = "INSERT INTO " + RecipeDBAdaptor.SEARCH_TABLE + "(docid, " + RecipeDBAdaptor.KEY_TITLE
+            + ", " + RecipeDBAdaptor.KEY_INGREDIENTS + ", " + RecipeDBAdaptor.KEY_STEPS + ") VALUES (?, ?, ?, ?)";
+    /**
+     * Remove Document Statement, the words to remove are read from the recipe row
+     */
+    private static final String DELETE_DOCUMENT = "DELETE FROM " + RecipeDBAdaptor.SEARCH_TABLE + " WHERE docid = ?";
+    /**
+     * Write plain text back into a recipe row Statement
+     */
+    private static final String RESTORE_TEXT = "UPDATE " + RecipeDBAdaptor.DATABASE_TABLE + " SET " + RecipeDBAdaptor.KEY_INGREDIENTS
+            + " = ?, " + RecipeDBAdaptor.KEY_STEPS + " = ? WHERE " + RecipeDBAdaptor.KEY_ID + " = ?";
+    /**
+     * SQLiteDatabase of the statements
+     */
+    private final SQLiteDatabase sqLiteDatabase;
+    /**
+     * Compiled statements, owned by the Statement Cache
+     */
+    private final SQLiteStatement insertDocument, deleteDocument, restoreText;
+
+    /**
+     * Constructor
+     *
+     * @param statementCache of the SQLiteDatabase to index
+     */
+    SearchIndex(StatementCache statementCache) {
+        this.sqLiteDatabase = statementCache.getDatabase();
+        insertDocument = statementCache.get(INSERT_DOCUMENT);
+        deleteDocument = statementCache.get(DELETE_DOCUMENT);
+        restoreText = statementCache.get(RESTORE_TEXT);
+    }
+
+    /**
+     * Add the words of a recipe
+     *
+     * @param recipeId    of the recipe row
+     * @param title       of recipe
+     * @param ingredients of recipe, plain text
+     * @param steps       of recipe, plain text
+     */
+    void index(long recipeId, String title, String ingredients, String steps) {
+        insertDocument.bindLong(1, recipeId);
+        insertDocument.bindString(2, title);
+        insertDocument.bindString(3, ingredients);
+        insertDocument.bindString(4, steps);
+        insertDocument.executeInsert();
+    }
+
+    /**
+     * Remove the words of a recipe, must run before the row is updated or deleted in the same transaction, which
+     * then overwrites any plain text written back
+     *
+     * @param recipeId of the recipe row
+     */
+    void remove(long recipeId) {
+        Cursor cursor = sqLiteDatabase.query(RecipeDBAdaptor.DATABASE_TABLE, new String[]{RecipeDBAdaptor.KEY_INGREDIENTS,
+                RecipeDBAdaptor.KEY_STEPS}, RecipeDBAdaptor.KEY_ID + " = ?", new String[]{String.valueOf(recipeId)}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            if (cursor.getType(0) == Cursor.FIELD_TYPE_BLOB || cursor.getType(1) == Cursor.FIELD_TYPE_BLOB) {
+                // The search table tokenizes what the row holds, it has to be the text that was indexed
+                restoreText.bindString(1, DecodingCursor.getString(cursor, 0));
+                restoreText.bindString(2, DecodingCursor.getString(cursor, 1));
+                restoreText.bindLong(3, recipeId);
+                restoreText.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+        }
+        deleteDocument.bindLong(1, recipeId);
+        deleteDocument.executeUpdateDelete();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p><strong>Statement Cache<strong/></p>
+ * <p>This Class is used to compile each write and lookup of the database layer once and reuse it, every value is bound
+ * as a parameter so an operation always has the same SQL. Compiled statements are not thread safe, a cache belongs
+ * to the thread using its RecipeDBAdaptor and to the SQLiteDatabase it was created for<p/>
+ */
+class StatementCache {
+    /**
+     * Statements served from a cache, across every cache of the process
+     */
+    private static final AtomicLong sHits = new AtomicLong();
+    /**
+     * Statements compiled, across every cache of the process
+     */
+    private static final AtomicLong sCompilations = new AtomicLong();
+    /**
+     * SQLiteDatabase of the statements
+     */
+    private final SQLiteDatabase sqLiteDatabase;
+    /**
+     * Compiled statements by the SQL of their operation
+     */
+    private final Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+
+    /**
+     * Constructor
+     *
+     * @param sqLiteDatabase Obj for CRUD operations
+     */
+    StatementCache(SQLiteDatabase sqLiteDatabase) {
+        this.sqLiteDatabase = sqLiteDatabase;
+    }
+
+    /**
+     * Get the SQLiteDatabase of the statements
+     *
+     * @return SQLiteDatabase the statements were compiled for
+     */
+    SQLiteDatabase getDatabase() {
+        return sqLiteDatabase;
+    }
+
+    /**
+     * Get the compiled statement of an operation, compiling it on first use
+     *
+     * @param sql of the operation, with a ? for every value
+     * @return SQLiteStatement with no values bound
+     */
+    SQLiteStatement get(String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement != null) {
+            sHits.incrementAndGet();
+            statement.clearBindings();
+            return statement;
+        }
+        sCompilations.incrementAndGet();
+        statement = sqLiteDatabase.compileStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Release every compiled statement, the cache can still be used and compiles them again
+     */
+    void close() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+
+    /**
+     * Get the number of statements served without compiling
+     *
+     * @return long cache hits since the process started
+     */
+    static long getHits() {
+        return sHits.get();
+    }
+
+    /**
+     * Get the number of statements compiled
+     *
+     * @return long compilations since the process started
+     */
+    static long getCompilations() {
+        return sCompilations.get();
+    }
+}
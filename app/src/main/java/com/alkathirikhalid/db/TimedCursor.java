@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.db;
+
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * <p><strong>Timed Cursor<strong/></p>
+ * <p>This Class is used to record the latency of a query when its first window of rows is filled, on whichever
+ * thread reads it first, so the query is not run ahead of time just to be timed<p/>
+ */
+class TimedCursor extends SQLiteCursor {
+    /**
+     * Receives the latency of the query
+     */
+    private final Recorder mRecorder;
+    /**
+     * Time spent compiling the query, before the Cursor was created
+     */
+    private final long mPrepareNanos;
+    /**
+     * True once the latency was recorded, only the first fill runs the query
+     */
+    private boolean mRecorded;
+
+    /**
+     * Receives the latency of a query once it ran
+     */
+    interface Recorder {
+        /**
+         * Called on the thread that first read the Cursor
+         *
+         * @param nanos latency of the query, compiling and filling the first window
+         */
+        void record(long nanos);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param driver       that ran the query
+     * @param editTable    of the query, may be null
+     * @param query        compiled query
+     * @param prepareNanos time spent compiling the query
+     * @param recorder     receiving the latency of the query
+     */
+    TimedCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query, long prepareNanos, Recorder recorder) {
+        super(driver, editTable, query);
+        mPrepareNanos = prepareNanos;
+        mRecorder = recorder;
+    }
+
+    /**
+     * Create a Cursor Factory timing the query from now on
+     *
+     * @param recorder receiving the latency of the query
+     * @return SQLiteDatabase.CursorFactory for one query
+     */
+    static SQLiteDatabase.CursorFactory factory(final Recorder recorder) {
+        final long start = System.nanoTime();
+        return new SQLiteDatabase.CursorFactory() {
+            @Override
+            public TimedCursor newCursor(SQLiteDatabase sqLiteDatabase, SQLiteCursorDriver driver, String editTable,
+                                         SQLiteQuery query) {
+                return new TimedCursor(driver, editTable, query, System.nanoTime() - start, recorder);
+            }
+        };
+    }
+
+    /**
+     * Every move counts the rows first, the first count fills the first window and so runs the query
+     *
+     * @return int number of rows
+     */
+    @Override
+    public int getCount() {
+        if (mRecorded) {
+            return super.getCount();
+        }
+        long start = System.nanoTime();
+        int count = super.getCount();
+        mRecorded = true;
+        mRecorder.record(mPrepareNanos + System.nanoTime() - start);
+        return count;
+    }
+}
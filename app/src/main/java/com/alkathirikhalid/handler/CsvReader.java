@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.handler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p><strong>CSV Reader<strong/></p>
+ * <p>This Class is used to read RFC 4180 records one at a time, quoted fields may hold commas, quotes and line breaks.
+ * Only the record being read is held in memory<p/>
+ */
+class CsvReader {
+    /**
+     * No character read ahead
+     */
+    private static final int NONE = -2;
+    /**
+     * Source of the records, read one character at a time so it should be buffered
+     */
+    private final Reader reader;
+    /**
+     * Text of the field being read
+     */
+    private final StringBuilder field = new StringBuilder();
+    /**
+     * Line of the next character, counting from 1
+     */
+    private int line = 1;
+    /**
+     * Line the last record read started on
+     */
+    private int recordLine;
+    /**
+     * Character read ahead, NONE if there is none
+     */
+    private int pushedBack = NONE;
+
+    /**
+     * Constructor
+     *
+     * @param reader of the CSV text
+     */
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Get the line the last record read started on
+     *
+     * @return int line number counting from 1
+     */
+    int getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return List of the fields of the record, null at the end of the input
+     * @throws IOException if the input can not be read or a quoted field is not closed
+     */
+    List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> record = new ArrayList<String>();
+        boolean quoted = false;
+        field.setLength(0);
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Line " + recordLine + ": quoted field is not closed");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next != '"') {
+                        // The closing quote, the character after it is read as unquoted
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                // A record ends with CRLF, a lone LF or the end of the input
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pushedBack = next;
+                    }
+                }
+                if (c != -1) {
+                    line++;
+                }
+                record.add(field.toString());
+                return record;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Read one character
+     *
+     * @return int character, -1 at the end of the input
+     * @throws IOException if the input can not be read
+     */
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.handler;
+
+import android.util.JsonWriter;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * <p><strong>Recipe Exporter<strong/></p>
+ * <p>This Class is used to write every stored Recipe as JSON Lines or CSV. The recipe table is walked in id order
+ * EXPORT_BATCH_SIZE rows at a time and each recipe is written as soon as it is read, so memory use does not grow
+ * with the number of recipes<p/>
+ */
+public class RecipeExporter {
+    /**
+     * Number of recipes read per query
+     */
+    public static final int EXPORT_BATCH_SIZE = 500;
+    /**
+     * JSON Lines name and CSV header of the title
+     */
+    static final String FIELD_TITLE = "title";
+    /**
+     * JSON Lines name and CSV header of the ingredients
+     */
+    static final String FIELD_INGREDIENTS = "ingredients";
+    /**
+     * JSON Lines name and CSV header of the steps
+     */
+    static final String FIELD_STEPS = "steps";
+    /**
+     * JSON Lines name and CSV header of the type name
+     */
+    static final String FIELD_TYPE = "type";
+    /**
+     * Format written one JSON object per line
+     */
+    private static final int FORMAT_JSON_LINES = 1;
+    /**
+     * Format written as RFC 4180 CSV with a header line
+     */
+    private static final int FORMAT_CSV = 2;
+    /**
+     * Open RecipeDBAdaptor the recipes are read from
+     */
+    private final RecipeDBAdaptor recipeDBAdaptor;
+
+    /**
+     * Constructor
+     *
+     * @param recipeDBAdaptor open adaptor of the recipes to export
+     */
+    public RecipeExporter(RecipeDBAdaptor recipeDBAdaptor) {
+        this.recipeDBAdaptor = recipeDBAdaptor;
+    }
+
+    /**
+     * Write every Recipe as a JSON object on a line of its own
+     *
+     * @param writer to write to, should be buffered, it is flushed but not closed
+     * @return long number of recipes written
+     * @throws IOException if the writer fails
+     */
+    public long exportJsonLines(Writer writer) throws IOException {
+        return export(writer, FORMAT_JSON_LINES);
+    }
+
+    /**
+     * Write every Recipe as a CSV record after a header record
+     *
+     * @param writer to write to, should be buffered, it is flushed but not closed
+     * @return long number of recipes written
+     * @throws IOException if the writer fails
+     */
+    public long exportCsv(Writer writer) throws IOException {
+        writeCsvRecord(writer, FIELD_TITLE, FIELD_INGREDIENTS, FIELD_STEPS, FIELD_TYPE);
+        return export(writer, FORMAT_CSV);
+    }
+
+    /**
+     * Walk the recipe table and write each recipe
+     *
+     * @param writer to write to
+     * @param format FORMAT_JSON_LINES or FORMAT_CSV
+     * @return long number of recipes written
+     * @throws IOException if the writer fails
+     */
+    private long export(Writer writer, int format) throws IOException {
+        long count = 0;
+        long afterId = 0;
+        List<Recipe> recipes;
+        do {
+            // Keyset batches keep each query, and the read transaction behind it, short
+            recipes = recipeDBAdaptor.getRecipesAfter(afterId, EXPORT_BATCH_SIZE);
+            for (Recipe recipe : recipes) {
+                if (format == FORMAT_CSV) {
+                    writeCsvRecord(writer, recipe.getTitle(), recipe.getIngredients(), recipe.getSteps(), recipe.getType());
+                } else {
+                    writeJsonLine(writer, recipe.getTitle(), recipe.getIngredients(), recipe.getSteps(), recipe.getType());
+                }
+                afterId = recipe.getId();
+            }
+            count += recipes.size();
+        } while (recipes.size() == EXPORT_BATCH_SIZE);
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Write one recipe as a JSON object followed by a line break
+     *
+     * @param writer      to write to
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param type        name of recipe
+     * @throws IOException if the writer fails
+     */
+    private static void writeJsonLine(Writer writer, String title, String ingredients, String steps, String type)
+            throws IOException {
+        // Line breaks inside the values are escaped, so every recipe stays on one line. JsonWriter writes straight
+        // through to the writer, it is not flushed here so the writer keeps buffering
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginObject();
+        jsonWriter.name(FIELD_TITLE).value(title);
+        jsonWriter.name(FIELD_INGREDIENTS).value(ingredients);
+        jsonWriter.name(FIELD_STEPS).value(steps);
+        jsonWriter.name(FIELD_TYPE).value(type);
+        jsonWriter.endObject();
+        writer.write('\n');
+    }
+
+    /**
+     * Write one CSV record, fields are quoted when they hold a comma, a quote or a line break
+     *
+     * @param writer to write to
+     * @param fields of the record
+     * @throws IOException if the writer fails
+     */
+    private static void writeCsvRecord(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.handler;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.db.BulkInsertResult;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p><strong>Recipe Importer<strong/></p>
+ * <p>This Class is used to read Recipes written by the Recipe Exporter, or by hand, and store them through the bulk
+ * insert of the RecipeDBAdaptor. Recipes are parsed one at a time while the previous ones are inserted, so memory use
+ * does not grow with the size of the input. XML catalogs are parsed on their own thread, a bounded queue ahead of the
+ * insert. Batches committed before a malformed record are kept<p/>
+ */
+public class RecipeImporter {
+    /**
+     * Name of the thread parsing an XML catalog
+     */
+    static final String XML_THREAD_NAME = "RecipeImporter-xml";
+    /**
+     * Number of batches an XML catalog is parsed ahead of the insert at most
+     */
+    static final int XML_QUEUE_BATCHES = 2;
+    /**
+     * Open RecipeDBAdaptor the recipes are stored with
+     */
+    private final RecipeDBAdaptor recipeDBAdaptor;
+    /**
+     * Number of recipes committed per transaction
+     */
+    private final int batchSize;
+    /**
+     * Told after each committed batch, may be null
+     */
+    private RecipeDBAdaptor.OnBatchCommittedListener onBatchCommittedListener;
+
+    /**
+     * Constructor
+     *
+     * @param recipeDBAdaptor open adaptor to store the recipes with
+     */
+    public RecipeImporter(RecipeDBAdaptor recipeDBAdaptor) {
+        this(recipeDBAdaptor, RecipeDBAdaptor.BULK_INSERT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param recipeDBAdaptor open adaptor to store the recipes with
+     * @param batchSize       number of recipes committed per transaction
+     */
+    public RecipeImporter(RecipeDBAdaptor recipeDBAdaptor, int batchSize) {
+        this.recipeDBAdaptor = recipeDBAdaptor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the listener told after each committed batch of an import, for progress and throughput
+     *
+     * @param onBatchCommittedListener called on the importing thread, null for none
+     */
+    public void setOnBatchCommittedListener(RecipeDBAdaptor.OnBatchCommittedListener onBatchCommittedListener) {
+        this.onBatchCommittedListener = onBatchCommittedListener;
+    }
+
+    /**
+     * Store Recipes written one JSON object per line, blank lines are skipped
+     *
+     * @param reader of the JSON Lines text, it is not closed
+     * @return BulkInsertResult with the number of recipes stored and throughput
+     * @throws IOException if the reader fails or a line is not a valid recipe
+     */
+    public BulkInsertResult importJsonLines(Reader reader) throws IOException {
+        final BufferedReader lines = buffered(reader);
+        return importRecipes(new RecipeSource() {
+            private int lineNumber;
+
+            @Override
+            Recipe read() throws IOException {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    lineNumber++;
+                    if (line.trim().length() > 0) {
+                        return parseJsonLine(line, lineNumber);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Store Recipes written as CSV records, the header record names the columns and unknown columns are skipped
+     *
+     * @param reader of the CSV text, it is not closed
+     * @return BulkInsertResult with the number of recipes stored and throughput
+     * @throws IOException if the reader fails or a record is not a valid recipe
+     */
+    public BulkInsertResult importCsv(Reader reader) throws IOException {
+        final CsvReader csvReader = new CsvReader(buffered(reader));
+        final List<String> header = csvReader.readRecord();
+        final int titleIndex = header == null ? -1 : header.indexOf(RecipeExporter.FIELD_TITLE);
+        final int ingredientsIndex = header == null ? -1 : header.indexOf(RecipeExporter.FIELD_INGREDIENTS);
+        final int stepsIndex = header == null ? -1 : header.indexOf(RecipeExporter.FIELD_STEPS);
+        final int typeIndex = header == null ? -1 : header.indexOf(RecipeExporter.FIELD_TYPE);
+        if (header != null && (titleIndex < 0 || typeIndex < 0)) {
+            throw new IOException("Line 1: header must name the " + RecipeExporter.FIELD_TITLE + " and "
+                    + RecipeExporter.FIELD_TYPE + " columns");
+        }
+        return importRecipes(new RecipeSource() {
+            @Override
+            Recipe read() throws IOException {
+                if (header == null) {
+                    return null;
+                }
+                List<String> record;
+                do {
+                    record = csvReader.readRecord();
+                } while (record != null && record.size() == 1 && record.get(0).length() == 0);
+                if (record == null) {
+                    return null;
+                }
+                int lineNumber = csvReader.getLineNumber();
+                if (record.size() != header.size()) {
+                    throw new IOException("Line " + lineNumber + ": expected " + header.size() + " fields but found " + record.size());
+                }
+                return toRecipe(record.get(titleIndex), ingredientsIndex < 0 ? null : record.get(ingredientsIndex),
+                        stepsIndex < 0 ? null : record.get(stepsIndex), record.get(typeIndex), lineNumber);
+            }
+        });
+    }
+
+    /**
+     * Store the recipe elements of an XML catalog, recipetype elements are skipped and types are matched by name.
+     * The catalog is parsed on its own thread while the recipes already parsed are inserted on this one
+     *
+     * @param inputStream of the XML catalog, its encoding is read from the XML declaration, it is not closed
+     * @return BulkInsertResult with the number of recipes stored and throughput
+     * @throws IOException if the stream fails or a record is not a valid recipe, the message names the line
+     */
+    public BulkInsertResult importXml(InputStream inputStream) throws IOException {
+        final XmlProducer producer = new XmlProducer(inputStream, Math.max(batchSize, 1) * XML_QUEUE_BATCHES);
+        Thread thread = new Thread(producer, XML_THREAD_NAME);
+        thread.start();
+        try {
+            return importRecipes(new RecipeSource() {
+                @Override
+                Recipe read() throws IOException {
+                    return producer.take();
+                }
+            });
+        } finally {
+            // Stop parsing if the insert failed, the stream is not read once this returns
+            producer.stop();
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Feed the recipes of a source to the bulk insert
+     *
+     * @param source of the recipes
+     * @return BulkInsertResult of the bulk insert
+     * @throws IOException thrown by the source
+     */
+    private BulkInsertResult importRecipes(final RecipeSource source) throws IOException {
+        try {
+            return recipeDBAdaptor.bulkInsert(new Iterable<Recipe>() {
+                @Override
+                public Iterator<Recipe> iterator() {
+                    return new RecipeIterator(source);
+                }
+            }, batchSize, onBatchCommittedListener);
+        } catch (SourceException e) {
+            // Thrown out of the batch being inserted, which is rolled back
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parse one JSON Lines recipe
+     *
+     * @param line       JSON object
+     * @param lineNumber of the line, counting from 1
+     * @return Recipe read from the line
+     * @throws IOException if the line is not a valid recipe
+     */
+    private static Recipe parseJsonLine(String line, int lineNumber) throws IOException {
+        String title = null;
+        String ingredients = null;
+        String steps = null;
+        String type = null;
+        JsonReader jsonReader = new JsonReader(new StringReader(line));
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (jsonReader.peek() == JsonToken.NULL) {
+                    jsonReader.nextNull();
+                } else if (RecipeExporter.FIELD_TITLE.equals(name)) {
+                    title = jsonReader.nextString();
+                } else if (RecipeExporter.FIELD_INGREDIENTS.equals(name)) {
+                    ingredients = jsonReader.nextString();
+                } else if (RecipeExporter.FIELD_STEPS.equals(name)) {
+                    steps = jsonReader.nextString();
+                } else if (RecipeExporter.FIELD_TYPE.equals(name)) {
+                    type = jsonReader.nextString();
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } catch (IOException e) {
+            throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            // JsonReader reports a value of the wrong kind this way
+            throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+        } finally {
+            jsonReader.close();
+        }
+        return toRecipe(title, ingredients, steps, type, lineNumber);
+    }
+
+    /**
+     * Make a Recipe of parsed values, missing ingredients and steps are left empty
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe, may be null
+     * @param steps       of recipe, may be null
+     * @param type        name of recipe
+     * @param lineNumber  the values were read from
+     * @return Recipe not stored yet
+     * @throws IOException if the title or the type is missing
+     */
+    private static Recipe toRecipe(String title, String ingredients, String steps, String type, int lineNumber)
+            throws IOException {
+        if (title == null || title.length() == 0) {
+            throw new IOException("Line " + lineNumber + ": missing " + RecipeExporter.FIELD_TITLE);
+        }
+        if (type == null || type.length() == 0) {
+            throw new IOException("Line " + lineNumber + ": missing " + RecipeExporter.FIELD_TYPE);
+        }
+        return new Recipe(0, title, ingredients == null ? "" : ingredients, steps == null ? "" : steps, 0, type);
+    }
+
+    /**
+     * Wrap a Reader in a BufferedReader unless it already is one
+     *
+     * @param reader to wrap
+     * @return BufferedReader reading from reader
+     */
+    private static BufferedReader buffered(Reader reader) {
+        return reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Source of parsed Recipes
+     */
+    private abstract static class RecipeSource {
+        /**
+         * Read the next Recipe
+         *
+         * @return Recipe read, null at the end of the input
+         * @throws IOException if the input fails or is not a valid recipe
+         */
+        abstract Recipe read() throws IOException;
+    }
+
+    /**
+     * Parses an XML catalog on its own thread into a bounded queue, read by the importing thread
+     */
+    private static final class XmlProducer implements Runnable, XMLPullParserHandler.Visitor {
+        /**
+         * Queued after the last recipe, compared by identity
+         */
+        private static final Recipe END = new Recipe(0, "", "", "", 0, "");
+        /**
+         * Time a full queue is waited on before checking whether the import stopped
+         */
+        private static final long OFFER_TIMEOUT_MS = 100;
+        /**
+         * XML catalog
+         */
+        private final InputStream inputStream;
+        /**
+         * Recipes parsed and not inserted yet, then END
+         */
+        private final BlockingQueue<Recipe> queue;
+        /**
+         * True once the importing thread no longer reads the queue
+         */
+        private volatile boolean stopped;
+        /**
+         * Thrown by the parse, published to the importing thread by END
+         */
+        private Exception failure;
+
+        /**
+         * Constructor
+         *
+         * @param inputStream of the XML catalog
+         * @param capacity    number of recipes parsed ahead at most
+         */
+        XmlProducer(InputStream inputStream, int capacity) {
+            this.inputStream = inputStream;
+            this.queue = new ArrayBlockingQueue<Recipe>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                new XMLPullParserHandler().parse(inputStream, this);
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                offer(END);
+            }
+        }
+
+        @Override
+        public boolean visitRecipeType(RecipeType recipeType) {
+            // Types are matched by name as the recipes are inserted
+            return !stopped;
+        }
+
+        @Override
+        public boolean visitRecipe(Recipe recipe) {
+            return offer(recipe);
+        }
+
+        /**
+         * Queue a Recipe, waiting while the queue is full
+         *
+         * @param recipe to queue
+         * @return true if queued, false if the import stopped
+         */
+        private boolean offer(Recipe recipe) {
+            while (!stopped) {
+                try {
+                    if (queue.offer(recipe, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    // Only this class runs the thread, stop() ends the wait
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Take the next Recipe, on the importing thread
+         *
+         * @return Recipe parsed, null at the end of the catalog
+         * @throws IOException if the catalog could not be parsed
+         */
+        Recipe take() throws IOException {
+            Recipe recipe;
+            try {
+                recipe = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("XML import interrupted");
+            }
+            if (recipe != END) {
+                return recipe;
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return null;
+        }
+
+        /**
+         * Stop parsing, on the importing thread once it no longer takes recipes
+         */
+        void stop() {
+            stopped = true;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Iterator reading a Recipe Source one recipe ahead, as the bulk insert asks for them
+     */
+    private static final class RecipeIterator implements Iterator<Recipe> {
+        /**
+         * Source of the recipes
+         */
+        private final RecipeSource source;
+        /**
+         * Recipe read ahead, null at the end of the source
+         */
+        private Recipe next;
+        /**
+         * True if next holds the read ahead recipe
+         */
+        private boolean readAhead;
+
+        /**
+         * Constructor
+         *
+         * @param source of the recipes
+         */
+        RecipeIterator(RecipeSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!readAhead) {
+                try {
+                    next = source.read();
+                } catch (IOException e) {
+                    throw new SourceException(e);
+                }
+                readAhead = true;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Recipe next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            readAhead = false;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Carries an IOException of a Recipe Source through the bulk insert
+     */
+    private static final class SourceException extends RuntimeException {
+        /**
+         * Constructor
+         *
+         * @param cause thrown by the source
+         */
+        SourceException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
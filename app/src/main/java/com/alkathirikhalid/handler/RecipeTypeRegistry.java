@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.handler;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.bean.RecipeTypes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p><strong>Recipe Type Registry<strong/></p>
+ * <p>This Class holds the Recipe Types of the XML asset, shared by every spinner and the Database. They are built from
+ * the RecipeTypes constants generated from the asset at build time, the asset is only parsed if the build generated
+ * none. Other catalogs are read with parse(). The list and the id and name lookups are read only<p/>
+ */
+public final class RecipeTypeRegistry {
+    /**
+     * Log Tag
+     */
+    private static final String TAG = "RecipeTypeRegistry";
+    /**
+     * Recipe Types XML asset
+     */
+    public static final String RECIPE_TYPES_ASSET = "recipetypes.xml";
+    /**
+     * Load of the Recipe Types shared by every caller, null until first use or after a failed load, guarded by the class
+     */
+    private static FutureTask<RecipeTypeRegistry> sLoad;
+    /**
+     * Handler delivering loaded registries on the main thread
+     */
+    private static Handler sMainHandler;
+    /**
+     * Number of times the registry was asked for
+     */
+    private static final AtomicInteger sRequests = new AtomicInteger();
+    /**
+     * Recipe Types in XML order
+     */
+    private final List<RecipeType> mRecipeTypes;
+    /**
+     * Positions in the list by Recipe Type id
+     */
+    private final Map<Long, Integer> mPositionById;
+    /**
+     * Positions in the list by Recipe Type name
+     */
+    private final Map<String, Integer> mPositionByName;
+    /**
+     * True if the Recipe Types were parsed from XML, false if built from the generated constants
+     */
+    private final boolean mParsed;
+    /**
+     * Time spent loading the Recipe Types
+     */
+    private final long mLoadNanos;
+
+    /**
+     * Called on the main thread once the Recipe Types are loaded
+     */
+    public interface OnLoadedListener {
+        /**
+         * Called on the main thread once the Recipe Types are loaded
+         *
+         * @param registry of the Recipe Types
+         */
+        void onLoaded(RecipeTypeRegistry registry);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param recipeTypes in catalog order
+     * @param parsed      true if they were parsed from XML
+     * @param loadNanos   time spent loading them
+     */
+    RecipeTypeRegistry(List<RecipeType> recipeTypes, boolean parsed, long loadNanos) {
+        mRecipeTypes = Collections.unmodifiableList(new ArrayList<RecipeType>(recipeTypes));
+        // Sized so that even catalogs of thousands of types are indexed without rehashing
+        Map<Long, Integer> positionById = new HashMap<Long, Integer>(recipeTypes.size() * 4 / 3 + 1);
+        Map<String, Integer> positionByName = new HashMap<String, Integer>(recipeTypes.size() * 4 / 3 + 1);
+        for (int position = 0; position < mRecipeTypes.size(); position++) {
+            RecipeType recipeType = mRecipeTypes.get(position);
+            // The first entry wins if the catalog repeats an id or a name
+            if (recipeType.getId() > 0 && !positionById.containsKey(recipeType.getId())) {
+                positionById.put(recipeType.getId(), position);
+            }
+            if (recipeType.getName() != null && !positionByName.containsKey(recipeType.getName())) {
+                positionByName.put(recipeType.getName(), position);
+            }
+        }
+        mPositionById = Collections.unmodifiableMap(positionById);
+        mPositionByName = Collections.unmodifiableMap(positionByName);
+        mParsed = parsed;
+        mLoadNanos = loadNanos;
+    }
+
+    /**
+     * Get the Recipe Type Registry, loading it on the calling thread if no one did yet
+     *
+     * @param context of any component, only its Application Context is kept
+     * @return RecipeTypeRegistry shared instance
+     * @throws IOException if the asset cannot be read
+     */
+    public static RecipeTypeRegistry get(Context context) throws IOException {
+        sRequests.incrementAndGet();
+        return await(loadTask(context));
+    }
+
+    /**
+     * Get the Recipe Type Registry on the main thread, parsing the asset on a background thread if it has to be parsed
+     *
+     * @param context  of any component, only its Application Context is kept
+     * @param listener called on the main thread, right away unless the asset has to be parsed
+     */
+    public static void load(Context context, final OnLoadedListener listener) {
+        sRequests.incrementAndGet();
+        final FutureTask<RecipeTypeRegistry> task = loadTask(context);
+        // Building from the generated constants is cheaper than a thread hop
+        if (task.isDone() || RecipeTypes.COUNT > 0) {
+            try {
+                listener.onLoaded(await(task));
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to read " + RECIPE_TYPES_ASSET, e);
+            }
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    final RecipeTypeRegistry registry = await(task);
+                    sMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onLoaded(registry);
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to read " + RECIPE_TYPES_ASSET, e);
+                }
+            }
+        }, TAG).start();
+    }
+
+    /**
+     * Get the shared load of the Recipe Types
+     *
+     * @param context of any component, only its Application Context is kept
+     * @return FutureTask loading the Recipe Types once
+     */
+    private static synchronized FutureTask<RecipeTypeRegistry> loadTask(Context context) {
+        if (sLoad == null) {
+            final Context applicationContext = context.getApplicationContext();
+            sMainHandler = new Handler(Looper.getMainLooper());
+            sLoad = new FutureTask<RecipeTypeRegistry>(new Callable<RecipeTypeRegistry>() {
+                @Override
+                public RecipeTypeRegistry call() throws IOException {
+                    if (RecipeTypes.COUNT > 0) {
+                        return fromConstants();
+                    }
+                    // Nothing was generated, fall back to the runtime parser
+                    return parse(applicationContext.getAssets().open(RECIPE_TYPES_ASSET));
+                }
+            });
+        }
+        return sLoad;
+    }
+
+    /**
+     * Run the load unless another thread already runs or ran it, then wait for its result
+     *
+     * @param task shared load of the Recipe Types
+     * @return RecipeTypeRegistry loaded
+     * @throws IOException if the asset cannot be read
+     */
+    private static RecipeTypeRegistry await(FutureTask<RecipeTypeRegistry> task) throws IOException {
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            synchronized (RecipeTypeRegistry.class) {
+                // Let the next caller try again
+                if (sLoad == task) {
+                    sLoad = null;
+                }
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to read " + RECIPE_TYPES_ASSET, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + RECIPE_TYPES_ASSET);
+        }
+    }
+
+    /**
+     * Build a registry from the Recipe Types generated from the asset at build time
+     *
+     * @return RecipeTypeRegistry of the generated Recipe Types
+     */
+    static RecipeTypeRegistry fromConstants() {
+        long start = System.nanoTime();
+        List<RecipeType> recipeTypes = RecipeTypes.newRecipeTypes();
+        long loadNanos = System.nanoTime() - start;
+        Log.i(TAG, "Built " + recipeTypes.size() + " recipe types from constants in " + loadNanos / 1000 + " us");
+        return new RecipeTypeRegistry(recipeTypes, false, loadNanos);
+    }
+
+    /**
+     * Parse a Recipe Types XML file into a registry, such as a catalog supplied by the user
+     *
+     * @param inputStream xml data, closed once read
+     * @return RecipeTypeRegistry of the Recipe Types in the file
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static RecipeTypeRegistry parse(InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        final List<RecipeType> recipeTypes = new ArrayList<RecipeType>();
+        try {
+            new XMLPullParserHandler().parse(inputStream, new XMLPullParserHandler.Visitor() {
+                @Override
+                public boolean visitRecipeType(RecipeType recipeType) {
+                    recipeTypes.add(recipeType);
+                    return true;
+                }
+
+                @Override
+                public boolean visitRecipe(Recipe recipe) {
+                    // A Recipe Types file has no recipes, ignore any
+                    return true;
+                }
+            });
+        } finally {
+            inputStream.close();
+        }
+        long loadNanos = System.nanoTime() - start;
+        Log.i(TAG, "Parsed " + recipeTypes.size() + " recipe types in " + loadNanos / 1000 + " us");
+        return new RecipeTypeRegistry(recipeTypes, true, loadNanos);
+    }
+
+    /**
+     * Get the Recipe Types
+     *
+     * @return List of Recipe Types in XML order, read only
+     */
+    public List<RecipeType> getRecipeTypes() {
+        return mRecipeTypes;
+    }
+
+    /**
+     * Get a Recipe Type by id
+     *
+     * @param id of the recipe type
+     * @return RecipeType, null if there is none with this id
+     */
+    public RecipeType getById(long id) {
+        int position = positionOf(id);
+        return position < 0 ? null : mRecipeTypes.get(position);
+    }
+
+    /**
+     * Get a Recipe Type by name
+     *
+     * @param name of the recipe type, case sensitive
+     * @return RecipeType, null if there is none with this name
+     */
+    public RecipeType getByName(String name) {
+        int position = positionOf(name);
+        return position < 0 ? null : mRecipeTypes.get(position);
+    }
+
+    /**
+     * Get the position of a Recipe Type in the list, such as its spinner position
+     *
+     * @param id of the recipe type
+     * @return int position, -1 if there is none with this id
+     */
+    public int positionOf(long id) {
+        Integer position = mPositionById.get(id);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Get the position of a Recipe Type in the list, such as its spinner position
+     *
+     * @param name of the recipe type, case sensitive
+     * @return int position, -1 if there is none with this name
+     */
+    public int positionOf(String name) {
+        Integer position = name == null ? null : mPositionByName.get(name);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Check where the Recipe Types come from
+     *
+     * @return true if they were parsed from XML, false if built from the generated constants
+     */
+    public boolean isParsed() {
+        return mParsed;
+    }
+
+    /**
+     * Get the time spent loading the Recipe Types
+     *
+     * @return long nanoseconds
+     */
+    public long getLoadNanos() {
+        return mLoadNanos;
+    }
+
+    /**
+     * Get the number of times the registry was asked for since the process started
+     *
+     * @return int requests, each one after the first reused the load
+     */
+    public static int getRequests() {
+        return sRequests.get();
+    }
+
+    /**
+     * Get Registry Stats String
+     *
+     * @return String with the load time and the loading saved by sharing it
+     */
+    @Override
+    public String toString() {
+        int requests = sRequests.get();
+        return "recipe types count=" + mRecipeTypes.size() + (mParsed ? " parsed" : " from constants") + " once in "
+                + mLoadNanos / 1000 + " us, requests=" + requests + " saved~=" + Math.max(requests - 1, 0) * mLoadNanos / 1000 + " us";
+    }
+}
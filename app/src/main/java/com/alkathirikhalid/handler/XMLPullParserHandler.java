@@ -21,6 +21,9 @@
  */
 package com.alkathirikhalid.handler;
 
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
 import com.alkathirikhalid.bean.RecipeType;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -29,26 +32,65 @@ import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * <p><strong>XML Pull Parser Handler<strong/></p>
- * <p>This Class is used to extract Recipe Types from an XML file<p/>
+ * <p>This Class is used to extract Recipe Types, and Recipes, from an XML file. The visitor parse streams each record
+ * as soon as it is read so memory use does not grow with the size of the file, parse errors name the line they are on<p/>
  */
 public class XMLPullParserHandler {
     /**
-     * List of type Recipe
+     * Log Tag
      */
-    private List<RecipeType> recipeTypes;
+    private static final String TAG = "XMLPullParserHandler";
+    /**
+     * Recipe Type element
+     */
+    static final String TAG_RECIPE_TYPE = "recipetype";
+    /**
+     * Recipe Type name element
+     */
+    static final String TAG_NAME = "name";
     /**
-     * Recipe Type
+     * Recipe Type id attribute
      */
-    private RecipeType recipeType;
+    static final String ATTRIBUTE_ID = "id";
     /**
-     * Recipe Type value name
+     * Recipe element, its title, ingredients, steps and type elements are named like the exported fields
      */
-    private String text;
+    static final String TAG_RECIPE = "recipe";
+    /**
+     * Pull Parser Factory shared by every parse, creating one looks the implementation up by reflection
+     */
+    private static XmlPullParserFactory sFactory;
+    /**
+     * List of type Recipe
+     */
+    private List<RecipeType> recipeTypes;
+
+    /**
+     * Receives the records of an XML file one at a time, in file order
+     */
+    public interface Visitor {
+        /**
+         * Called for each recipetype element
+         *
+         * @param recipeType read from the element
+         * @return true to keep reading, false to stop
+         */
+        boolean visitRecipeType(RecipeType recipeType);
+
+        /**
+         * Called for each recipe element
+         *
+         * @param recipe read from the element, not stored yet
+         * @return true to keep reading, false to stop
+         */
+        boolean visitRecipe(Recipe recipe);
+    }
 
     /**
      * Constructor
@@ -70,55 +112,239 @@ public class XMLPullParserHandler {
      * Parse XML Data
      *
      * @param inputStream xml data
-     * @return List recipeTypes
+     * @return List recipeTypes, the types read before an error if the data is malformed
      */
     public List<RecipeType> parse(InputStream inputStream) {
-        // Declare XMLPullParserFactory
-        XmlPullParserFactory factory = null;
-        // Declare XMLParser
-        XmlPullParser parser = null;
         try {
-            // Get an Instance of XMLPULLFacotry
-            factory = XmlPullParserFactory.newInstance();
-            // Set NamespaceAware
-            factory.setNamespaceAware(true);
-            // Create an instance of PullParser
-            parser = factory.newPullParser();
-            // Set parser input
-            parser.setInput(inputStream, null);
-            int eventType = parser.getEventType();
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                String tagname = parser.getName();
-                switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        if (tagname.equalsIgnoreCase("recipetype")) {
-                            // Create an Instantce of RecipeType
-                            recipeType = new RecipeType();
-                        }
-                        break;
-                    case XmlPullParser.TEXT:
-                        text = parser.getText();
-                        break;
-                    case XmlPullParser.END_TAG:
-                        if (tagname.equalsIgnoreCase("recipetype")) {
-                            // Add recipeType obj to List recipeTypes
-                            recipeTypes.add(recipeType);
-                        } else if (tagname.equalsIgnoreCase("name")) {
-                            recipeType.setName(text);
-                        }
-                        break;
-                    default:
-                        break;
+            parse(inputStream, new Visitor() {
+                @Override
+                public boolean visitRecipeType(RecipeType recipeType) {
+                    // Add recipeType obj to List recipeTypes
+                    recipeTypes.add(recipeType);
+                    return true;
                 }
-                // Process Event until the event is END_DOCUMENT
-                eventType = parser.next();
-            }
-        } catch (XmlPullParserException e) {
-            e.printStackTrace();
+
+                @Override
+                public boolean visitRecipe(Recipe recipe) {
+                    return true;
+                }
+            });
         } catch (IOException e) {
-            e.printStackTrace();
+            // Callers of the list get the types read so far, the error names the line
+            Log.e(TAG, "Unable to parse recipe types", e);
         }
         // Return List recipeTypes
         return recipeTypes;
     }
-}
\ No newline at end of file
+
+    /**
+     * Stream the Recipe Types and Recipes of XML Data to a Visitor
+     *
+     * @param inputStream xml data, its encoding is read from the XML declaration, it is not closed
+     * @param visitor     receiving each record
+     * @return long number of records visited
+     * @throws IOException if the data can not be read or is malformed
+     */
+    public long parse(InputStream inputStream, Visitor visitor) throws IOException {
+        XmlPullParser parser = newPullParser();
+        try {
+            parser.setInput(inputStream, null);
+            return parse(parser, visitor);
+        } catch (XmlPullParserException e) {
+            throw error(parser, e);
+        }
+    }
+
+    /**
+     * Stream the Recipe Types and Recipes of XML Data to a Visitor
+     *
+     * @param reader  of the xml data, it is not closed
+     * @param visitor receiving each record
+     * @return long number of records visited
+     * @throws IOException if the data can not be read or is malformed
+     */
+    public long parse(Reader reader, Visitor visitor) throws IOException {
+        XmlPullParser parser = newPullParser();
+        try {
+            parser.setInput(reader);
+            return parse(parser, visitor);
+        } catch (XmlPullParserException e) {
+            throw error(parser, e);
+        }
+    }
+
+    /**
+     * Visit the records of a Pull Parser until the end of the document or until the Visitor stops
+     *
+     * @param parser  positioned at the start of the document
+     * @param visitor receiving each record
+     * @return long number of records visited
+     * @throws IOException            if the data can not be read or a record is not valid
+     * @throws XmlPullParserException if the data is malformed
+     */
+    private static long parse(XmlPullParser parser, Visitor visitor) throws IOException, XmlPullParserException {
+        long count = 0;
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                boolean more = true;
+                if (TAG_RECIPE_TYPE.equalsIgnoreCase(parser.getName())) {
+                    count++;
+                    more = visitor.visitRecipeType(readRecipeType(parser));
+                } else if (TAG_RECIPE.equalsIgnoreCase(parser.getName())) {
+                    count++;
+                    more = visitor.visitRecipe(readRecipe(parser));
+                }
+                if (!more) {
+                    break;
+                }
+            }
+            // Process Event until the event is END_DOCUMENT
+            eventType = parser.next();
+        }
+        return count;
+    }
+
+    /**
+     * Read a recipetype element
+     *
+     * @param parser positioned on the start tag
+     * @return RecipeType read, the parser is left on the end tag
+     * @throws IOException            if the id is not a number or the name is missing
+     * @throws XmlPullParserException if the data is malformed
+     */
+    private static RecipeType readRecipeType(XmlPullParser parser) throws IOException, XmlPullParserException {
+        int lineNumber = parser.getLineNumber();
+        // Create an Instantce of RecipeType
+        RecipeType recipeType = new RecipeType();
+        // Set the id attribute if it is present
+        String id = parser.getAttributeValue(null, ATTRIBUTE_ID);
+        if (id != null) {
+            try {
+                recipeType.setId(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + ATTRIBUTE_ID + " is not a number: " + id);
+            }
+        }
+        int depth = parser.getDepth();
+        while (nextChild(parser, depth)) {
+            if (TAG_NAME.equalsIgnoreCase(parser.getName())) {
+                recipeType.setName(parser.nextText());
+            } else {
+                skip(parser);
+            }
+        }
+        if (recipeType.getName() == null) {
+            throw new IOException("Line " + lineNumber + ": missing " + TAG_NAME);
+        }
+        return recipeType;
+    }
+
+    /**
+     * Read a recipe element, missing ingredients and steps are left empty
+     *
+     * @param parser positioned on the start tag
+     * @return Recipe read, the parser is left on the end tag
+     * @throws IOException            if the title or the type is missing
+     * @throws XmlPullParserException if the data is malformed
+     */
+    private static Recipe readRecipe(XmlPullParser parser) throws IOException, XmlPullParserException {
+        int lineNumber = parser.getLineNumber();
+        String title = null;
+        String ingredients = "";
+        String steps = "";
+        String type = null;
+        int depth = parser.getDepth();
+        while (nextChild(parser, depth)) {
+            String tagname = parser.getName();
+            if (RecipeExporter.FIELD_TITLE.equalsIgnoreCase(tagname)) {
+                title = parser.nextText();
+            } else if (RecipeExporter.FIELD_INGREDIENTS.equalsIgnoreCase(tagname)) {
+                ingredients = parser.nextText();
+            } else if (RecipeExporter.FIELD_STEPS.equalsIgnoreCase(tagname)) {
+                steps = parser.nextText();
+            } else if (RecipeExporter.FIELD_TYPE.equalsIgnoreCase(tagname)) {
+                type = parser.nextText();
+            } else {
+                skip(parser);
+            }
+        }
+        if (title == null || title.length() == 0) {
+            throw new IOException("Line " + lineNumber + ": missing " + RecipeExporter.FIELD_TITLE);
+        }
+        if (type == null || type.length() == 0) {
+            throw new IOException("Line " + lineNumber + ": missing " + RecipeExporter.FIELD_TYPE);
+        }
+        return new Recipe(0, title, ingredients, steps, 0, type);
+    }
+
+    /**
+     * Move to the next child element of an element
+     *
+     * @param parser inside the element
+     * @param depth  of the element
+     * @return true if the parser is on the start tag of a child, false once it is on the end tag of the element
+     * @throws IOException            if the data can not be read
+     * @throws XmlPullParserException if the data is malformed
+     */
+    private static boolean nextChild(XmlPullParser parser, int depth) throws IOException, XmlPullParserException {
+        while (true) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.START_TAG) {
+                return true;
+            }
+            if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                return false;
+            }
+            if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of document", parser, null);
+            }
+        }
+    }
+
+    /**
+     * Skip an element and everything inside it
+     *
+     * @param parser positioned on the start tag
+     * @throws IOException            if the data can not be read
+     * @throws XmlPullParserException if the data is malformed
+     */
+    private static void skip(XmlPullParser parser) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        while (nextChild(parser, depth)) {
+            skip(parser);
+        }
+    }
+
+    /**
+     * Create a Pull Parser from the shared factory
+     *
+     * @return XmlPullParser new parser
+     * @throws IOException if no parser is available
+     */
+    private static synchronized XmlPullParser newPullParser() throws IOException {
+        try {
+            if (sFactory == null) {
+                // Get an Instance of XMLPULLFacotry
+                sFactory = XmlPullParserFactory.newInstance();
+                // Set NamespaceAware
+                sFactory.setNamespaceAware(true);
+            }
+            return sFactory.newPullParser();
+        } catch (XmlPullParserException e) {
+            throw new IOException("No XML pull parser: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Turn a Pull Parser error into an IOException naming the line
+     *
+     * @param parser that failed
+     * @param e      error of the parser
+     * @return IOException to throw
+     */
+    private static IOException error(XmlPullParser parser, XmlPullParserException e) {
+        int lineNumber = e.getLineNumber() > 0 ? e.getLineNumber() : parser.getLineNumber();
+        return new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+    }
+}
@@ -21,7 +21,6 @@
  */
 package com.alkathirikhalid.recipeapp;
 
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
@@ -31,18 +30,26 @@ import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.Toast;
 
+import com.alkathirikhalid.bean.Recipe;
 import com.alkathirikhalid.bean.RecipeType;
 import com.alkathirikhalid.db.RecipeDBAdaptor;
-import com.alkathirikhalid.handler.XMLPullParserHandler;
+import com.alkathirikhalid.db.RecipeWriter;
+import com.alkathirikhalid.handler.RecipeTypeRegistry;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Future;
 
 /**
  * <p><strong>Add Edit Activity<strong/></p>
  * <p>This Class is used to Add and Edit Recipe data to Database<p/>
  */
 public class AddEditActivity extends AppCompatActivity implements View.OnClickListener {
+    /**
+     * Saved instance state key of the Client Key of a new recipe whose row id is not known yet
+     */
+    static final String KEY_CLIENT_KEY = "client_key";
     /**
      * Edit Text for Recipe Title, Ingredients and Steps
      */
@@ -55,6 +62,10 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
      * RecipeTypes List
      */
     private List<RecipeType> recipeTypes;
+    /**
+     * Recipe Type Registry the spinner positions are looked up in, null until the types are loaded
+     */
+    private RecipeTypeRegistry recipeTypeRegistry;
     /**
      * Spinner for Recipe Type
      */
@@ -63,6 +74,60 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
      * Button to Save Recipe data to Database
      */
     private Button button;
+    /**
+     * Recipe Writer running inserts and updates off the UI thread
+     */
+    private RecipeWriter recipeWriter;
+    /**
+     * Insert of a new recipe still waiting for its row id
+     */
+    private Future<Long> pendingInsert;
+    /**
+     * Client Key the new recipe is inserted under, null until its first save
+     */
+    private String clientKey;
+    /**
+     * Last write queued, used to tell if the Database already holds what the EditTexts show
+     */
+    private Future<?> pendingWrite;
+    /**
+     * Receives the row id of the new recipe
+     */
+    private final RecipeWriter.Callback<Long> insertCallback = new RecipeWriter.Callback<Long>() {
+        @Override
+        public void onComplete(Long id) {
+            pendingInsert = null;
+            if (id > 0) {
+                rowId = id;
+            } else {
+                onWriteFailed();
+            }
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            pendingInsert = null;
+            onWriteFailed();
+        }
+    };
+    /**
+     * Tells the user about updates the Recipe Writer failed to commit
+     */
+    private final RecipeWriter.Callback<Boolean> updateCallback = new RecipeWriter.Callback<Boolean>() {
+        @Override
+        public void onComplete(Boolean updated) {
+            // False only if the recipe was deleted meanwhile
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            onWriteFailed();
+        }
+    };
+    /**
+     * Draft Tracker holding back saves and dropping the ones that change nothing
+     */
+    private DraftTracker draftTracker;
     /**
      * Recipe Database ID
      */
@@ -71,6 +136,10 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
      * Recipe type name from Database
      */
     String dbType;
+    /**
+     * Recipe type id from Database, 0 for a new recipe
+     */
+    long dbTypeId;
 
     /**
      * This method is called when the application is first created
@@ -82,8 +151,17 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
         super.onCreate(savedInstanceState);
         // Create a RecipeDBAdaptor instance
         recipeDBAdaptor = new RecipeDBAdaptor(this);
-        // Open Database
+        // Acquire the shared Database
         recipeDBAdaptor.open();
+        // Get the shared Recipe Writer
+        recipeWriter = RecipeWriter.getInstance(this);
+        // Saves that survive the Draft Tracker are queued on the Recipe Writer
+        draftTracker = new DraftTracker(new DraftTracker.DraftSink() {
+            @Override
+            public void write(String title, String ingredients, String steps, long typeId) {
+                writeRecipe(title, ingredients, steps, typeId);
+            }
+        });
         // Set the xml layout view
         setContentView(R.layout.activity_add_edit);
         // Set the layout title
@@ -99,6 +177,15 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
             rowId = extras != null ? extras.getLong(RecipeDBAdaptor.KEY_ID)
                     : null;
         }
+        // A new recipe saved before its row id was known is found by its Client Key, even after a process restart.
+        // If its insert is still queued, the next save is inserted under the same key and updates that row
+        if (rowId == null && savedInstanceState != null) {
+            clientKey = savedInstanceState.getString(KEY_CLIENT_KEY);
+            long id = clientKey == null ? -1 : recipeDBAdaptor.findRecipeByClientKey(clientKey);
+            if (id != -1) {
+                rowId = id;
+            }
+        }
         // Initialize Recipe type name from Database
         dbType = "";
         // Populate EditTexts Data from Database
@@ -128,21 +215,23 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
     public void populateData() {
         // Check if row id is not null then populate data else editText are empty
         if (rowId != null) {
-            // Get Recipe data from database with Id
-            Cursor cursor = recipeDBAdaptor.fetchRecipe(rowId);
-            startManagingCursor(cursor);
+            // Get Recipe data by Id, from memory if it was read since its last write
+            Recipe recipe = recipeDBAdaptor.getRecipe(rowId);
+            if (recipe == null) {
+                return;
+            }
             // Set Title Data
-            title.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            title.setText(recipe.getTitle());
             // Set Ingredients Data
-            ingredients.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_INGREDIENTS)));
+            ingredients.setText(recipe.getIngredients());
             // Set Steps Data
-            steps.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_STEPS)));
+            steps.setText(recipe.getSteps());
             // Get Type Data from Database
-            dbType = cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE));
+            dbType = recipe.getType();
+            dbTypeId = recipe.getTypeId();
+            // Saving what the Database already holds writes nothing
+            draftTracker.setSaved(title.getText().toString(), ingredients.getText().toString(),
+                    steps.getText().toString(), recipe.getTypeId());
         }
 
     }
@@ -151,46 +240,35 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
      * Populate Spinner Data
      */
     public void populateSpinnerData() {
-        // Initialize List recipeTypes
-        recipeTypes = null;
-        // Extract Recipe Types from XML
-        try {
-            XMLPullParserHandler parser = new XMLPullParserHandler();
-            recipeTypes = parser.parse(getAssets().open("recipetypes.xml"));
-            ArrayAdapter<RecipeType> adapter =
-                    new ArrayAdapter<RecipeType>(this, R.layout.recipetype_item, recipeTypes);
-            type.setAdapter(adapter);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        /* If Recipe Type Data from Database is null or empty set Spinner position to index 0
-        Else set Spinner position to index of Recipe Type Data */
-        if (!dbType.equals(null) || !"".equals(dbType)) {
-            int viewPosition;
-            switch (dbType) {
-                case "Vegetarian":
-                    viewPosition = 0;
-                    break;
-                case "Fast Food":
-                    viewPosition = 1;
-                    break;
-                case "Healthy":
-                    viewPosition = 2;
-                    break;
-                case "No-Cook":
-                    viewPosition = 3;
-                    break;
-                case "Make Ahead":
-                    viewPosition = 4;
-                    break;
-
-                default:
-                    viewPosition = 0;
+        // Recipe Types are loaded once per process, then shared by every spinner
+        RecipeTypeRegistry.load(this, new RecipeTypeRegistry.OnLoadedListener() {
+            @Override
+            public void onLoaded(RecipeTypeRegistry registry) {
+                // A save may have needed them first
+                if (type.getAdapter() == null) {
+                    populateSpinnerData(registry);
+                }
             }
+        });
+    }
 
-            type.setSelection(viewPosition);
+    /**
+     * Populate Spinner Data from the Recipe Types
+     *
+     * @param registry of the Recipe Types
+     */
+    private void populateSpinnerData(RecipeTypeRegistry registry) {
+        recipeTypeRegistry = registry;
+        recipeTypes = registry.getRecipeTypes();
+        ArrayAdapter<RecipeType> adapter =
+                new ArrayAdapter<RecipeType>(this, R.layout.recipetype_item, recipeTypes);
+        type.setAdapter(adapter);
+        // Select the stored type by id, then by name, the first type if the catalog no longer has it
+        int position = recipeTypeRegistry.positionOf(dbTypeId);
+        if (position < 0) {
+            position = recipeTypeRegistry.positionOf(dbType);
         }
-
+        type.setSelection(Math.max(position, 0));
     }
 
     /**
@@ -214,8 +292,13 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        // Save State by Adding or Updating Recipe to Database
+        // Save State by Adding or Updating Recipe to Database, joined with the save of onPause into one write
         saveState();
+        draftTracker.flush();
+        // A new recipe still being inserted is found again by its Client Key, without waiting for the writer
+        if (rowId == null && clientKey != null) {
+            outState.putString(KEY_CLIENT_KEY, clientKey);
+        }
         // Save rowId into bundle to be used onCreate or onRestoreInstanceState
         outState.putSerializable(RecipeDBAdaptor.KEY_ID, rowId);
     }
@@ -226,18 +309,40 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
     @Override
     protected void onPause() {
         super.onPause();
-        // Save State by Adding or Updating Recipe to Database
+        // Save State by Adding or Updating Recipe to Database, held back briefly as onSaveInstanceState often follows
         saveState();
     }
 
+    /**
+     * Called when the Activity is no longer visible
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Write a held back save before the process may be killed
+        draftTracker.flush();
+    }
+
     /**
      * Called when the application is on resume
      */
     @Override
     protected void onResume() {
         super.onResume();
-        // populate EditTexts Data from Database
-        populateData();
+        // populate EditTexts Data from Database, unless they hold edits the writer has not committed yet
+        if (!draftTracker.hasPendingSave() && (pendingWrite == null || pendingWrite.isDone())) {
+            populateData();
+        }
+    }
+
+    /**
+     * Called when the Activity is destroyed
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Release the shared Database
+        recipeDBAdaptor.close();
     }
 
     /**
@@ -251,23 +356,61 @@ public class AddEditActivity extends AppCompatActivity implements View.OnClickLi
         // Get Steps
         String stepsString = steps.getText().toString();
         // Get Type
-        String typeString = type.getSelectedItem().toString();
+        RecipeType recipeType = (RecipeType) type.getSelectedItem();
+        if (recipeType == null) {
+            // Saved before the Recipe Types were loaded, read them now
+            try {
+                populateSpinnerData(RecipeTypeRegistry.get(this));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            recipeType = (RecipeType) type.getSelectedItem();
+        }
+        String typeString = recipeType.toString();
         // If any of that data is empty then there is nothing to save into database
         if (titleString.equals(null) || "".equals(title) || ingredientString.equals(null) || "".equals(ingredientString) || stepsString.equals(null) || "".equals(stepsString) || typeString.equals(null) || "".equals(typeString)) {
             // Notify User Data must be complete to be saved into databse
             Toast.makeText(this, R.string.toast_notification, Toast.LENGTH_SHORT).show();
         } else {
-            // If row Id is null and data is not null nor empty then save new recipe entry to Database
-            if (rowId == null) {
-                long id = recipeDBAdaptor.createRecipe(titleString, ingredientString, stepsString, typeString);
-                if (id > 0) {
-                    rowId = id;
-                }
-              // Else update recipe into Database
-            } else {
-                recipeDBAdaptor.updateRecipe(rowId, titleString, ingredientString, stepsString, typeString);
+            // Written once the burst of saves is over, and only if something changed
+            draftTracker.save(titleString, ingredientString, stepsString, recipeType.getId());
+        }
+    }
+
+    /**
+     * Add or Update the Recipe on the Recipe Writer
+     *
+     * @param titleString      of recipe
+     * @param ingredientString of recipe
+     * @param stepsString      of recipe
+     * @param typeId           of recipe type
+     */
+    private void writeRecipe(String titleString, String ingredientString, String stepsString, long typeId) {
+        // If row Id is null and data is not null nor empty then save new recipe entry to Database
+        if (rowId == null && pendingInsert == null) {
+            if (clientKey == null) {
+                clientKey = UUID.randomUUID().toString();
             }
+            pendingInsert = recipeWriter.createRecipe(titleString, ingredientString, stepsString, typeId, clientKey,
+                    insertCallback);
+            pendingWrite = pendingInsert;
+          // Else if the insert is still queued update the row it is about to create
+        } else if (rowId == null) {
+            pendingWrite = recipeWriter.updateRecipe(pendingInsert, titleString, ingredientString, stepsString, typeId, updateCallback);
+          // Else update recipe into Database
+        } else {
+            pendingWrite = recipeWriter.updateRecipe(rowId, titleString, ingredientString, stepsString, typeId, updateCallback);
         }
     }
 
+    /**
+     * Tell the user a save was not committed, the next save writes the values again
+     */
+    private void onWriteFailed() {
+        draftTracker.forgetSaved();
+        // The Activity may be gone by the time the writer fails
+        Toast.makeText(getApplicationContext(), R.string.toast_save_failed, Toast.LENGTH_LONG).show();
+    }
+
 }
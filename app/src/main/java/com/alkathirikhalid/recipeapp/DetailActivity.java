@@ -21,12 +21,13 @@
  */
 package com.alkathirikhalid.recipeapp;
 
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.TextView;
 
+import com.alkathirikhalid.bean.Recipe;
 import com.alkathirikhalid.db.RecipeDBAdaptor;
+import com.alkathirikhalid.db.RecipePrefetcher;
 
 /**
  * <p><strong>Detail Activity<strong/></p>
@@ -56,7 +57,7 @@ public class DetailActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         // Create a RecipeDBAdaptor instance
         recipeDBAdaptor = new RecipeDBAdaptor(this);
-        // Open Database
+        // Acquire the shared Database
         recipeDBAdaptor.open();
         // Set the xml layout view
         setContentView(R.layout.activity_detail);
@@ -77,6 +78,16 @@ public class DetailActivity extends AppCompatActivity {
         populateData();
     }
 
+    /**
+     * Called when the Activity is destroyed
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Release the shared Database
+        recipeDBAdaptor.close();
+    }
+
     /**
      * Find Views by ID from layout
      */
@@ -95,21 +106,19 @@ public class DetailActivity extends AppCompatActivity {
         * Else TextView are empty is never reached as this class is activated onItemClickListener
         */
         if (rowId != null) {
-            // Get Recipe data from database with Id
-            Cursor cursor = recipeDBAdaptor.fetchRecipe(rowId);
-            startManagingCursor(cursor);
+            // Get Recipe data by Id, from memory if the list prefetched it or it was read since its last write
+            Recipe recipe = RecipePrefetcher.getInstance(this).getRecipe(recipeDBAdaptor, rowId);
+            if (recipe == null) {
+                return;
+            }
             // Set Title Data
-            title.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            title.setText(recipe.getTitle());
             // Set Ingredients Data
-            ingredients.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_INGREDIENTS)));
+            ingredients.setText(recipe.getIngredients());
             // Set Steps Data
-            steps.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_STEPS)));
+            steps.setText(recipe.getSteps());
             // Set Type Data
-            type.setText(cursor.getString(
-                    cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE)));
+            type.setText(recipe.getType());
         }
     }
 }
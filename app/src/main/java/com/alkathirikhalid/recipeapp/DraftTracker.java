@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.recipeapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * <p><strong>Draft Tracker<strong/></p>
+ * <p>This Class is used to decide when the recipe being edited has to be written. It keeps a hash of the values the
+ * Database holds, or is about to hold, so saving unchanged values writes nothing, and it holds a save back for a
+ * short delay so a burst of saves becomes a single write. Writes are handed to a Draft Sink, which queues them on
+ * the Recipe Writer. It must be used on the main thread<p/>
+ */
+class DraftTracker {
+    /**
+     * Default time a save is held back waiting for more saves, in milliseconds
+     */
+    static final long SAVE_DELAY_MS = 500;
+    /**
+     * FNV-1a 64 bit offset basis
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /**
+     * FNV-1a 64 bit prime
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * Sink writing the draft
+     */
+    private final DraftSink sink;
+    /**
+     * Handler running the held back save
+     */
+    private final Handler handler;
+    /**
+     * Time a save is held back, in milliseconds
+     */
+    private final long delayMillis;
+    /**
+     * Runs the held back save
+     */
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    /**
+     * Hash of the values written last, or loaded from the Database
+     */
+    private long savedHash;
+    /**
+     * True once savedHash holds a hash
+     */
+    private boolean hasSaved;
+    /**
+     * Values of the held back save, null if there is none
+     */
+    private String title, ingredients, steps;
+    /**
+     * Type id of the held back save
+     */
+    private long typeId;
+    /**
+     * True while a save is held back
+     */
+    private boolean pending;
+    /**
+     * Number of writes handed to the sink
+     */
+    private int writeCount;
+
+    /**
+     * Receives the drafts to write
+     */
+    interface DraftSink {
+        /**
+         * Write the draft, called on the main thread
+         *
+         * @param title       of recipe
+         * @param ingredients of recipe
+         * @param steps       of recipe
+         * @param typeId      of recipe type
+         */
+        void write(String title, String ingredients, String steps, long typeId);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sink writing the drafts
+     */
+    DraftTracker(DraftSink sink) {
+        this(sink, SAVE_DELAY_MS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sink        writing the drafts
+     * @param delayMillis time a save is held back waiting for more saves
+     */
+    DraftTracker(DraftSink sink, long delayMillis) {
+        this.sink = sink;
+        this.delayMillis = delayMillis;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Remember values read from the Database, saving them again writes nothing
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     */
+    void setSaved(String title, String ingredients, String steps, long typeId) {
+        savedHash = hash(title, ingredients, steps, typeId);
+        hasSaved = true;
+    }
+
+    /**
+     * Forget the saved values after a write failed, saving any values writes them again
+     */
+    void forgetSaved() {
+        hasSaved = false;
+    }
+
+    /**
+     * Save values once no other save follows within the delay, values equal to the saved ones are dropped
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     */
+    void save(String title, String ingredients, String steps, long typeId) {
+        if (hasSaved && hash(title, ingredients, steps, typeId) == savedHash) {
+            // Back to what the Database holds, a held back save is no longer needed
+            cancel();
+            return;
+        }
+        this.title = title;
+        this.ingredients = ingredients;
+        this.steps = steps;
+        this.typeId = typeId;
+        pending = true;
+        // Restart the delay, the burst ends with the last save
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, delayMillis);
+    }
+
+    /**
+     * Write the held back save now, if there is one
+     */
+    void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (!pending) {
+            return;
+        }
+        pending = false;
+        savedHash = hash(title, ingredients, steps, typeId);
+        hasSaved = true;
+        writeCount++;
+        sink.write(title, ingredients, steps, typeId);
+        title = ingredients = steps = null;
+    }
+
+    /**
+     * Drop the held back save, if there is one
+     */
+    void cancel() {
+        handler.removeCallbacks(flushRunnable);
+        pending = false;
+        title = ingredients = steps = null;
+    }
+
+    /**
+     * Check whether a save is held back
+     *
+     * @return true if a save waits for its delay
+     */
+    boolean hasPendingSave() {
+        return pending;
+    }
+
+    /**
+     * Get the number of writes handed to the sink
+     *
+     * @return int writes
+     */
+    int getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Hash recipe values with 64 bit FNV-1a, each text is followed by its length so values can not run into each other
+     *
+     * @param title       of recipe
+     * @param ingredients of recipe
+     * @param steps       of recipe
+     * @param typeId      of recipe type
+     * @return long hash of the values
+     */
+    static long hash(String title, String ingredients, String steps, long typeId) {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, title);
+        hash = hash(hash, ingredients);
+        hash = hash(hash, steps);
+        return hash(hash, typeId);
+    }
+
+    /**
+     * Add a text to a hash
+     *
+     * @param hash so far
+     * @param text to add, may be null
+     * @return long hash including the text
+     */
+    private static long hash(long hash, String text) {
+        if (text == null) {
+            return hash(hash, -1L);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash(hash, (long) text.length());
+    }
+
+    /**
+     * Add a number to a hash
+     *
+     * @param hash  so far
+     * @param value to add
+     * @return long hash including the value
+     */
+    private static long hash(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -21,6 +21,7 @@
  */
 package com.alkathirikhalid.recipeapp;
 
+import android.app.AlertDialog;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -28,28 +29,43 @@ import android.support.v7.app.AppCompatActivity;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import android.widget.ListAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.SimpleCursorAdapter;
 import android.widget.Spinner;
+import android.widget.TextView;
 
 import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.db.RecipeChange;
+import com.alkathirikhalid.db.QueryStats;
+import com.alkathirikhalid.db.RecipeChangeNotifier;
 import com.alkathirikhalid.db.RecipeDBAdaptor;
-import com.alkathirikhalid.handler.XMLPullParserHandler;
+import com.alkathirikhalid.db.RecipePrefetcher;
+import com.alkathirikhalid.db.RecipeWriter;
+import com.alkathirikhalid.handler.RecipeTypeRegistry;
 
-import java.io.IOException;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.List;
 
 /**
  * <p><strong>Recipe Activity<strong/></p>
  * <p>This Class is the main entry to the application it is used to read recipe data from Database to populate a list view
- * and read data from XML to populate a spinner<p/>
+ * and read data from XML to populate a spinner, committed changes are applied to the list as they happen.
+ * The recipes on screen are prefetched so the detail screen opens from memory<p/>
  */
-public class RecipeActivity extends AppCompatActivity implements AdapterView.OnItemClickListener, View.OnClickListener {
+public class RecipeActivity extends AppCompatActivity implements AdapterView.OnItemClickListener, View.OnClickListener,
+        TextView.OnEditorActionListener, RecipeChangeNotifier.OnRecipesChangedListener, AbsListView.OnScrollListener,
+        View.OnTouchListener {
     /**
      * Spinner for Type Selection from XML file
      */
@@ -58,6 +74,10 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
      * RecipeTypes List
      */
     private List<RecipeType> recipeTypes;
+    /**
+     * Recipe Type Registry shared by the spinners, null until the types are loaded
+     */
+    private RecipeTypeRegistry recipeTypeRegistry;
     /**
      * Listview for recipes
      */
@@ -65,15 +85,31 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
     /**
      * Button to filter data by type and button to clear filter
      */
-    private Button buttonFilter, buttonClear;
+    private Button buttonFilter, buttonClear, buttonSearch;
+    /**
+     * Search box for recipe title, ingredients and steps
+     */
+    private EditText search;
     /**
      * Recipe Adaptor for Read operation to populate the list view
      */
     private RecipeDBAdaptor recipeDBAdaptor;
     /**
-     * List Adaptor to hold the data to be populated into a listview
+     * List Adaptor to hold the filtered or searched data to be populated into a listview
      */
-    private ListAdapter listAdapter;
+    private SimpleCursorAdapter listAdapter;
+    /**
+     * Page Adaptor to hold all recipes, loaded page by page as the listview scrolls
+     */
+    private RecipePageAdapter pageAdapter;
+    /**
+     * Recipe Prefetcher reading the recipes on screen into memory
+     */
+    private RecipePrefetcher prefetcher;
+    /**
+     * Scroll state of the List View
+     */
+    private int scrollState = SCROLL_STATE_IDLE;
     /**
      * Identifier for Create Activities
      */
@@ -94,6 +130,10 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
      * Third Item Identifier for menu
      */
     private static final int EDIT_ID = Menu.FIRST + 2;
+    /**
+     * Fourth Item Identifier for menu, debug builds only
+     */
+    private static final int STATS_ID = Menu.FIRST + 3;
 
     /**
      * This method is called when the application is first created
@@ -103,6 +143,12 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Create an instance of RecipeDBAdaptor shared by every list operation of this Activity
+        recipeDBAdaptor = new RecipeDBAdaptor(this);
+        // Open recipeDBAdaptor for Read and Delete operations
+        recipeDBAdaptor.open();
+        // Get the shared Recipe Prefetcher
+        prefetcher = RecipePrefetcher.getInstance(this);
         // Set the Content view layout
         setContentView(R.layout.activity_recipe);
         // Find Views in the layout
@@ -111,6 +157,23 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         populateSpinnerData();
         // Populate the List View with data from Recipe Table from Database
         populateListData();
+        // Keep the List View up to date with every write, wherever it comes from
+        RecipeChangeNotifier.getInstance().addListener(this);
+    }
+
+    /**
+     * Called when the Activity is destroyed
+     */
+    @Override
+    protected void onDestroy() {
+        RecipeChangeNotifier.getInstance().removeListener(this);
+        // Close the list Cursor before releasing the Database
+        if (listAdapter != null) {
+            listAdapter.changeCursor(null);
+        }
+        // Release the shared Database
+        recipeDBAdaptor.close();
+        super.onDestroy();
     }
 
     /**
@@ -124,9 +187,19 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         buttonClear = (Button) findViewById(R.id.button_clear_activity_recipe_layout);
         // Set onClick listener to Button to clear filter
         buttonClear.setOnClickListener(this);
+        search = (EditText) findViewById(R.id.edittext_search_activity_recipe_layout);
+        // Set onEditorAction listener to search from the keyboard
+        search.setOnEditorActionListener(this);
+        buttonSearch = (Button) findViewById(R.id.button_search_activity_recipe_layout);
+        // Set onClick listener to Button to search recipes
+        buttonSearch.setOnClickListener(this);
         listView = (ListView) findViewById(R.id.listview_activity_recipe_layout);
         // Set onItemClickListener to Listview to detect selection
         listView.setOnItemClickListener(this);
+        // Set onScroll listener to prefetch the recipes on screen once scrolling stops
+        listView.setOnScrollListener(this);
+        // Set onTouch listener to prefetch a recipe as its row is pressed
+        listView.setOnTouchListener(this);
         // Register for context menu to detect long clicks on an item on listview
         registerForContextMenu(listView);
     }
@@ -162,10 +235,8 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         switch (item.getItemId()) {
             // If Delete is selected
             case DELETE_ID:
-                // Delete Recipe item with id
-                recipeDBAdaptor.deleteRecipe(info.id);
-                // Populate list item data to reflect changes
-                populateListData();
+                // Delete Recipe item with id on the writer thread, the list drops the row once it is committed
+                RecipeWriter.getInstance(this).deleteRecipe(info.id, null);
                 return true;
             // If Create is selected
             case CREATE_ID:
@@ -187,38 +258,85 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
      * Populate Spinner Data
      */
     public void populateSpinnerData() {
-        // Initialize recipeType
-        recipeTypes = null;
-
-        try {
-            // Create a new Instance of XMLPullParserHandler
-            XMLPullParserHandler parser = new XMLPullParserHandler();
-            // parse recipetypes from Assets to List recipeTypes
-            recipeTypes = parser.parse(getAssets().open("recipetypes.xml"));
-            // Set Array Adaptor layout and recipeType Data to populate to Spinner
-            ArrayAdapter<RecipeType> adapter =
-                    new ArrayAdapter<RecipeType>(this, R.layout.recipetype_item, recipeTypes);
-            spinner.setAdapter(adapter);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Recipe Types are loaded once per process, then shared by every spinner
+        RecipeTypeRegistry.load(this, new RecipeTypeRegistry.OnLoadedListener() {
+            @Override
+            public void onLoaded(RecipeTypeRegistry registry) {
+                recipeTypeRegistry = registry;
+                recipeTypes = registry.getRecipeTypes();
+                // Set Array Adaptor layout and recipeType Data to populate to Spinner
+                ArrayAdapter<RecipeType> adapter =
+                        new ArrayAdapter<RecipeType>(RecipeActivity.this, R.layout.recipetype_item, recipeTypes);
+                spinner.setAdapter(adapter);
+            }
+        });
     }
 
     /**
      * Populate List Data
      */
     public void populateListData() {
-        // Create an instance of RecipeDBAdoptor
-        recipeDBAdaptor = new RecipeDBAdaptor(this);
-        // Open recipeDBAdaptor for Read operation
-        recipeDBAdaptor.open();
-        // get all Recipes from Database
-        Cursor cursor = recipeDBAdaptor.fetchAllRecipes();
-        // Set List Adaptor layout and recipes Title as items on List View
-        listAdapter = new SimpleCursorAdapter(this, R.layout.listview_item, cursor,
-                new String[]{recipeDBAdaptor.KEY_TITLE}, new int[]{
-                R.id.listviewlayout_item});
-        listView.setAdapter(listAdapter);
+        populateListData(RecipeDBAdaptor.ALL_TYPES);
+    }
+
+    /**
+     * Populate List Data with the recipes of a Recipe Type
+     *
+     * @param typeId of the recipe type, RecipeDBAdaptor.ALL_TYPES for every recipe
+     */
+    private void populateListData(long typeId) {
+        // Close the filtered or searched Cursor, it is not shown anymore
+        if (listAdapter != null) {
+            listAdapter.changeCursor(null);
+        }
+        if (pageAdapter == null) {
+            // Read the Recipes from Database one page at a time
+            pageAdapter = new RecipePageAdapter(this, recipeDBAdaptor, typeId, RecipeDBAdaptor.PAGE_SIZE);
+        } else {
+            // Start again from the first page to reflect changes
+            pageAdapter.reset(typeId);
+        }
+        // Set recipes Title as items on List View
+        if (listView.getAdapter() != pageAdapter) {
+            listView.setAdapter(pageAdapter);
+        }
+    }
+
+    /**
+     * Called on the main thread after recipes are added, edited or deleted
+     *
+     * @param sequence number of the last change
+     * @param changes  in commit order
+     */
+    @Override
+    public void onRecipesChanged(long sequence, List<RecipeChange> changes) {
+        if (listView.getAdapter() == pageAdapter) {
+            // Only the rows that changed are placed, the pages are not read again
+            pageAdapter.applyChanges(sequence, changes);
+        } else if (listView.getAdapter() == listAdapter) {
+            // Search results are ranked by the whole index, the bounded search is run again
+            searchRecipes();
+        }
+    }
+
+    /**
+     * Set the Cursor backing the List View, closing the Cursor it replaces
+     *
+     * @param cursor with recipes to display
+     */
+    private void setListCursor(Cursor cursor) {
+        if (listAdapter == null) {
+            // Set List Adaptor layout and recipes Title as items on List View
+            listAdapter = new SimpleCursorAdapter(this, R.layout.listview_item, cursor,
+                    new String[]{RecipeDBAdaptor.KEY_TITLE}, new int[]{
+                    R.id.listviewlayout_item});
+        } else {
+            // Swap the data and close the previous Cursor
+            listAdapter.changeCursor(cursor);
+        }
+        if (listView.getAdapter() != listAdapter) {
+            listView.setAdapter(listAdapter);
+        }
     }
 
     /**
@@ -232,6 +350,10 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         super.onCreateOptionsMenu(menu);
         // Add Recipe as an Option in Menu
         menu.add(0, CREATE_ID, 0, R.string.add_recipe);
+        // Database timings for developers
+        if (BuildConfig.DEBUG) {
+            menu.add(0, STATS_ID, 0, R.string.query_stats);
+        }
         return true;
     }
 
@@ -249,10 +371,51 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
                 // Create Recipe
                 createRecipe();
                 return true;
+            // If item is Query Stats
+            case STATS_ID:
+                showQueryStats();
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Show the latency of every database operation and the latest slow queries
+     */
+    private void showQueryStats() {
+        StringWriter stats = new StringWriter();
+        PrintWriter writer = new PrintWriter(stats);
+        QueryStats.getInstance().dump(writer);
+        writer.println(prefetcher);
+        if (recipeTypeRegistry != null) {
+            writer.println(recipeTypeRegistry);
+        }
+        writer.flush();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.query_stats)
+                .setMessage(stats.toString())
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    /**
+     * Add the database stats to "adb shell dumpsys activity"
+     *
+     * @param prefix to put before each line
+     * @param fd     raw file descriptor of the dump
+     * @param writer to write to
+     * @param args   additional arguments of the dump
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        QueryStats.getInstance().dump(writer);
+        writer.println(prefetcher);
+        if (recipeTypeRegistry != null) {
+            writer.println(recipeTypeRegistry);
+        }
+    }
+
     /**
      * Create Recipe
      */
@@ -280,6 +443,68 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         startActivityForResult(intent, ACTIVITY_EDIT);
     }
 
+    /**
+     * Called when the List View starts or stops scrolling
+     *
+     * @param view        List View
+     * @param scrollState SCROLL_STATE_IDLE, SCROLL_STATE_TOUCH_SCROLL or SCROLL_STATE_FLING
+     */
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        this.scrollState = scrollState;
+        if (scrollState == SCROLL_STATE_IDLE) {
+            prefetchRows(view.getFirstVisiblePosition(), view.getChildCount());
+        }
+    }
+
+    /**
+     * Called when the List View scrolled or was laid out again
+     *
+     * @param view             List View
+     * @param firstVisibleItem position of the first visible row
+     * @param visibleItemCount number of visible rows
+     * @param totalItemCount   number of rows in the adapter
+     */
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        // Rows flung past are not read, only the rows the list settles on
+        if (scrollState == SCROLL_STATE_IDLE) {
+            prefetchRows(firstVisibleItem, visibleItemCount);
+        }
+    }
+
+    /**
+     * Called when the List View is touched
+     *
+     * @param view  List View
+     * @param event touch event
+     * @return false, the List View handles the touch
+     */
+    @Override
+    public boolean onTouch(View view, MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // The click comes when the finger is lifted, read the recipe in the meantime
+            int position = listView.pointToPosition((int) event.getX(), (int) event.getY());
+            if (position != AdapterView.INVALID_POSITION) {
+                prefetcher.prefetch(listView.getItemIdAtPosition(position));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prefetch the recipes of a range of rows
+     *
+     * @param first position of the first row
+     * @param count number of rows
+     */
+    private void prefetchRows(int first, int count) {
+        int end = Math.min(first + count, listView.getCount());
+        for (int position = first; position < end; position++) {
+            prefetcher.prefetch(listView.getItemIdAtPosition(position));
+        }
+    }
+
     /**
      * Called when a button is clicked
      *
@@ -290,27 +515,53 @@ public class RecipeActivity extends AppCompatActivity implements AdapterView.OnI
         switch (view.getId()) {
             // If button clicked is filter
             case R.id.button_filter_activity_recipe_layout:
-                // Get the selected text from spinner
-                String filter = spinner.getSelectedItem().toString();
-                // Create an Instance of RecipeDBAdator
-                recipeDBAdaptor = new RecipeDBAdaptor(this);
-                // Open recipeDBAdaptor for Read operations from Database
-                recipeDBAdaptor.open();
-                // Get recipe data from database by filter
-                Cursor cursor = recipeDBAdaptor.fetchLike(filter);
-                // populate the listView with he filtered data
-                listAdapter = new SimpleCursorAdapter(this, R.layout.listview_item, cursor,
-                        new String[]{recipeDBAdaptor.KEY_TITLE}, new int[]{
-                        R.id.listviewlayout_item});
-                listView.setAdapter(listAdapter);
+                // Get the selected type from spinner
+                RecipeType filter = (RecipeType) spinner.getSelectedItem();
+                // populate the listView with recipe titles of the type, paged on the covering type and title index
+                if (filter != null) {
+                    populateListData(filter.getId());
+                }
                 break;
             // If button clicked is clear
             case R.id.button_clear_activity_recipe_layout:
+                // Clear the search box
+                search.setText("");
                 // populate listview data with all Recipe data from database
                 populateListData();
                 break;
+            // If button clicked is search
+            case R.id.button_search_activity_recipe_layout:
+                searchRecipes();
+                break;
             default:
                 break;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Called when an action is performed on the search box keyboard
+     *
+     * @param textView search box
+     * @param actionId of the keyboard action
+     * @param keyEvent obj, null when triggered by an action button
+     * @return true if the action was handled
+     */
+    @Override
+    public boolean onEditorAction(TextView textView, int actionId, KeyEvent keyEvent) {
+        if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+            searchRecipes();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Search Recipes by the words in the search box
+     */
+    private void searchRecipes() {
+        // Get recipe data from the Full-Text Search index, best match first
+        Cursor cursor = recipeDBAdaptor.searchRecipeSummaries(search.getText().toString(), RecipeDBAdaptor.SEARCH_LIMIT);
+        // populate the listView with the search results
+        setListCursor(cursor);
+    }
+}
@@ -0,0 +1,683 @@
+/*
+ * Copyright (c) 2017 Al-Kathiri Khalid www.alkathirikhalid.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.alkathirikhalid.recipeapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import com.alkathirikhalid.db.RecipeChange;
+import com.alkathirikhalid.db.RecipeChangeNotifier;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p><strong>Recipe Page Adapter<strong/></p>
+ * <p>This Class is used to show the recipe titles on a List View one keyset page at a time,
+ * pages are loaded as the user scrolls and only a few of them are kept in memory. Committed changes are applied
+ * to the page holding the row instead of reading the list again<p/>
+ */
+public class RecipePageAdapter extends BaseAdapter {
+    /**
+     * Maximum number of pages holding their rows in memory
+     */
+    private static final int MAX_LOADED_PAGES = 6;
+    /**
+     * Recipe Database Adaptor for Read operations
+     */
+    private final RecipeDBAdaptor recipeDBAdaptor;
+    /**
+     * Recipe Change Notifier, its sequence tells which changes a page already shows
+     */
+    private final RecipeChangeNotifier changeNotifier;
+    /**
+     * Layout Inflater for the list items
+     */
+    private final LayoutInflater inflater;
+    /**
+     * Handler posting page loads out of getView
+     */
+    private final Handler handler;
+    /**
+     * Number of recipes per page
+     */
+    private final int pageSize;
+    /**
+     * Every page discovered so far in list order, evicted pages only keep their keys and size
+     */
+    private final List<Page> pages = new ArrayList<Page>();
+    /**
+     * Number of leading pages whose start position is up to date, the others are worked out again on lookup
+     */
+    private int validStarts;
+    /**
+     * Index of the page found by the last lookup, the next one is most likely it or a neighbour as the list scrolls
+     */
+    private int lastPageIndex;
+    /**
+     * Pages holding their rows, least recently used first
+     */
+    private final LinkedHashMap<Page, Page> loadedPages = new LinkedHashMap<Page, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Page, Page> eldest) {
+            if (size() > MAX_LOADED_PAGES) {
+                eldest.getKey().evict();
+                return true;
+            }
+            return false;
+        }
+    };
+    /**
+     * Recipe Type shown, RecipeDBAdaptor.ALL_TYPES for every recipe
+     */
+    private long typeId;
+    /**
+     * Number of recipes in all pages discovered so far
+     */
+    private int count;
+    /**
+     * True once the last page was read
+     */
+    private boolean complete;
+    /**
+     * True while the next page load is posted
+     */
+    private boolean loadPosted;
+    /**
+     * Loads the next page once getView reaches the end of the list
+     */
+    private final Runnable loadNextPage = new Runnable() {
+        @Override
+        public void run() {
+            loadPosted = false;
+            if (!complete) {
+                loadNextPage();
+                notifyDataSetChanged();
+            }
+        }
+    };
+
+    /**
+     * Notifies the List View after a reloaded page changed size
+     */
+    private final Runnable notifyChanged = new Runnable() {
+        @Override
+        public void run() {
+            notifyDataSetChanged();
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param context         of the List View
+     * @param recipeDBAdaptor open Recipe Database Adaptor
+     * @param typeId          of the recipe type to show, RecipeDBAdaptor.ALL_TYPES for every recipe
+     * @param pageSize        number of recipes per page
+     */
+    public RecipePageAdapter(Context context, RecipeDBAdaptor recipeDBAdaptor, long typeId, int pageSize) {
+        this.recipeDBAdaptor = recipeDBAdaptor;
+        this.changeNotifier = RecipeChangeNotifier.getInstance();
+        this.typeId = typeId;
+        this.inflater = LayoutInflater.from(context);
+        this.handler = new Handler(Looper.getMainLooper());
+        this.pageSize = pageSize;
+        loadNextPage();
+    }
+
+    /**
+     * Drop every page and start again from the first one
+     */
+    public void reset() {
+        reset(typeId);
+    }
+
+    /**
+     * Drop every page and start again from the first one of a Recipe Type
+     *
+     * @param typeId of the recipe type to show, RecipeDBAdaptor.ALL_TYPES for every recipe
+     */
+    public void reset(long typeId) {
+        this.typeId = typeId;
+        handler.removeCallbacks(loadNextPage);
+        handler.removeCallbacks(notifyChanged);
+        loadPosted = false;
+        pages.clear();
+        loadedPages.clear();
+        validStarts = 0;
+        lastPageIndex = 0;
+        count = 0;
+        complete = false;
+        loadNextPage();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Apply committed changes to the pages holding the rows, only pages read before the changes are touched
+     *
+     * @param sequence number of the last change, as delivered by RecipeChangeNotifier
+     * @param changes  in commit order
+     */
+    public void applyChanges(long sequence, List<RecipeChange> changes) {
+        // Reading the first page again is cheaper than placing more rows than it holds
+        if (changes.size() > pageSize) {
+            reset();
+            return;
+        }
+        boolean changed = false;
+        for (RecipeChange change : changes) {
+            if (change.getKind() != RecipeChange.INSERTED) {
+                changed |= remove(sequence, change.getId(), change.getOldTitle(), change.getOldTypeId());
+            }
+            if (change.getKind() != RecipeChange.DELETED) {
+                changed |= insert(sequence, change.getId(), change.getTitle(), change.getTypeId());
+            }
+        }
+        if (changed) {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Get the number of recipes discovered so far
+     *
+     * @return int count
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the title of a recipe
+     *
+     * @param position in the list
+     * @return String title
+     */
+    @Override
+    public Object getItem(int position) {
+        Page page = pageAt(position);
+        return page == null ? null : page.titles[position - page.start];
+    }
+
+    /**
+     * Get the Database id of a recipe
+     *
+     * @param position in the list
+     * @return long id
+     */
+    @Override
+    public long getItemId(int position) {
+        Page page = pageAt(position);
+        return page == null ? -1 : page.ids[position - page.start];
+    }
+
+    /**
+     * Ids are Database ids
+     *
+     * @return true
+     */
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    /**
+     * Get the list item View of a recipe
+     *
+     * @param position    in the list
+     * @param convertView to reuse, may be null
+     * @param parent      List View
+     * @return View showing the recipe title
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null ? convertView
+                : inflater.inflate(R.layout.listview_item, parent, false));
+        String title = (String) getItem(position);
+        view.setText(title != null ? title : "");
+        // Fetch the following page once the user gets within half a page of the end
+        if (!complete && !loadPosted && position >= count - pageSize / 2) {
+            loadPosted = true;
+            handler.post(loadNextPage);
+        }
+        return view;
+    }
+
+    /**
+     * Read the page following the last page discovered
+     */
+    private void loadNextPage() {
+        Page last = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        Page page = new Page();
+        if (last != null) {
+            // A page starts right after the last row of the previous one
+            load(last);
+            if (last.size > 0) {
+                page.anchorTitle = last.titles[last.size - 1];
+                page.anchorId = last.ids[last.size - 1];
+            } else {
+                page.anchorTitle = last.anchorTitle;
+                page.anchorId = last.anchorId;
+            }
+        }
+        page.size = pageSize;
+        page.load(this);
+        if (page.size < pageSize) {
+            complete = true;
+        }
+        if (page.size > 0) {
+            page.index = pages.size();
+            page.start = count;
+            pages.add(page);
+            count += page.size;
+        }
+    }
+
+    /**
+     * Remove a row from the page holding its key
+     *
+     * @param sequence of the change
+     * @param id       of the recipe row
+     * @param title    of the recipe before the change
+     * @param typeId   of the recipe before the change
+     * @return true if the list changed
+     */
+    private boolean remove(long sequence, long id, String title, long typeId) {
+        Page page = pageFor(sequence, id, title, typeId);
+        if (page == null) {
+            return false;
+        }
+        if (page.ids == null) {
+            return reload(page);
+        }
+        for (int i = 0; i < page.size; i++) {
+            if (page.ids[i] == id) {
+                page.ids = remove(page.ids, i);
+                page.titles = remove(page.titles, i);
+                page.size--;
+                count--;
+                resized(page);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a row to the page holding its key
+     *
+     * @param sequence of the change
+     * @param id       of the recipe row
+     * @param title    of the recipe after the change
+     * @param typeId   of the recipe after the change
+     * @return true if the list changed
+     */
+    private boolean insert(long sequence, long id, String title, long typeId) {
+        if (pages.isEmpty()) {
+            // Nothing was shown, the first page is read as it is now
+            if (!matches(typeId)) {
+                return false;
+            }
+            complete = false;
+            loadNextPage();
+            return true;
+        }
+        Page page = pageFor(sequence, id, title, typeId);
+        if (page == null) {
+            return false;
+        }
+        if (page.ids == null) {
+            return reload(page);
+        }
+        int i = 0;
+        while (i < page.size && compare(page.titles[i], page.ids[i], title, id) < 0) {
+            i++;
+        }
+        if (i < page.size && page.ids[i] == id) {
+            return false;
+        }
+        if (i == page.size && page == pages.get(pages.size() - 1) && !complete) {
+            // After the last row read, the next page load will find it
+            return false;
+        }
+        page.ids = insert(page.ids, i, id);
+        page.titles = insert(page.titles, i, title);
+        page.size++;
+        count++;
+        resized(page);
+        return true;
+    }
+
+    /**
+     * Read an evicted page holding a changed row, its rows tell the new size even if they already showed the change
+     *
+     * @param page evicted page
+     * @return true if the page changed size
+     */
+    private boolean reload(Page page) {
+        return load(page);
+    }
+
+    /**
+     * Read the rows of a page if they are not in memory, an evicted page may come back with another size
+     *
+     * @param page discovered page
+     * @return true if the page changed size
+     */
+    private boolean load(Page page) {
+        int size = page.size;
+        page.load(this);
+        if (page.size == size) {
+            return false;
+        }
+        count += page.size - size;
+        resized(page);
+        return true;
+    }
+
+    /**
+     * Mark the start positions of the pages after a page that changed size as out of date
+     *
+     * @param page that changed size
+     */
+    private void resized(Page page) {
+        validStarts = Math.min(validStarts, page.index + 1);
+    }
+
+    /**
+     * Find the page whose range holds a key, the last page is read if the key may be past its last row
+     *
+     * @param sequence of the change
+     * @param id       of the recipe row
+     * @param title    of the recipe
+     * @param typeId   of the recipe
+     * @return Page holding the key, null if the row is not shown or the page was read after the change
+     */
+    private Page pageFor(long sequence, long id, String title, long typeId) {
+        if (!matches(typeId) || title == null) {
+            return null;
+        }
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            Page page = pages.get(i);
+            if (page.anchorTitle == null || compare(page.anchorTitle, page.anchorId, title, id) < 0) {
+                if (i == pages.size() - 1 && !complete && page.ids == null) {
+                    // Only the rows read tell where the last page ends, read after the change they already show it
+                    load(page);
+                    handler.post(notifyChanged);
+                }
+                return page.sequence < sequence ? page : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether a Recipe Type is shown
+     *
+     * @param typeId of the recipe
+     * @return true if recipes of the type are in the list
+     */
+    private boolean matches(long typeId) {
+        return this.typeId == RecipeDBAdaptor.ALL_TYPES || this.typeId == typeId;
+    }
+
+    /**
+     * Compare two keys in the order of the recipe pages, titles by code point as SQLite compares UTF-8 bytes
+     *
+     * @param title1 of the first key
+     * @param id1    of the first key
+     * @param title2 of the second key
+     * @param id2    of the second key
+     * @return int negative, zero or positive as the first key is before, equal to or after the second
+     */
+    static int compare(String title1, long id1, String title2, long id2) {
+        int i = 0;
+        int j = 0;
+        while (i < title1.length() && j < title2.length()) {
+            int c1 = title1.codePointAt(i);
+            int c2 = title2.codePointAt(j);
+            if (c1 != c2) {
+                return c1 < c2 ? -1 : 1;
+            }
+            i += Character.charCount(c1);
+            j += Character.charCount(c2);
+        }
+        if (i < title1.length()) {
+            return 1;
+        }
+        if (j < title2.length()) {
+            return -1;
+        }
+        return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+    }
+
+    /**
+     * Copy of an array without one element
+     *
+     * @param array to copy
+     * @param index of the element to leave out
+     * @return long[] copy
+     */
+    private static long[] remove(long[] array, int index) {
+        long[] copy = new long[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    /**
+     * Copy of an array without one element
+     *
+     * @param array to copy
+     * @param index of the element to leave out
+     * @return String[] copy
+     */
+    private static String[] remove(String[] array, int index) {
+        String[] copy = new String[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    /**
+     * Copy of an array with one more element
+     *
+     * @param array to copy
+     * @param index of the new element
+     * @param value of the new element
+     * @return long[] copy
+     */
+    private static long[] insert(long[] array, int index, long value) {
+        long[] copy = new long[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    /**
+     * Copy of an array with one more element
+     *
+     * @param array to copy
+     * @param index of the new element
+     * @param value of the new element
+     * @return String[] copy
+     */
+    private static String[] insert(String[] array, int index, String value) {
+        String[] copy = new String[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    /**
+     * Get the page holding a position, loading its rows if it was evicted
+     *
+     * @param position in the list
+     * @return Page with its rows loaded and its start set, null if the position is past the end
+     */
+    private Page pageAt(int position) {
+        if (position < 0 || position >= count) {
+            return null;
+        }
+        Page page = pages.get(pageIndexAt(position));
+        if (load(page)) {
+            // Rows changed since the page was evicted, every position after it moved
+            handler.post(notifyChanged);
+            return pageAt(position);
+        }
+        return page;
+    }
+
+    /**
+     * Find the page holding a position, the page of the last lookup and its neighbours are tried first so scrolling
+     * costs a constant time per row, other positions are found by a binary search on the start positions
+     *
+     * @param position in the list, below count
+     * @return int index of the page holding the position
+     */
+    private int pageIndexAt(int position) {
+        // Work out the starts left out of date by pages that changed size
+        for (int i = validStarts; i < pages.size(); i++) {
+            Page previous = i == 0 ? null : pages.get(i - 1);
+            pages.get(i).start = previous == null ? 0 : previous.start + previous.size;
+        }
+        validStarts = pages.size();
+        for (int i = Math.max(lastPageIndex - 1, 0); i <= lastPageIndex + 1 && i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (position >= page.start && position < page.start + page.size) {
+                lastPageIndex = i;
+                return i;
+            }
+        }
+        // The last page starting at or before the position holds it, empty pages share the start of the next one
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (pages.get(middle).start <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        lastPageIndex = low;
+        return low;
+    }
+
+    /**
+     * A keyset page, identified by the title and id of the row before it
+     */
+    private static class Page {
+        /**
+         * Index of the page in the list of pages, -1 until it is added
+         */
+        int index = -1;
+        /**
+         * Position of the first row of the page, out of date once a page before it changed size until the next lookup
+         */
+        int start;
+        /**
+         * Title of the row before the page, null for the first page
+         */
+        String anchorTitle;
+        /**
+         * Id of the row before the page
+         */
+        long anchorId;
+        /**
+         * Sequence of the last change published before the rows were read, later changes may already be in them
+         */
+        long sequence;
+        /**
+         * Number of rows in the page
+         */
+        int size;
+        /**
+         * Row ids, null while the page is evicted
+         */
+        long[] ids;
+        /**
+         * Row titles, null while the page is evicted
+         */
+        String[] titles;
+
+        /**
+         * Read the rows of the page if they are not in memory, the Cursor is closed once they are copied
+         *
+         * @param adapter owning the page
+         */
+        void load(RecipePageAdapter adapter) {
+            if (ids != null) {
+                adapter.loadedPages.get(this);
+                return;
+            }
+            sequence = adapter.changeNotifier.getSequence();
+            Cursor cursor;
+            if (index >= 0 && index < adapter.pages.size() - 1) {
+                // The page ends where the next one starts, however many rows were added or removed since
+                Page next = adapter.pages.get(index + 1);
+                cursor = adapter.recipeDBAdaptor.fetchRecipeRange(adapter.typeId, anchorTitle, anchorId,
+                        next.anchorTitle, next.anchorId);
+            } else if (index >= 0 && adapter.complete) {
+                cursor = adapter.recipeDBAdaptor.fetchRecipeRange(adapter.typeId, anchorTitle, anchorId, null, 0);
+            } else {
+                cursor = adapter.recipeDBAdaptor.fetchRecipePage(adapter.typeId, anchorTitle, anchorId, size);
+            }
+            try {
+                ids = new long[cursor.getCount()];
+                titles = new String[ids.length];
+                int idIndex = cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID);
+                int titleIndex = cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE);
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(idIndex);
+                    titles[i] = cursor.getString(titleIndex);
+                }
+            } finally {
+                cursor.close();
+            }
+            size = ids.length;
+            adapter.loadedPages.put(this, this);
+        }
+
+        /**
+         * Release the rows of the page, keeping its keys to read them again
+         */
+        void evict() {
+            ids = null;
+            titles = null;
+        }
+    }
+}
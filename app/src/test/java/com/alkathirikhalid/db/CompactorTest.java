@@ -0,0 +1,280 @@
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compactor unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class CompactorTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        // Plain text fills pages the way large recipes do, compressed it would hardly need any
+        RecipeDBAdaptor.setCompressedStorage(false);
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        db = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application).acquireDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RecipeDatabaseManager.getInstance(RuntimeEnvironment.application).releaseDatabase();
+        recipeDBAdaptor.close();
+        RecipeDBAdaptor.setCompressedStorage(true);
+    }
+
+    @Test
+    public void deleteRecipe_hidesRowUntilPurged() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        assertTrue(recipeDBAdaptor.deleteRecipe(id));
+        assertFalse(recipeDBAdaptor.deleteRecipe(id));
+
+        Cursor cursor = recipeDBAdaptor.fetchRecipe(id);
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        assertEquals(0, count(recipeDBAdaptor.searchRecipeSummaries("apple", 10)));
+        assertEquals(0, count(recipeDBAdaptor.fetchRecipesWithAnyIngredient(Collections.singleton("apple"))));
+        assertFalse(recipeDBAdaptor.updateRecipe(id, "Apple Tart", "- Apple", "1. Bake", "Healthy"));
+        // Still stored, only marked and without the text nothing reads any more
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT deleted FROM recipe WHERE _id = " + id, null));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT LENGTH(ingredients) + LENGTH(steps) FROM recipe WHERE _id = " + id, null));
+
+        while (recipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE)) {
+            // Each batch is committed on its own
+        }
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE, "_id = " + id, null));
+        assertFalse(Compactor.isDue(db));
+    }
+
+    @Test
+    public void deleteRecipe_ofCompressedText_leavesAnEmptyTombstone() throws Exception {
+        RecipeDBAdaptor.setCompressedStorage(true);
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        long kept = recipeDBAdaptor.createRecipe("Apple Crumble", "- Oats\n- Apple", "1. Bake", "Healthy");
+        assertEquals(Cursor.FIELD_TYPE_BLOB, DatabaseUtils.longForQuery(db, "SELECT CASE typeof(steps) WHEN 'blob' THEN "
+                + Cursor.FIELD_TYPE_BLOB + " ELSE 0 END FROM recipe WHERE _id = " + id, null));
+
+        assertTrue(recipeDBAdaptor.deleteRecipe(id));
+
+        // The words indexed from the decoded text are gone, not those of the compressed bytes
+        assertEquals(kept, DatabaseUtils.longForQuery(db, "SELECT docid FROM " + RecipeDBAdaptor.SEARCH_TABLE + " WHERE "
+                + RecipeDBAdaptor.SEARCH_TABLE + " MATCH 'apple'", null));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.SEARCH_TABLE, RecipeDBAdaptor.SEARCH_TABLE
+                + " MATCH 'flour'", null));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT LENGTH(ingredients) + LENGTH(steps) FROM recipe WHERE _id = " + id, null));
+    }
+
+    @Test
+    public void purge_boundedBatches() throws Exception {
+        List<Long> ids = insert(450);
+        for (long id : ids) {
+            assertTrue(recipeDBAdaptor.deleteRecipe(id));
+        }
+        StatementCache statementCache = new StatementCache(db);
+        try {
+            assertEquals(200, Compactor.purge(statementCache, 200));
+            assertEquals(200, Compactor.purge(statementCache, 200));
+            assertEquals(50, Compactor.purge(statementCache, 200));
+            assertEquals(0, Compactor.purge(statementCache, 200));
+        } finally {
+            statementCache.close();
+        }
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE, "deleted = 1", null));
+    }
+
+    @Test
+    public void purge_dropsTheIngredientLinksOfPurgedRecipes() throws Exception {
+        List<Long> ids = insert(3);
+        deleteAll(ids);
+        // Links left to deleted recipes, as by a backfill run before this fix
+        for (long id : ids) {
+            db.execSQL("INSERT OR IGNORE INTO " + IngredientIndex.RECIPE_INGREDIENT_TABLE + "(" + IngredientIndex.KEY_INGREDIENT_ID
+                    + ", " + IngredientIndex.KEY_RECIPE_ID + ") VALUES (1, " + id + ")");
+        }
+        StatementCache statementCache = new StatementCache(db);
+        try {
+            assertEquals(3, Compactor.purge(statementCache, 200));
+        } finally {
+            statementCache.close();
+        }
+        for (long id : ids) {
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, IngredientIndex.RECIPE_INGREDIENT_TABLE,
+                    IngredientIndex.KEY_RECIPE_ID + " = " + id, null));
+        }
+    }
+
+    @Test
+    public void runCompactionBatch_givesFreePagesBack() throws Exception {
+        // Turned on at creation, or by the first batch if android_metadata came first
+        recipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE);
+        assertTrue(Compactor.isIncremental(db));
+        deleteAll(insert(400));
+        while (recipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE)) {
+            // Each batch is committed on its own
+        }
+        assertFalse(Compactor.isVacuumDue(db));
+
+        deleteAll(insert(400));
+        while (recipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE)
+                && DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE, "deleted = 1", null) > 0) {
+            // Purge only
+        }
+        long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        assertTrue(Compactor.isVacuumDue(db));
+
+        recipeDBAdaptor.runCompactionBatch(Compactor.COMPACT_BATCH_SIZE);
+
+        assertTrue(DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null) < freePages);
+    }
+
+    @Test
+    public void runBatch_turnsIncrementalVacuumOnForANewDatabase() throws Exception {
+        // As on a device, android_metadata is created before onCreate so its pragma alone has no effect
+        SQLiteDatabase created = SQLiteDatabase.create(null);
+        try {
+            created.execSQL("CREATE TABLE android_metadata (locale TEXT)");
+            new RecipeDBAdaptor.DBHelper(RuntimeEnvironment.application).onCreate(created);
+            assertFalse(Compactor.isIncremental(created));
+            assertTrue(Compactor.isDue(created));
+            StatementCache statementCache = new StatementCache(created);
+            try {
+                assertFalse(Compactor.runBatch(statementCache, Compactor.COMPACT_BATCH_SIZE));
+            } finally {
+                statementCache.close();
+            }
+            assertTrue(Compactor.isIncremental(created));
+            assertFalse(Compactor.isDue(created));
+        } finally {
+            created.close();
+        }
+    }
+
+    @Test
+    public void runBatch_turnsIncrementalVacuumOnForAnOlderDatabaseOnceEnoughIsFree() throws Exception {
+        // Created before incremental auto vacuum and too large to be rewritten at any time
+        SQLiteDatabase older = SQLiteDatabase.create(null);
+        try {
+            older.execSQL("CREATE TABLE recipe (_id INTEGER PRIMARY KEY, title TEXT, deleted INTEGER NOT NULL DEFAULT 0)");
+            StringBuilder title = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                title.append('x');
+            }
+            for (int i = 0; i < 6000; i++) {
+                older.execSQL("INSERT INTO recipe (title) VALUES (?)", new Object[]{title.toString()});
+            }
+            assertTrue(DatabaseUtils.longForQuery(older, "PRAGMA page_count", null) > Compactor.VACUUM_SWITCH_MAX_PAGES);
+            assertFalse(Compactor.isDue(older));
+
+            older.execSQL("DELETE FROM recipe");
+            long freePages = DatabaseUtils.longForQuery(older, "PRAGMA freelist_count", null);
+            assertTrue(Compactor.isVacuumDue(older));
+            assertTrue(Compactor.isDue(older));
+            StatementCache statementCache = new StatementCache(older);
+            try {
+                assertFalse(Compactor.runBatch(statementCache, Compactor.COMPACT_BATCH_SIZE));
+            } finally {
+                statementCache.close();
+            }
+            assertTrue(Compactor.isIncremental(older));
+            assertTrue(DatabaseUtils.longForQuery(older, "PRAGMA freelist_count", null) < freePages);
+        } finally {
+            older.close();
+        }
+    }
+
+    @Test
+    public void compaction_doesNotStallAWriteQueuedMeanwhile() throws Exception {
+        int deleted = Compactor.COMPACT_BATCH_SIZE * 5;
+        deleteAll(insert(deleted));
+        RecipeWriter recipeWriter = RecipeWriter.getInstance(RuntimeEnvironment.application);
+        // Holds the writer thread until the compaction and the write are both queued
+        FutureTask<Long> gate = new FutureTask<Long>(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return 0L;
+            }
+        });
+        recipeWriter.updateRecipe(gate, "Apple Pie", "- Apple", "1. Bake", 3, null);
+        recipeWriter.runCompaction();
+        Future<Long> write = recipeWriter.createRecipe("Apple Pie", "- Apple", "1. Bake", 3, null);
+        gate.run();
+
+        assertTrue(write.get() > 0);
+        // Committed after the first purge batch, the rest of the compaction is queued behind it
+        assertEquals(deleted - Compactor.COMPACT_BATCH_SIZE,
+                DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE, "deleted = 1", null));
+        // Let the rest of the compaction finish before the next test
+        while (DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE, "deleted = 1", null) > 0) {
+            recipeWriter.deleteRecipe(0, null).get();
+        }
+    }
+
+    private List<Long> insert(int count) {
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            steps.append(i + 1).append(". Stir the pot and wait a little\n");
+        }
+        List<Recipe> recipes = new ArrayList<Recipe>();
+        for (int i = 0; i < count; i++) {
+            recipes.add(new Recipe(0, "Recipe " + i, "- Flour\n- Sugar", steps.toString(), 3, null));
+        }
+        long before = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(_id), 0) FROM recipe", null);
+        recipeDBAdaptor.bulkInsert(recipes);
+        List<Long> ids = new ArrayList<Long>();
+        Cursor cursor = db.rawQuery("SELECT _id FROM recipe WHERE _id > ? ORDER BY _id", new String[]{String.valueOf(before)});
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(count, ids.size());
+        return ids;
+    }
+
+    private void deleteAll(List<Long> ids) {
+        for (long id : ids) {
+            assertTrue(recipeDBAdaptor.deleteRecipe(id));
+        }
+    }
+
+    private static int count(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.alkathirikhalid.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Ingredient Parser unit test, runs on the development machine (host).
+ */
+public class IngredientParserTest {
+    @Test
+    public void parse_dummyDataIngredients() throws Exception {
+        assertEquals(Arrays.asList("chocolate", "flour", "milk", "sugar", "eggs"),
+                IngredientParser.parse("- Chocolate\n- Flour\n- Milk\n- Sugar\n- Eggs"));
+    }
+
+    @Test
+    public void parse_stripsBulletsNumberingAndBlankLines() throws Exception {
+        assertEquals(Arrays.asList("brown sugar", "eggs", "milk"),
+                IngredientParser.parse("  *  Brown   Sugar \r\n\r\n1. Eggs\n2) milk\n   \n"));
+    }
+
+    @Test
+    public void parse_keepsFirstOfDuplicates() throws Exception {
+        assertEquals(Arrays.asList("eggs", "flour"), IngredientParser.parse("- Eggs\n- Flour\n- EGGS"));
+    }
+
+    @Test
+    public void parse_nullIsEmpty() throws Exception {
+        assertEquals(Collections.<String>emptyList(), IngredientParser.parse(null));
+    }
+
+    @Test
+    public void normalize_userInputMatchesParsedLine() throws Exception {
+        assertEquals(IngredientParser.parse("- Olive Oil").get(0), IngredientParser.normalize("  olive   OIL "));
+    }
+
+    @Test
+    public void normalize_keepsHyphenatedNames() throws Exception {
+        assertEquals("half-and-half", IngredientParser.normalize("- Half-and-Half"));
+    }
+}
@@ -0,0 +1,285 @@
+package com.alkathirikhalid.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Migration Engine unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class MigrationEngineTest {
+    private static final int VERSION_1_RECIPES = 1000;
+    private File databaseFile;
+
+    @Before
+    public void setUp() throws Exception {
+        databaseFile = RuntimeEnvironment.application.getDatabasePath(RecipeDBAdaptor.DATABASE_NAME);
+        databaseFile.getParentFile().mkdirs();
+        SQLiteDatabase.deleteDatabase(databaseFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLiteDatabase.deleteDatabase(databaseFile);
+    }
+
+    @Test
+    public void migrate_populatedVersion1Database() throws Exception {
+        createVersion1Database();
+
+        RecipeDBAdaptor.DBHelper dbHelper = new RecipeDBAdaptor.DBHelper(RuntimeEnvironment.application);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try {
+            assertEquals(RecipeDBAdaptor.DATABASE_VERSION, db.getVersion());
+            assertEquals(VERSION_1_RECIPES, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE));
+            // Types of the XML asset keep their ids, types only users stored get new ones
+            assertEquals("Healthy", DatabaseUtils.stringForQuery(db, "SELECT t.name FROM recipe r JOIN recipe_type t"
+                    + " ON t._id = r.type_id WHERE r.title = 'Recipe 0'", null));
+            assertEquals("Grandma's", DatabaseUtils.stringForQuery(db, "SELECT t.name FROM recipe r JOIN recipe_type t"
+                    + " ON t._id = r.type_id WHERE r.title = 'Recipe 1'", null));
+            // Search was rebuilt from the stored rows
+            assertEquals(VERSION_1_RECIPES, DatabaseUtils.longForQuery(db,
+                    "SELECT COUNT(*) FROM recipe_fts WHERE recipe_fts MATCH 'flour'", null));
+            // The ingredient index is left to the backfill
+            MigrationEngine engine = dbHelper.getMigrationEngine();
+            assertTrue(engine.hasPendingBackfills(db));
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, IngredientIndex.RECIPE_INGREDIENT_TABLE));
+
+            engine.runPendingBackfills(db, 64);
+
+            assertFalse(engine.hasPendingBackfills(db));
+            assertEquals(VERSION_1_RECIPES * 2, DatabaseUtils.queryNumEntries(db, IngredientIndex.RECIPE_INGREDIENT_TABLE));
+            assertEquals(VERSION_1_RECIPES, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM recipe_ingredient ri"
+                    + " JOIN ingredient i ON i._id = ri.ingredient_id WHERE i.name = 'flour'", null));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    @Test
+    public void backfill_skipsRecipesDeletedAfterTheUpgrade() throws Exception {
+        createVersion1Database();
+
+        RecipeDBAdaptor.DBHelper dbHelper = new RecipeDBAdaptor.DBHelper(RuntimeEnvironment.application);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try {
+            // Deleted before the backfill reached it
+            db.execSQL("UPDATE recipe SET deleted = 1 WHERE title = 'Recipe 0'");
+
+            dbHelper.getMigrationEngine().runPendingBackfills(db, 64);
+
+            assertEquals((VERSION_1_RECIPES - 1) * 2, DatabaseUtils.queryNumEntries(db, IngredientIndex.RECIPE_INGREDIENT_TABLE));
+            assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM recipe_ingredient ri"
+                    + " JOIN recipe r ON r._id = ri.recipe_id WHERE r.title = 'Recipe 0'", null));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    @Test
+    public void migrate_runsStepsInVersionOrder() throws Exception {
+        final List<Integer> applied = new ArrayList<Integer>();
+        MigrationEngine engine = new MigrationEngine(Arrays.asList(
+                recording(4, applied), recording(2, applied), recording(3, applied), recording(5, applied)));
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        try {
+            engine.migrate(db, 1, 4);
+        } finally {
+            db.close();
+        }
+        assertEquals(Arrays.asList(2, 3, 4), applied);
+    }
+
+    @Test
+    public void onUpgrade_failedStepRollsBackTheWholeUpgrade() throws Exception {
+        final MigrationEngine engine = new MigrationEngine(Arrays.asList(
+                new Migration(2) {
+                    @Override
+                    void migrate(SQLiteDatabase sqLiteDatabase) {
+                        sqLiteDatabase.execSQL("CREATE TABLE two(_id INTEGER PRIMARY KEY)");
+                    }
+                },
+                new Migration(3) {
+                    @Override
+                    void migrate(SQLiteDatabase sqLiteDatabase) {
+                        sqLiteDatabase.execSQL("CREATE TABLE three(_id INTEGER PRIMARY KEY)");
+                        throw new IllegalStateException("step 3 failed");
+                    }
+                }));
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        db.setVersion(1);
+        db.close();
+        // Upgraded the way DBHelper does, inside the transaction SQLiteOpenHelper runs onUpgrade in
+        SQLiteOpenHelper helper = new SQLiteOpenHelper(RuntimeEnvironment.application, RecipeDBAdaptor.DATABASE_NAME, null, 3) {
+            @Override
+            public void onCreate(SQLiteDatabase sqLiteDatabase) {
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+                engine.migrate(sqLiteDatabase, oldVersion, newVersion);
+            }
+        };
+        try {
+            helper.getWritableDatabase();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("step 3 failed", expected.getMessage());
+        } finally {
+            helper.close();
+        }
+
+        db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        try {
+            assertEquals(1, db.getVersion());
+            assertEquals(0, tableCount(db, "two"));
+            assertEquals(0, tableCount(db, "three"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrate_missingVersionFails() throws Exception {
+        List<Integer> applied = new ArrayList<Integer>();
+        MigrationEngine engine = new MigrationEngine(Arrays.asList(recording(2, applied), recording(4, applied)));
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        try {
+            engine.migrate(db, 1, 4);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void backfill_resumesAfterLastCommittedBatch() throws Exception {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        try {
+            db.execSQL("CREATE TABLE item(_id INTEGER PRIMARY KEY, value INTEGER)");
+            ContentValues contentValues = new ContentValues();
+            for (int i = 1; i <= 10; i++) {
+                contentValues.put("_id", i);
+                db.insert("item", null, contentValues);
+            }
+            new MigrationEngine(Arrays.asList(doubling())).migrate(db, 1, 2);
+            // Rows added after the upgrade are not part of the backfill
+            contentValues.put("_id", 11);
+            db.insert("item", null, contentValues);
+
+            assertTrue(new MigrationEngine(Arrays.asList(doubling())).runBackfillBatch(db, 4));
+            assertEquals(4, DatabaseUtils.longForQuery(db, "SELECT last_id FROM migration_backfill", null));
+
+            // A new engine, as after a process restart, carries on from the stored progress
+            MigrationEngine restarted = new MigrationEngine(Arrays.asList(doubling()));
+            assertTrue(restarted.runBackfillBatch(db, 4));
+            assertFalse(restarted.runBackfillBatch(db, 4));
+
+            Cursor cursor = db.rawQuery("SELECT _id, value FROM item ORDER BY _id", null);
+            try {
+                while (cursor.moveToNext()) {
+                    if (cursor.getLong(0) <= 10) {
+                        assertEquals(cursor.getLong(0) * 2, cursor.getLong(1));
+                    } else {
+                        assertTrue(cursor.isNull(1));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private void createVersion1Database() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(databaseFile, null);
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS recipe(_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT NOT NULL,"
+                    + " ingredients TEXT NOT NULL, steps TEXT NOT NULL, type TEXT NOT NULL)");
+            ContentValues contentValues = new ContentValues();
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < VERSION_1_RECIPES; i++) {
+                    contentValues.put("title", "Recipe " + i);
+                    contentValues.put("ingredients", "- Flour\n- Ingredient " + i);
+                    contentValues.put("steps", "1. Bake");
+                    contentValues.put("type", i % 2 == 0 ? "Healthy" : "Grandma's");
+                    db.insert("recipe", null, contentValues);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long tableCount(SQLiteDatabase db, String table) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{table});
+    }
+
+    private static Migration recording(final int version, final List<Integer> applied) {
+        return new Migration(version) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+                applied.add(version);
+            }
+        };
+    }
+
+    private static Migration doubling() {
+        return new Migration(2) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase) {
+            }
+
+            @Override
+            Backfill getBackfill() {
+                return new Backfill("item_value") {
+                    @Override
+                    long getUntilId(SQLiteDatabase sqLiteDatabase) {
+                        return DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT MAX(_id) FROM item", null);
+                    }
+
+                    @Override
+                    long backfill(SQLiteDatabase sqLiteDatabase, long afterId, long untilId, int batchSize) {
+                        long lastId = DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT IFNULL(MAX(_id), ?) FROM"
+                                + " (SELECT _id FROM item WHERE _id > ? AND _id <= ? ORDER BY _id LIMIT ?)",
+                                new String[]{String.valueOf(afterId), String.valueOf(afterId), String.valueOf(untilId),
+                                        String.valueOf(batchSize)});
+                        sqLiteDatabase.execSQL("UPDATE item SET value = _id * 2 WHERE _id > ? AND _id <= ?",
+                                new Object[]{afterId, lastId});
+                        return lastId;
+                    }
+                };
+            }
+        };
+    }
+}
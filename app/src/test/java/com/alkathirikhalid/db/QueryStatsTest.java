@@ -0,0 +1,136 @@
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Query Stats unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class QueryStatsTest {
+    private QueryStats queryStats;
+
+    @Before
+    public void setUp() throws Exception {
+        queryStats = QueryStats.getInstance();
+        queryStats.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queryStats.setSlowQueryThresholdMs(QueryStats.DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+        queryStats.reset();
+    }
+
+    @Test
+    public void histogram_percentilesFromBuckets() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram("fetchRecipe");
+        for (int i = 0; i < 90; i++) {
+            histogram.record(80000, false);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(4000000, false);
+        }
+        histogram.record(3000000000L, true);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getPercentileMicros(50));
+        assertEquals(100, histogram.getPercentileMicros(90));
+        assertEquals(5000, histogram.getPercentileMicros(99));
+        assertEquals(3000000, histogram.getPercentileMicros(100));
+        assertEquals(3000000000L, histogram.getMaxNanos());
+        assertEquals(1, histogram.getSlowCount());
+    }
+
+    @Test
+    public void adaptor_recordsEveryOperation() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+            read(recipeDBAdaptor.fetchRecipe(id));
+            read(recipeDBAdaptor.fetchRecipe(id));
+            read(recipeDBAdaptor.fetchLike("Heal"));
+            read(recipeDBAdaptor.fetchAllRecipes());
+            recipeDBAdaptor.deleteRecipe(id);
+        } finally {
+            recipeDBAdaptor.close();
+        }
+
+        assertEquals(1, queryStats.getStats("createRecipe").getCount());
+        assertEquals(2, queryStats.getStats("fetchRecipe").getCount());
+        assertEquals(1, queryStats.getStats("fetchLike").getCount());
+        assertEquals(1, queryStats.getStats("fetchAllRecipes").getCount());
+        assertEquals(1, queryStats.getStats("deleteRecipe").getCount());
+        assertEquals(0, queryStats.getStats("updateRecipe").getCount());
+    }
+
+    @Test
+    public void query_recordedOnceFirstRead() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+            Cursor cursor = recipeDBAdaptor.fetchAllRecipes();
+            // Not run yet, the caller thread only compiled the query
+            assertEquals(0, queryStats.getStats("fetchAllRecipes").getCount());
+
+            assertEquals(1, cursor.getCount());
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+            cursor.close();
+            assertEquals(1, queryStats.getStats("fetchAllRecipes").getCount());
+        } finally {
+            recipeDBAdaptor.close();
+        }
+    }
+
+    @Test
+    public void slowQuery_loggedWithQueryPlan() throws Exception {
+        queryStats.setSlowQueryThresholdMs(0);
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            read(recipeDBAdaptor.fetchRecipe(1));
+        } finally {
+            recipeDBAdaptor.close();
+        }
+
+        // Explained on the Recipe Writer thread
+        List<String> slowQueries = queryStats.getSlowQueries();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slowQueries.get(0).contains("(plan not explained yet)") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            slowQueries = queryStats.getSlowQueries();
+        }
+        assertEquals(1, slowQueries.size());
+        assertTrue(slowQueries.get(0), slowQueries.get(0).startsWith("fetchRecipe took "));
+        assertTrue(slowQueries.get(0), slowQueries.get(0).contains("INTEGER PRIMARY KEY"));
+        assertEquals(1, queryStats.getStats("fetchRecipe").getSlowCount());
+
+        StringWriter dump = new StringWriter();
+        queryStats.dump(new PrintWriter(dump));
+        assertTrue(dump.toString(), dump.toString().contains("fetchRecipe count=1 "));
+        assertTrue(dump.toString(), dump.toString().contains("Slow queries, latest 1"));
+    }
+
+    private static void read(Cursor cursor) {
+        cursor.getCount();
+        cursor.close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.alkathirikhalid.db;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Cache unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeCacheTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void getRecipe_servesRepeatReadsFromMemory() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        int hits = RecipeDBAdaptor.getRecipeCacheHits();
+        int misses = RecipeDBAdaptor.getRecipeCacheMisses();
+        long fetches = QueryStats.getInstance().getStats("fetchRecipe").getCount();
+
+        Recipe recipe = recipeDBAdaptor.getRecipe(id);
+        assertEquals("- Flour\n- Apple", recipe.getIngredients());
+        assertEquals("Healthy", recipe.getType());
+        assertSame(recipe, recipeDBAdaptor.getRecipe(id));
+        RecipeDBAdaptor other = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            assertSame(recipe, other.getRecipe(id));
+        } finally {
+            other.close();
+        }
+
+        assertEquals(misses + 1, RecipeDBAdaptor.getRecipeCacheMisses());
+        assertEquals(hits + 2, RecipeDBAdaptor.getRecipeCacheHits());
+        assertEquals(fetches + 1, QueryStats.getInstance().getStats("fetchRecipe").getCount());
+    }
+
+    @Test
+    public void writes_invalidateTheRecipe() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        recipeDBAdaptor.getRecipe(id);
+
+        assertTrue(recipeDBAdaptor.updateRecipe(id, "Apple Tart", "- Flour\n- Apple", "1. Bake", "Healthy"));
+        assertEquals("Apple Tart", recipeDBAdaptor.getRecipe(id).getTitle());
+
+        assertTrue(recipeDBAdaptor.deleteRecipe(id));
+        assertNull(recipeDBAdaptor.getRecipe(id));
+    }
+
+    @Test
+    public void put_readBeforeAWriteIsDropped() throws Exception {
+        RecipeCache recipeCache = new RecipeCache(RecipeCache.MAX_BYTES);
+        long generation = recipeCache.getGeneration();
+        recipeCache.invalidate(1);
+        recipeCache.put(new Recipe(1, "Apple Pie", "- Apple", "1. Bake", 3, "Healthy"), generation);
+
+        assertNull(recipeCache.get(1));
+    }
+
+    @Test
+    public void put_boundedByBytes() throws Exception {
+        Recipe recipe = new Recipe(1, "Apple Pie", "- Apple", "1. Bake", 3, "Healthy");
+        int bytes = RecipeCache.estimateBytes(recipe);
+        RecipeCache recipeCache = new RecipeCache(bytes * 3);
+        for (long id = 1; id <= 5; id++) {
+            recipeCache.put(new Recipe(id, "Apple Pie", "- Apple", "1. Bake", 3, "Healthy"), recipeCache.getGeneration());
+        }
+
+        assertEquals(bytes * 3, recipeCache.getBytes());
+        assertNull(recipeCache.get(1));
+        assertNull(recipeCache.get(2));
+        assertEquals(5, recipeCache.get(5).getId());
+    }
+}
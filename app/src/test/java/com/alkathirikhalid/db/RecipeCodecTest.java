@@ -0,0 +1,60 @@
+package com.alkathirikhalid.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Codec unit test, runs on the development machine (host).
+ */
+public class RecipeCodecTest {
+    private static final String STEPS = "1. Preheat the oven to 180 degrees and butter a large pan\n"
+            + "2. Whisk the eggs with the sugar until pale, then add the milk and the melted butter\n"
+            + "3. Stir in the flour with a pinch of salt and pour into the pan\n"
+            + "4. Bake for 40 minutes until golden brown, cool in the pan for 10 minutes\n"
+            + "5. Serve with fresh cream and season with a little sugar to taste\n";
+
+    @Test
+    public void encode_roundTrip() throws Exception {
+        byte[] encoded = RecipeCodec.encode(STEPS);
+        assertNotNull(encoded);
+        assertEquals(STEPS, RecipeCodec.decode(encoded));
+    }
+
+    @Test
+    public void encode_shrinksRecipeText() throws Exception {
+        byte[] encoded = RecipeCodec.encode(STEPS);
+        assertTrue(encoded.length + " bytes", encoded.length < STEPS.length() * 2 / 3);
+    }
+
+    @Test
+    public void encode_keepsShortTextAsText() throws Exception {
+        assertNull(RecipeCodec.encode("- Chocolate\n- Flour\n- Milk\n- Sugar\n- Eggs"));
+        assertNull(RecipeCodec.encode(null));
+    }
+
+    @Test
+    public void encode_longMultilingualText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append(i).append(". Cr\u00e8me br\u00fbl\u00e9e \u5473\u564c\u6c41 \ud83c\udf70\n");
+        }
+        assertEquals(text.toString(), RecipeCodec.decode(RecipeCodec.encode(text.toString())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_unknownFormat() throws Exception {
+        RecipeCodec.decode(new byte[]{42, 1, 2, 3});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_truncated() throws Exception {
+        byte[] encoded = RecipeCodec.encode(STEPS);
+        byte[] truncated = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        RecipeCodec.decode(truncated);
+    }
+}
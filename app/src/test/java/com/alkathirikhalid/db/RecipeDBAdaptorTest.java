@@ -0,0 +1,361 @@
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Database Adaptor unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeDBAdaptorTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void fetchRecipesWithAnyIngredient_matchesOneOfTheNames() throws Exception {
+        recipeDBAdaptor.createRecipe("Quince Jam", "- Quince\n- Sugar", "1. Boil", 3);
+        recipeDBAdaptor.createRecipe("Saffron Rice", "- Saffron\n- Rice", "1. Boil", 3);
+        recipeDBAdaptor.createRecipe("Saffron Quince Tart", "- Quince\n- Saffron\n- Flour", "1. Bake", 3);
+        long deleted = recipeDBAdaptor.createRecipe("Quince Paste", "- Quince", "1. Boil", 3);
+        recipeDBAdaptor.deleteRecipe(deleted);
+
+        assertEquals(Arrays.asList("Quince Jam", "Saffron Quince Tart", "Saffron Rice"),
+                titles(recipeDBAdaptor.fetchRecipesWithAnyIngredient(Arrays.asList(" QUINCE ", "- saffron"))));
+        assertEquals(Collections.<String>emptyList(),
+                titles(recipeDBAdaptor.fetchRecipesWithAnyIngredient(Arrays.asList("", "  "))));
+    }
+
+    @Test
+    public void fetchRecipesWithAllIngredients_matchesEveryName() throws Exception {
+        recipeDBAdaptor.createRecipe("Quince Jam", "- Quince\n- Sugar", "1. Boil", 3);
+        long tart = recipeDBAdaptor.createRecipe("Saffron Quince Tart", "- Quince\n- Saffron\n- Flour", "1. Bake", 3);
+        recipeDBAdaptor.createRecipe("Saffron Quince Cake", "- Quince\n- Saffron\n- Eggs", "1. Bake", 3);
+
+        assertEquals(Arrays.asList("Saffron Quince Cake", "Saffron Quince Tart"),
+                titles(recipeDBAdaptor.fetchRecipesWithAllIngredients(Arrays.asList("Quince", "Saffron", "quince"))));
+        assertEquals(Collections.singletonList("Saffron Quince Tart"),
+                titles(recipeDBAdaptor.fetchRecipesWithAllIngredients(Arrays.asList("Quince", "Saffron", "Flour"))));
+
+        // The index follows updates, and deleted recipes are left out
+        recipeDBAdaptor.updateRecipe(tart, "Saffron Quince Tart", "- Quince\n- Flour", "1. Bake", 3);
+        assertEquals(Collections.<String>emptyList(),
+                titles(recipeDBAdaptor.fetchRecipesWithAllIngredients(Arrays.asList("Quince", "Saffron", "Flour"))));
+        recipeDBAdaptor.deleteRecipe(tart);
+        assertEquals(Collections.singletonList("Quince Jam"),
+                titles(recipeDBAdaptor.fetchRecipesWithAllIngredients(Arrays.asList("Quince", "Sugar"))));
+    }
+
+    @Test
+    public void createRecipe_underAKnownClientKey_updatesTheRecipe() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Cherry Pie", "- Cherry", "1. Bake", 3, "editor-1");
+        assertEquals(id, recipeDBAdaptor.findRecipeByClientKey("editor-1"));
+        assertEquals(-1, recipeDBAdaptor.findRecipeByClientKey("editor-2"));
+
+        assertEquals(id, recipeDBAdaptor.createRecipe("Cherry Tart", "- Cherry", "1. Bake\n2. Serve", 3, "editor-1"));
+
+        assertEquals("Cherry Tart", recipeDBAdaptor.getRecipe(id).getTitle());
+        assertEquals(Collections.singletonList("Cherry Tart"),
+                titles(recipeDBAdaptor.fetchRecipesWithAnyIngredient(Collections.singletonList("Cherry"))));
+    }
+
+    @Test
+    public void search_followsCreateUpdateAndDelete() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Lemon Tart", "- Lemon\n- Butter", "1. Bake", 3);
+        assertEquals(Collections.singletonList("Lemon Tart"), titles(recipeDBAdaptor.searchRecipeSummaries("butter", 10)));
+
+        // The words of the compressed text it replaces are removed, not those of its bytes
+        recipeDBAdaptor.updateRecipe(id, "Lemon Tart", "- Lemon\n- Cream", "1. Bake", 3);
+        assertEquals(Collections.<String>emptyList(), titles(recipeDBAdaptor.searchRecipeSummaries("butter", 10)));
+        assertEquals(Collections.singletonList("Lemon Tart"), titles(recipeDBAdaptor.searchRecipeSummaries("cream", 10)));
+
+        recipeDBAdaptor.deleteRecipe(id);
+        assertEquals(Collections.<String>emptyList(), titles(recipeDBAdaptor.searchRecipeSummaries("lemon", 10)));
+        assertEquals(Collections.<String>emptyList(), titles(recipeDBAdaptor.searchRecipeSummaries("cream", 10)));
+    }
+
+    @Test
+    public void search_findsBulkInsertedRecipes() throws Exception {
+        recipeDBAdaptor.bulkInsert(Arrays.asList(
+                new Recipe(0, "Plum Cake", "- Plum\n- Flour", "1. Bake", 3, null),
+                new Recipe(0, "Plum Jam", "- Plum\n- Sugar", "1. Boil", 3, null),
+                new Recipe(0, "Pear Jam", "- Pear\n- Sugar", "1. Boil", 3, null)));
+
+        assertEquals(Arrays.asList("Plum Cake", "Plum Jam"), titles(recipeDBAdaptor.searchRecipeSummaries("plum", 10)));
+        assertEquals(Arrays.asList("Pear Jam", "Plum Jam"), titles(recipeDBAdaptor.searchRecipeSummaries("sugar", 10)));
+    }
+
+    @Test
+    public void search_matchesEveryWordAsAPrefix() throws Exception {
+        recipeDBAdaptor.createRecipe("Chocolate Cake", "- Chocolate\n- Flour", "1. Bake", 3);
+        recipeDBAdaptor.createRecipe("Chocolate Mousse", "- Chocolate\n- Cream", "1. Whisk\n2. Chill", 3);
+        recipeDBAdaptor.createRecipe("Carrot Cake", "- Carrot\n- Flour", "1. Bake", 3);
+
+        assertEquals(Arrays.asList("Chocolate Cake", "Chocolate Mousse"), titles(recipeDBAdaptor.searchRecipeSummaries("choc", 10)));
+        assertEquals(Collections.singletonList("Chocolate Cake"), titles(recipeDBAdaptor.searchRecipeSummaries("Choc CAK", 10)));
+        assertEquals(Collections.singletonList("Chocolate Mousse"), titles(recipeDBAdaptor.searchRecipeSummaries("chill", 10)));
+        // Operators typed by the user are plain words
+        assertEquals(Collections.<String>emptyList(), titles(recipeDBAdaptor.searchRecipeSummaries("choc OR carrot", 10)));
+        assertEquals(1, count(recipeDBAdaptor.searchRecipeSummaries("cake", 1)));
+    }
+
+    @Test
+    public void search_ranksMoreTermsInTheTitleFirst() throws Exception {
+        recipeDBAdaptor.createRecipe("Apple Smoothie", "- Apple\n- Banana", "1. Blend", 3);
+        recipeDBAdaptor.createRecipe("Banana Bread", "- Banana\n- Flour", "1. Bake", 3);
+        recipeDBAdaptor.createRecipe("Bread Pudding", "- Bread\n- Banana\n- Milk", "1. Bake", 3);
+
+        // Title first, then title order
+        assertEquals(Arrays.asList("Banana Bread", "Apple Smoothie", "Bread Pudding"),
+                titles(recipeDBAdaptor.searchRecipeSummaries("banana", 10)));
+        // Both words in the title, then one of them
+        assertEquals(Arrays.asList("Banana Bread", "Bread Pudding"),
+                titles(recipeDBAdaptor.searchRecipeSummaries("banana bread", 10)));
+    }
+
+    @Test
+    public void bulkInsert_commitsOneTransactionPerBatch() throws Exception {
+        final List<BulkInsertResult> progress = new ArrayList<BulkInsertResult>();
+        BulkInsertResult result = recipeDBAdaptor.bulkInsert(recipes("Fig", 7), 3, new RecipeDBAdaptor.OnBatchCommittedListener() {
+            @Override
+            public void onBatchCommitted(BulkInsertResult batch) {
+                progress.add(batch);
+            }
+        });
+
+        assertEquals(7, result.getRows());
+        assertEquals(3, result.getBatches());
+        assertTrue(result.getElapsedNanos() > 0);
+        assertTrue(result.getRowsPerSecond() > 0);
+        assertTrue(result.toString().startsWith("7 rows in 3 batches, "));
+        assertEquals(3, progress.size());
+        assertEquals(3, progress.get(0).getRows());
+        assertEquals(1, progress.get(0).getBatches());
+        assertEquals(6, progress.get(1).getRows());
+        assertEquals(7, progress.get(2).getRows());
+        assertEquals(3, progress.get(2).getBatches());
+        assertEquals(7, titles(recipeDBAdaptor.searchRecipeSummaries("fig", 10)).size());
+    }
+
+    @Test
+    public void bulkInsert_ofARefusedRecipe_rollsBackItsBatchAndThrows() throws Exception {
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        SQLiteDatabase db = manager.acquireDatabase();
+        try {
+            db.execSQL("CREATE TRIGGER refuse_recipe BEFORE INSERT ON recipe WHEN NEW.title = 'Fig 4' "
+                    + "BEGIN SELECT RAISE(ABORT, 'refused'); END");
+            final List<BulkInsertResult> progress = new ArrayList<BulkInsertResult>();
+            try {
+                recipeDBAdaptor.bulkInsert(recipes("Fig", 7), 3, new RecipeDBAdaptor.OnBatchCommittedListener() {
+                    @Override
+                    public void onBatchCommitted(BulkInsertResult batch) {
+                        progress.add(batch);
+                    }
+                });
+                fail("Fig 4 was refused");
+            } catch (SQLException expected) {
+                // The first batch stays committed, the second is rolled back with its index entries
+            }
+            assertEquals(1, progress.size());
+            assertEquals(3, progress.get(0).getRows());
+            assertEquals(Arrays.asList("Fig 0", "Fig 1", "Fig 2"), titles(recipeDBAdaptor.searchRecipeSummaries("fig", 10)));
+            assertEquals(3, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE));
+            assertEquals(Collections.<String>emptyList(),
+                    titles(recipeDBAdaptor.fetchRecipesWithAnyIngredient(Collections.singletonList("Fig 3"))));
+
+            // A single insert reports the refusal instead
+            assertEquals(-1, recipeDBAdaptor.createRecipe("Fig 4", "- Fig", "1. Bake", 3));
+            assertEquals(3, DatabaseUtils.queryNumEntries(db, RecipeDBAdaptor.DATABASE_TABLE));
+        } finally {
+            db.execSQL("DROP TRIGGER IF EXISTS refuse_recipe");
+            manager.releaseDatabase();
+        }
+    }
+
+    @Test
+    public void fetchRecipePage_walksEveryLiveRecipeOnceInTitleOrder() throws Exception {
+        List<Long> expected = new ArrayList<Long>();
+        List<Long> expectedOfType = new ArrayList<Long>();
+        // Titles repeat, so pages often end between two recipes of the same title
+        for (int i = 0; i < 23; i++) {
+            long typeId = i % 3 == 0 ? 1 : 3;
+            long id = recipeDBAdaptor.createRecipe("Recipe " + (char) ('A' + i % 5), "- Flour", "1. Bake", typeId);
+            if (i % 7 == 6) {
+                recipeDBAdaptor.deleteRecipe(id);
+            }
+        }
+        Cursor cursor = recipeDBAdaptor.fetchAllRecipeSummaries();
+        try {
+            while (cursor.moveToNext()) {
+                expected.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        cursor = recipeDBAdaptor.fetchSummariesByType(3);
+        try {
+            while (cursor.moveToNext()) {
+                expectedOfType.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(20, expected.size());
+
+        assertEquals(expected, walk(RecipeDBAdaptor.ALL_TYPES, 4));
+        assertEquals(expected, walk(RecipeDBAdaptor.ALL_TYPES, 3));
+        assertEquals(expectedOfType, walk(3, 4));
+    }
+
+    @Test
+    public void fetchRecipeRange_readsBetweenTwoKeys() throws Exception {
+        long first = recipeDBAdaptor.createRecipe("Recipe A", "- Flour", "1. Bake", 3);
+        long second = recipeDBAdaptor.createRecipe("Recipe A", "- Flour", "1. Bake", 3);
+        long third = recipeDBAdaptor.createRecipe("Recipe B", "- Flour", "1. Bake", 3);
+        long fourth = recipeDBAdaptor.createRecipe("Recipe B", "- Flour", "1. Bake", 3);
+
+        assertEquals(Arrays.asList(second, third), ids(recipeDBAdaptor.fetchRecipeRange(RecipeDBAdaptor.ALL_TYPES,
+                "Recipe A", first, "Recipe B", third)));
+        assertEquals(Arrays.asList(first, second, third, fourth), ids(recipeDBAdaptor.fetchRecipeRange(
+                RecipeDBAdaptor.ALL_TYPES, null, 0, null, 0)));
+        assertEquals(Collections.singletonList(fourth), ids(recipeDBAdaptor.fetchRecipeRange(3, "Recipe B", third, null, 0)));
+    }
+
+    @Test
+    public void keysetPages_seekTheLiveCoveringIndexesWithoutSorting() throws Exception {
+        recipeDBAdaptor.createRecipe("Recipe A", "- Flour", "1. Bake", 3);
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        SQLiteDatabase db = manager.acquireDatabase();
+        try {
+            String all = plan(db, RecipeDBAdaptor.ALL_TYPES, "Recipe A", 1, null, "10");
+            assertTrue(all, all.contains("COVERING INDEX " + RecipeDBAdaptor.LIVE_TITLE_INDEX + " "));
+            assertFalse(all, all.contains("TEMP B-TREE"));
+
+            String first = plan(db, RecipeDBAdaptor.ALL_TYPES, null, 0, null, "10");
+            assertTrue(first, first.contains("COVERING INDEX " + RecipeDBAdaptor.LIVE_TITLE_INDEX + " "));
+            assertFalse(first, first.contains("TEMP B-TREE"));
+
+            String ofType = plan(db, 3, "Recipe A", 1, null, "10");
+            assertTrue(ofType, ofType.contains("COVERING INDEX " + RecipeDBAdaptor.LIVE_TYPE_TITLE_INDEX + " "));
+            assertFalse(ofType, ofType.contains("TEMP B-TREE"));
+
+            String range = plan(db, 3, "Recipe A", 1, "Recipe B", null);
+            assertTrue(range, range.contains("COVERING INDEX " + RecipeDBAdaptor.LIVE_TYPE_TITLE_INDEX + " "));
+            assertFalse(range, range.contains("TEMP B-TREE"));
+        } finally {
+            manager.releaseDatabase();
+        }
+    }
+
+    private List<Long> walk(long typeId, int pageSize) {
+        List<Long> ids = new ArrayList<Long>();
+        String afterTitle = null;
+        long afterId = 0;
+        while (true) {
+            Cursor cursor = recipeDBAdaptor.fetchRecipePage(typeId, afterTitle, afterId, pageSize);
+            try {
+                if (!cursor.moveToLast()) {
+                    return ids;
+                }
+                afterTitle = cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE));
+                afterId = cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID));
+                cursor.moveToPosition(-1);
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static String plan(SQLiteDatabase db, long typeId, String afterTitle, long afterId, String lastTitle, String limit) {
+        List<String> selectionArgs = new ArrayList<String>();
+        String selection = RecipeDBAdaptor.keysetSelection(typeId, afterTitle, afterId, lastTitle, afterId + 1, selectionArgs);
+        String sql = SQLiteQueryBuilder.buildQueryString(false, RecipeDBAdaptor.DATABASE_TABLE, RecipeDBAdaptor.SUMMARY_COLUMNS,
+                selection, null, null, RecipeDBAdaptor.KEY_TITLE + ", " + RecipeDBAdaptor.KEY_ID, limit);
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs.toArray(new String[selectionArgs.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+
+    private static List<Long> ids(Cursor cursor) {
+        List<Long> ids = new ArrayList<Long>();
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private static List<Recipe> recipes(String name, int count) {
+        List<Recipe> recipes = new ArrayList<Recipe>();
+        for (int i = 0; i < count; i++) {
+            recipes.add(new Recipe(0, name + " " + i, "- " + name + " " + i, "1. Bake", 3, null));
+        }
+        return recipes;
+    }
+
+    private static int count(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> titles(Cursor cursor) {
+        List<String> titles = new ArrayList<String>();
+        try {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return titles;
+    }
+}
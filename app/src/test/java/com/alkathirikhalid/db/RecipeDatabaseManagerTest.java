@@ -0,0 +1,72 @@
+package com.alkathirikhalid.db;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Database Manager unit test, checks the shared Database is opened and closed once per burst of users.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeDatabaseManagerTest {
+
+    @Test
+    public void adaptors_shareOneDatabaseUntilTheLastCloses() throws Exception {
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        int opens = manager.getOpenCount();
+        int closes = manager.getCloseCount();
+
+        RecipeDBAdaptor first = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        RecipeDBAdaptor second = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        RecipeDBAdaptor third = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        assertEquals(3, manager.getReferenceCount());
+        assertEquals(opens + 1, manager.getOpenCount());
+
+        first.close();
+        second.close();
+        assertEquals(1, manager.getReferenceCount());
+        assertEquals(closes, manager.getCloseCount());
+
+        third.close();
+        assertEquals(0, manager.getReferenceCount());
+        assertEquals(closes + 1, manager.getCloseCount());
+
+        // Opened again by the next user
+        RecipeDBAdaptor fourth = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        fourth.close();
+        assertEquals(opens + 2, manager.getOpenCount());
+        assertEquals(closes + 2, manager.getCloseCount());
+    }
+
+    @Test
+    public void releaseDatabase_withoutAReference_throws() throws Exception {
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        manager.acquireDatabase();
+        manager.releaseDatabase();
+        int closes = manager.getCloseCount();
+
+        try {
+            manager.releaseDatabase();
+            fail("Released more times than acquired");
+        } catch (IllegalStateException expected) {
+            // The count is left as it was
+        }
+        assertEquals(0, manager.getReferenceCount());
+        assertEquals(closes, manager.getCloseCount());
+    }
+
+    @Test
+    public void getInstance_isSharedWithinTheApplication() throws Exception {
+        assertSame(RecipeDatabaseManager.getInstance(RuntimeEnvironment.application),
+                RecipeDatabaseManager.getInstance(RuntimeEnvironment.application.getApplicationContext()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.alkathirikhalid.db;
+
+import android.database.MatrixCursor;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Mapper unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeMapperTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void mapAll_readsEveryColumn() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+
+        List<Recipe> recipes = recipeDBAdaptor.getRecipesAfter(id - 1, 10);
+
+        assertEquals(1, recipes.size());
+        Recipe recipe = recipes.get(0);
+        assertEquals(id, recipe.getId());
+        assertEquals("Apple Pie", recipe.getTitle());
+        assertEquals("- Flour\n- Apple", recipe.getIngredients());
+        assertEquals("1. Bake", recipe.getSteps());
+        assertEquals(3, recipe.getTypeId());
+        assertEquals("Healthy", recipe.getType());
+    }
+
+    @Test
+    public void mapAll_summaryLeavesMissingColumnsEmpty() throws Exception {
+        recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+
+        List<Recipe> recipes = RecipeMapper.mapAll(recipeDBAdaptor.fetchAllRecipeSummaries());
+
+        assertTrue(recipes.size() > 0);
+        assertNull(recipes.get(0).getIngredients());
+        assertNull(recipes.get(0).getType());
+        assertEquals(0, recipes.get(0).getTypeId());
+    }
+
+    @Test
+    public void map_columnOrderDoesNotMatter() throws Exception {
+        MatrixCursor cursor = new MatrixCursor(new String[]{RecipeDBAdaptor.KEY_TYPE, RecipeDBAdaptor.KEY_TITLE,
+                RecipeDBAdaptor.KEY_ID});
+        cursor.addRow(new Object[]{"Healthy", "Apple Pie", 7L});
+        cursor.addRow(new Object[]{"Fast Food", "Burger", 8L});
+
+        List<String> read = new ArrayList<String>();
+        for (Recipe recipe : RecipeMapper.mapAll(cursor)) {
+            read.add(recipe.getId() + " " + recipe.getTitle() + " " + recipe.getType());
+        }
+
+        assertEquals(2, read.size());
+        assertEquals("7 Apple Pie Healthy", read.get(0));
+        assertEquals("8 Burger Fast Food", read.get(1));
+        assertTrue(cursor.isClosed());
+    }
+}
@@ -0,0 +1,110 @@
+package com.alkathirikhalid.db;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Prefetcher unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipePrefetcherTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+    private RecipePrefetcher recipePrefetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        recipePrefetcher = RecipePrefetcher.getInstance(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void getRecipe_servedFromPrefetch() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        int opens = recipePrefetcher.getOpens();
+        int served = recipePrefetcher.getServedFromPrefetch();
+
+        prefetch(id);
+        long fetches = QueryStats.getInstance().getStats("fetchRecipe").getCount();
+        Recipe recipe = recipePrefetcher.getRecipe(recipeDBAdaptor, id);
+
+        assertEquals("- Flour\n- Apple", recipe.getIngredients());
+        assertSame(recipe, recipeDBAdaptor.getRecipe(id));
+        assertEquals(fetches, QueryStats.getInstance().getStats("fetchRecipe").getCount());
+        assertEquals(opens + 1, recipePrefetcher.getOpens());
+        assertEquals(served + 1, recipePrefetcher.getServedFromPrefetch());
+    }
+
+    @Test
+    public void getRecipe_writeAfterPrefetchIsRead() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        prefetch(id);
+        Recipe prefetched = recipeDBAdaptor.getRecipe(id);
+        int served = recipePrefetcher.getServedFromPrefetch();
+
+        assertTrue(recipeDBAdaptor.updateRecipe(id, "Apple Tart", "- Flour\n- Apple", "1. Bake", "Healthy"));
+        Recipe recipe = recipePrefetcher.getRecipe(recipeDBAdaptor, id);
+
+        assertNotSame(prefetched, recipe);
+        assertEquals("Apple Tart", recipe.getTitle());
+        assertEquals(served, recipePrefetcher.getServedFromPrefetch());
+    }
+
+    @Test
+    public void getRecipe_notPrefetched_missesTheCacheOnce() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        int misses = RecipeCache.getInstance().getMisses();
+        long fetches = QueryStats.getInstance().getStats("fetchRecipe").getCount();
+
+        Recipe recipe = recipePrefetcher.getRecipe(recipeDBAdaptor, id);
+
+        assertEquals("Apple Pie", recipe.getTitle());
+        assertEquals(misses + 1, RecipeCache.getInstance().getMisses());
+        assertEquals(fetches + 1, QueryStats.getInstance().getStats("fetchRecipe").getCount());
+    }
+
+    @Test
+    public void getRecipe_whilePrefetching_readsTheRecipeOnce() throws Exception {
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        long fetches = QueryStats.getInstance().getStats("fetchRecipe").getCount();
+
+        // Still queued or being read, either way it is not read a second time
+        recipePrefetcher.prefetch(id);
+        Recipe recipe = recipePrefetcher.getRecipe(recipeDBAdaptor, id);
+
+        assertEquals("- Flour\n- Apple", recipe.getIngredients());
+        assertEquals(fetches + 1, QueryStats.getInstance().getStats("fetchRecipe").getCount());
+        // A cancelled read stays cancelled
+        Thread.sleep(100);
+        assertEquals(fetches + 1, QueryStats.getInstance().getStats("fetchRecipe").getCount());
+    }
+
+    private void prefetch(long id) throws InterruptedException {
+        int prefetches = recipePrefetcher.getPrefetches();
+        recipePrefetcher.prefetch(id);
+        // Read on the prefetch thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (recipePrefetcher.getPrefetches() == prefetches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(prefetches + 1, recipePrefetcher.getPrefetches());
+    }
+}
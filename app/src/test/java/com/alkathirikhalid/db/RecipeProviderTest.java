@@ -0,0 +1,171 @@
+package com.alkathirikhalid.db;
+
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Provider unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeProviderTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+    private RecipeProvider recipeProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        List<Recipe> recipes = new ArrayList<Recipe>();
+        for (int i = 0; i < 120; i++) {
+            recipes.add(new Recipe(0, String.format(Locale.US, "Recipe %03d", i), "- Flour", "1. Bake", i % 4 == 0 ? 1 : 3, null));
+        }
+        recipeDBAdaptor.bulkInsert(recipes);
+        recipeProvider = Robolectric.setupContentProvider(RecipeProvider.class, RecipeContract.AUTHORITY);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeProvider.shutdown();
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void shutdown_releasesTheDatabase() throws Exception {
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        int held = manager.getReferenceCount();
+        titles(RecipeContract.CONTENT_URI);
+        assertEquals(held + 1, manager.getReferenceCount());
+
+        recipeProvider.shutdown();
+
+        assertEquals(held, manager.getReferenceCount());
+    }
+
+    @Test
+    public void query_listIsPaged() throws Exception {
+        // Without a limit only the first page crosses the binder
+        assertEquals(RecipeContract.PAGE_SIZE, titles(RecipeContract.CONTENT_URI).size());
+
+        // Keyset pages walk every recipe once in title order
+        List<String> keyset = new ArrayList<String>();
+        Uri page = withLimit(RecipeContract.CONTENT_URI, 40);
+        List<String> titles;
+        while (!(titles = titles(page)).isEmpty()) {
+            keyset.addAll(titles);
+            Cursor cursor = recipeProvider.query(page, null, null, null, null);
+            try {
+                cursor.moveToLast();
+                page = withLimit(RecipeContract.CONTENT_URI, 40).buildUpon()
+                        .appendQueryParameter(RecipeContract.PARAM_AFTER_TITLE, cursor.getString(cursor.getColumnIndexOrThrow(RecipeContract.COLUMN_TITLE)))
+                        .appendQueryParameter(RecipeContract.PARAM_AFTER_ID, cursor.getString(cursor.getColumnIndexOrThrow(RecipeContract.COLUMN_ID)))
+                        .build();
+            } finally {
+                cursor.close();
+            }
+        }
+        List<String> expected = new ArrayList<String>();
+        Cursor cursor = recipeDBAdaptor.fetchAllRecipeSummaries();
+        try {
+            while (cursor.moveToNext()) {
+                expected.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(expected, keyset);
+
+        // Offset pages match the keyset ones
+        Uri second = withLimit(RecipeContract.CONTENT_URI, 40).buildUpon()
+                .appendQueryParameter(RecipeContract.PARAM_OFFSET, "40").build();
+        assertEquals(expected.subList(40, 80), titles(second));
+    }
+
+    @Test
+    public void query_typeSearchAndDetail() throws Exception {
+        List<String> vegetarian = titles(withLimit(ContentUris.withAppendedId(RecipeContract.TYPE_URI, 1), 100));
+        assertEquals(30, vegetarian.size());
+        assertTrue(vegetarian.contains("Recipe 004"));
+        assertFalse(vegetarian.contains("Recipe 005"));
+
+        Uri search = withLimit(RecipeContract.SEARCH_URI, 10).buildUpon()
+                .appendQueryParameter(RecipeContract.PARAM_QUERY, "recipe").build();
+        assertEquals(10, titles(search).size());
+
+        long id = recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+        Cursor cursor = recipeProvider.query(ContentUris.withAppendedId(RecipeContract.CONTENT_URI, id), null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("- Flour\n- Apple", cursor.getString(cursor.getColumnIndexOrThrow(RecipeContract.COLUMN_INGREDIENTS)));
+            assertEquals("Healthy", cursor.getString(cursor.getColumnIndexOrThrow(RecipeContract.COLUMN_TYPE)));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(RecipeContract.CONTENT_ITEM_TYPE, recipeProvider.getType(ContentUris.withAppendedId(RecipeContract.CONTENT_URI, id)));
+        assertEquals(RecipeContract.CONTENT_TYPE, recipeProvider.getType(search));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void query_limitOverMaximumFails() throws Exception {
+        titles(withLimit(RecipeContract.CONTENT_URI, RecipeContract.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    public void changes_notifyObservers() throws Exception {
+        final List<Uri> notified = new ArrayList<Uri>();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                notified.add(uri);
+            }
+        };
+        RuntimeEnvironment.application.getContentResolver().registerContentObserver(RecipeContract.CONTENT_URI, true, observer);
+        try {
+            recipeDBAdaptor.createRecipe("Apple Pie", "- Flour\n- Apple", "1. Bake", "Healthy");
+            ShadowLooper.idleMainLooper();
+
+            assertFalse(notified.isEmpty());
+        } finally {
+            RuntimeEnvironment.application.getContentResolver().unregisterContentObserver(observer);
+        }
+    }
+
+    private List<String> titles(Uri uri) {
+        List<String> titles = new ArrayList<String>();
+        Cursor cursor = recipeProvider.query(uri, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeContract.COLUMN_TITLE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return titles;
+    }
+
+    private static Uri withLimit(Uri uri, int limit) {
+        return uri.buildUpon().appendQueryParameter(RecipeContract.PARAM_LIMIT, String.valueOf(limit)).build();
+    }
+}
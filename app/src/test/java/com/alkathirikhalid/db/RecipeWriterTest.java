@@ -0,0 +1,116 @@
+package com.alkathirikhalid.db;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Writer unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeWriterTest {
+
+    @Test
+    public void failedWrite_isDeliveredToTheCallback() throws Exception {
+        FutureTask<Long> failedInsert = new FutureTask<Long>(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                throw new IllegalStateException("insert failed");
+            }
+        });
+        failedInsert.run();
+        final List<String> delivered = new ArrayList<String>();
+
+        Future<Boolean> update = RecipeWriter.getInstance(RuntimeEnvironment.application).updateRecipe(failedInsert,
+                "Apple Pie", "- Apple", "1. Bake", 3, new RecipeWriter.Callback<Boolean>() {
+                    @Override
+                    public void onComplete(Boolean result) {
+                        delivered.add("complete " + result);
+                    }
+
+                    @Override
+                    public void onFailed(Throwable error) {
+                        delivered.add("failed " + error.getClass().getSimpleName());
+                    }
+                });
+        try {
+            update.get();
+            fail("The update of a failed insert must fail");
+        } catch (ExecutionException expected) {
+            // Reported to the callback as well
+        }
+        // The callback is posted once the task is done, which may be just after get returned
+        for (int i = 0; i < 100 && delivered.isEmpty(); i++) {
+            Thread.sleep(10);
+            ShadowLooper.idleMainLooper();
+        }
+
+        assertEquals("[failed ExecutionException]", delivered.toString());
+    }
+
+    @Test
+    public void burstOfWrites_opensTheDatabaseOnce() throws Exception {
+        RecipeWriter recipeWriter = RecipeWriter.getInstance(RuntimeEnvironment.application);
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        // Holds the writer thread until the whole burst is queued
+        FutureTask<Long> gate = new FutureTask<Long>(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return 0L;
+            }
+        });
+        int references = manager.getReferenceCount();
+        int opens = manager.getOpenCount();
+
+        recipeWriter.updateRecipe(gate, "Apple Pie", "- Apple", "1. Bake", 3, null);
+        Future<Long> last = null;
+        for (int i = 0; i < 20; i++) {
+            last = recipeWriter.createRecipe("Recipe " + i, "- Apple", "1. Bake", 3, null);
+        }
+        gate.run();
+        assertTrue(last.get() > 0);
+
+        assertTrue(manager.getOpenCount() - opens <= 1);
+        assertEquals(references, manager.getReferenceCount());
+    }
+
+    @Test
+    public void cancelledWrite_stillRunsAndReleasesTheDatabase() throws Exception {
+        RecipeWriter recipeWriter = RecipeWriter.getInstance(RuntimeEnvironment.application);
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        FutureTask<Long> gate = new FutureTask<Long>(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return 0L;
+            }
+        });
+        int references = manager.getReferenceCount();
+
+        recipeWriter.updateRecipe(gate, "Apple Pie", "- Apple", "1. Bake", 3, null);
+        Future<Long> insert = recipeWriter.createRecipe("Cherry Pie", "- Cherry", "1. Bake", 3, null);
+        assertFalse(insert.cancel(true));
+        gate.run();
+
+        assertTrue(insert.get() > 0);
+        assertFalse(insert.isCancelled());
+        assertEquals(references, manager.getReferenceCount());
+    }
+}
@@ -0,0 +1,77 @@
+package com.alkathirikhalid.db;
+
+import android.database.Cursor;
+
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Statement Cache unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class StatementCacheTest {
+
+    @Test
+    public void writes_compileEachOperationOnce() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            // First round compiles the statements of create, update and delete
+            writeRecipe(recipeDBAdaptor, "Apple Pie");
+            long compilations = RecipeDBAdaptor.getStatementCompilations();
+            long hits = RecipeDBAdaptor.getStatementCacheHits();
+
+            for (int i = 0; i < 10; i++) {
+                writeRecipe(recipeDBAdaptor, "Pie " + i);
+            }
+
+            assertEquals(compilations, RecipeDBAdaptor.getStatementCompilations());
+            assertTrue(RecipeDBAdaptor.getStatementCacheHits() > hits);
+        } finally {
+            recipeDBAdaptor.close();
+        }
+    }
+
+    @Test
+    public void closeAndOpen_keepsStatementsOfTheSharedDatabase() throws Exception {
+        RecipeDBAdaptor holder = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application);
+        try {
+            recipeDBAdaptor.open();
+            writeRecipe(recipeDBAdaptor, "Apple Pie");
+            recipeDBAdaptor.close();
+            long compilations = RecipeDBAdaptor.getStatementCompilations();
+
+            recipeDBAdaptor.open();
+            writeRecipe(recipeDBAdaptor, "Cherry Pie");
+
+            assertEquals(compilations, RecipeDBAdaptor.getStatementCompilations());
+        } finally {
+            recipeDBAdaptor.close();
+            holder.close();
+        }
+    }
+
+    private static void writeRecipe(RecipeDBAdaptor recipeDBAdaptor, String title) {
+        long id = recipeDBAdaptor.createRecipe(title, "- Flour\n- Apple", "1. Bake", "Healthy");
+        assertTrue(id > 0);
+        assertTrue(recipeDBAdaptor.updateRecipe(id, title + " Deluxe", "- Flour\n- Apple\n- Cream", "1. Bake", "Healthy"));
+        Cursor cursor = recipeDBAdaptor.fetchRecipe(id);
+        try {
+            assertEquals(title + " Deluxe", cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+        } finally {
+            cursor.close();
+        }
+        assertTrue(recipeDBAdaptor.deleteRecipe(id));
+        assertFalse(recipeDBAdaptor.deleteRecipe(id));
+    }
+}
@@ -0,0 +1,56 @@
+package com.alkathirikhalid.handler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * CSV Reader unit test, runs on the development machine (host).
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readRecord_plainFields() throws Exception {
+        CsvReader csvReader = new CsvReader(new StringReader("title,type\r\nApple Pie,Healthy\r\n"));
+        assertEquals(Arrays.asList("title", "type"), csvReader.readRecord());
+        assertEquals(Arrays.asList("Apple Pie", "Healthy"), csvReader.readRecord());
+        assertNull(csvReader.readRecord());
+    }
+
+    @Test
+    public void readRecord_quotedFields() throws Exception {
+        CsvReader csvReader = new CsvReader(new StringReader("\"Pie, \"\"Deluxe\"\"\",\"- Flour\r\n- Apple\",\n,last"));
+        assertEquals(Arrays.asList("Pie, \"Deluxe\"", "- Flour\r\n- Apple", ""), csvReader.readRecord());
+        assertEquals(Arrays.asList("", "last"), csvReader.readRecord());
+        assertNull(csvReader.readRecord());
+    }
+
+    @Test
+    public void getLineNumber_countsLineBreaksInsideQuotes() throws Exception {
+        CsvReader csvReader = new CsvReader(new StringReader("a\n\"b\nc\nd\"\ne\n"));
+        csvReader.readRecord();
+        assertEquals(1, csvReader.getLineNumber());
+        csvReader.readRecord();
+        assertEquals(2, csvReader.getLineNumber());
+        csvReader.readRecord();
+        assertEquals(5, csvReader.getLineNumber());
+    }
+
+    @Test
+    public void readRecord_unclosedQuoteFails() throws Exception {
+        CsvReader csvReader = new CsvReader(new StringReader("a\n\"b,c\n"));
+        csvReader.readRecord();
+        try {
+            csvReader.readRecord();
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Line 2: quoted field is not closed", expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.alkathirikhalid.handler;
+
+import android.database.Cursor;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.db.BulkInsertResult;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Exporter and Recipe Importer unit test, runs on the development machine (host) against a real SQLite
+ * Database and files on disk.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeExporterTest {
+    private static final int RECIPES = 1200;
+    private RecipeDBAdaptor recipeDBAdaptor;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        file = File.createTempFile("recipes", ".export");
+        List<Recipe> recipes = new ArrayList<Recipe>();
+        for (int i = 0; i < RECIPES; i++) {
+            // Commas, quotes, line breaks and text long enough to be stored compressed
+            StringBuilder steps = new StringBuilder();
+            for (int step = 1; step <= i % 40; step++) {
+                steps.append(step).append(". Stir \"gently\", then wait\r\n");
+            }
+            recipes.add(new Recipe(0, "Recipe " + i + ", \"best\"", "- Flour\n- Caf\u00e9 " + i, steps.toString(), 0,
+                    i % 2 == 0 ? "Healthy" : "Grandma's"));
+        }
+        recipeDBAdaptor.bulkInsert(recipes);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+        file.delete();
+    }
+
+    @Test
+    public void jsonLines_roundTrip() throws Exception {
+        List<String> exported = storedRecipes(0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            assertEquals(exported.size(), new RecipeExporter(recipeDBAdaptor).exportJsonLines(writer));
+        } finally {
+            writer.close();
+        }
+
+        long lastId = lastId();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        BulkInsertResult result;
+        try {
+            result = new RecipeImporter(recipeDBAdaptor, 100).importJsonLines(reader);
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(exported.size(), result.getRows());
+        assertEquals(exported, storedRecipes(lastId));
+    }
+
+    @Test
+    public void csv_roundTrip() throws Exception {
+        List<String> exported = storedRecipes(0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            assertEquals(exported.size(), new RecipeExporter(recipeDBAdaptor).exportCsv(writer));
+        } finally {
+            writer.close();
+        }
+
+        long lastId = lastId();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        BulkInsertResult result;
+        try {
+            result = new RecipeImporter(recipeDBAdaptor, 100).importCsv(reader);
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(exported.size(), result.getRows());
+        assertEquals(exported, storedRecipes(lastId));
+    }
+
+    @Test
+    public void importJsonLines_reportsLineOfMalformedRecord() throws Exception {
+        long lastId = lastId();
+        String jsonLines = "{\"title\":\"Soup\",\"ingredients\":\"- Water\",\"steps\":\"1. Boil\",\"type\":\"Healthy\"}\n"
+                + "\n"
+                + "{\"title\":\"Bread\",\"steps\":\"1. Bake\"}\n";
+        try {
+            new RecipeImporter(recipeDBAdaptor).importJsonLines(new StringReader(jsonLines));
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Line 3: missing type", expected.getMessage());
+        }
+        // The batch holding the malformed record is rolled back
+        assertEquals(0, storedRecipes(lastId).size());
+    }
+
+    private long lastId() {
+        long lastId = 0;
+        Cursor cursor = recipeDBAdaptor.fetchAllRecipeSummaries();
+        try {
+            while (cursor.moveToNext()) {
+                lastId = Math.max(lastId, cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return lastId;
+    }
+
+    private List<String> storedRecipes(long afterId) {
+        List<String> recipes = new ArrayList<String>();
+        Cursor cursor = recipeDBAdaptor.fetchRecipesAfter(afterId, Integer.MAX_VALUE);
+        try {
+            while (cursor.moveToNext()) {
+                recipes.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_INGREDIENTS)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_STEPS)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,169 @@
+package com.alkathirikhalid.handler;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.alkathirikhalid.db.BulkInsertResult;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+import com.alkathirikhalid.db.RecipeDatabaseManager;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Importer unit test of the XML import, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeImporterTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void importXml_storesRecipesInBatches() throws Exception {
+        long lastId = lastId();
+        List<String> expected = new ArrayList<String>();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<catalog>\n");
+        xml.append("<recipetypes><recipetype id=\"3\"><name>Healthy</name></recipetype></recipetypes>\n<recipes>\n");
+        for (int i = 0; i < 250; i++) {
+            xml.append("<recipe><title>Stew ").append(i).append(" &amp; Bread</title><ingredients>- Caf\u00e9</ingredients>")
+                    .append(i % 2 == 0 ? "<steps>1. Boil</steps>" : "").append("<type>Healthy</type></recipe>\n");
+            expected.add("Stew " + i + " & Bread|- Caf\u00e9|" + (i % 2 == 0 ? "1. Boil" : "") + "|Healthy");
+        }
+        xml.append("</recipes>\n</catalog>\n");
+        final List<Integer> progress = new ArrayList<Integer>();
+        RecipeImporter recipeImporter = new RecipeImporter(recipeDBAdaptor, 100);
+        recipeImporter.setOnBatchCommittedListener(new RecipeDBAdaptor.OnBatchCommittedListener() {
+            @Override
+            public void onBatchCommitted(BulkInsertResult result) {
+                progress.add(result.getRows());
+            }
+        });
+
+        BulkInsertResult result = recipeImporter.importXml(stream(xml));
+
+        assertEquals(250, result.getRows());
+        assertEquals(3, result.getBatches());
+        assertEquals("[100, 200, 250]", progress.toString());
+        assertEquals(expected, storedRecipes(lastId));
+    }
+
+    @Test
+    public void importXml_reportsLineOfMalformedRecord() throws Exception {
+        long lastId = lastId();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<recipes>\n");
+        for (int i = 0; i < 150; i++) {
+            xml.append("<recipe><title>Soup ").append(i).append("</title><type>Healthy</type></recipe>\n");
+        }
+        // Line 153
+        xml.append("<recipe><title>Bread</title><steps>1. Bake</steps></recipe>\n</recipes>\n");
+        try {
+            new RecipeImporter(recipeDBAdaptor, 100).importXml(stream(xml));
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Line 153: missing type", expected.getMessage());
+        }
+        // The first batch is committed, the batch holding the malformed record is rolled back
+        assertEquals(100, storedRecipes(lastId).size());
+        assertParserStopped();
+    }
+
+    @Test
+    public void importXml_ofARefusedRecipe_stopsAndJoinsTheParser() throws Exception {
+        long lastId = lastId();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<recipes>\n");
+        for (int i = 0; i < 5000; i++) {
+            xml.append("<recipe><title>Soup ").append(i).append("</title><type>Healthy</type></recipe>\n");
+        }
+        xml.append("</recipes>\n");
+        ByteArrayInputStream inputStream = stream(xml);
+        RecipeDatabaseManager manager = RecipeDatabaseManager.getInstance(RuntimeEnvironment.application);
+        SQLiteDatabase db = manager.acquireDatabase();
+        try {
+            db.execSQL("CREATE TRIGGER refuse_recipe BEFORE INSERT ON recipe WHEN NEW.title = 'Soup 150' "
+                    + "BEGIN SELECT RAISE(ABORT, 'refused'); END");
+            try {
+                new RecipeImporter(recipeDBAdaptor, 100).importXml(inputStream);
+                fail("Soup 150 was refused");
+            } catch (SQLException expected) {
+                // Thrown out of the second batch, which is rolled back
+            }
+        } finally {
+            db.execSQL("DROP TRIGGER IF EXISTS refuse_recipe");
+            manager.releaseDatabase();
+        }
+
+        assertEquals(100, storedRecipes(lastId).size());
+        assertParserStopped();
+        // Parsing stopped at most a few batches past the failure, the rest of the catalog was never read
+        assertTrue(inputStream.available() > 0);
+    }
+
+    private static void assertParserStopped() {
+        // importXml joins the parser before it returns or throws
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (RecipeImporter.XML_THREAD_NAME.equals(thread.getName())) {
+                fail("Parser still running: " + thread.getState());
+            }
+        }
+    }
+
+    private static ByteArrayInputStream stream(CharSequence xml) {
+        return new ByteArrayInputStream(xml.toString().getBytes(Charset.forName("UTF-8")));
+    }
+
+    private long lastId() {
+        long lastId = 0;
+        Cursor cursor = recipeDBAdaptor.fetchAllRecipeSummaries();
+        try {
+            while (cursor.moveToNext()) {
+                lastId = Math.max(lastId, cursor.getLong(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return lastId;
+    }
+
+    private List<String> storedRecipes(long afterId) {
+        List<String> recipes = new ArrayList<String>();
+        Cursor cursor = recipeDBAdaptor.fetchRecipesAfter(afterId, Integer.MAX_VALUE);
+        try {
+            while (cursor.moveToNext()) {
+                recipes.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_INGREDIENTS)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_STEPS)) + "|"
+                        + cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TYPE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,114 @@
+package com.alkathirikhalid.handler;
+
+import com.alkathirikhalid.bean.RecipeTypes;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Recipe Type Registry unit test, runs on the development machine (host) with the bundled XML asset.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipeTypeRegistryTest {
+
+    @Test
+    public void get_loadsOnceFromConstants() throws Exception {
+        RecipeTypeRegistry registry = RecipeTypeRegistry.get(RuntimeEnvironment.application);
+        int requests = RecipeTypeRegistry.getRequests();
+
+        assertSame(registry, RecipeTypeRegistry.get(RuntimeEnvironment.application));
+        assertFalse(registry.isParsed());
+        assertEquals(requests + 1, RecipeTypeRegistry.getRequests());
+        assertEquals(5, registry.getRecipeTypes().size());
+        assertEquals("Healthy", registry.getById(3).getName());
+        assertEquals(3, registry.getByName("Healthy").getId());
+        assertNull(registry.getByName("healthy"));
+        try {
+            registry.getRecipeTypes().clear();
+            fail("The Recipe Types are shared, they must be read only");
+        } catch (UnsupportedOperationException expected) {
+            // Read only
+        }
+    }
+
+    @Test
+    public void constants_matchTheAsset() throws Exception {
+        RecipeTypeRegistry parsed = RecipeTypeRegistry.parse(
+                RuntimeEnvironment.application.getAssets().open(RecipeTypeRegistry.RECIPE_TYPES_ASSET));
+
+        assertTrue(parsed.isParsed());
+        assertEquals(parsed.getRecipeTypes().size(), RecipeTypes.COUNT);
+        for (int ordinal = 0; ordinal < RecipeTypes.COUNT; ordinal++) {
+            assertEquals(parsed.getRecipeTypes().get(ordinal).getId(), RecipeTypes.idAt(ordinal));
+            assertEquals(parsed.getRecipeTypes().get(ordinal).getName(), RecipeTypes.nameAt(ordinal));
+        }
+        assertEquals("Healthy", RecipeTypes.HEALTHY_NAME);
+        assertEquals(3, RecipeTypes.HEALTHY);
+    }
+
+    @Test
+    public void parse_firstEntryWinsOnRepeats() throws Exception {
+        RecipeTypeRegistry registry = parse("<recipetypes>"
+                + "<recipetype id=\"7\"><name>Dessert</name></recipetype>"
+                + "<recipetype id=\"7\"><name>Pudding</name></recipetype>"
+                + "<recipetype id=\"8\"><name>Dessert</name></recipetype>"
+                + "</recipetypes>");
+
+        assertEquals(3, registry.getRecipeTypes().size());
+        assertEquals("Dessert", registry.getById(7).getName());
+        assertEquals(7, registry.getByName("Dessert").getId());
+        assertEquals(7, registry.getByName("Pudding").getId());
+    }
+
+    @Test
+    public void positionOf_reorderedCatalog() throws Exception {
+        RecipeTypeRegistry registry = parse("<recipetypes>"
+                + "<recipetype id=\"5\"><name>Make Ahead</name></recipetype>"
+                + "<recipetype id=\"3\"><name>Healthy</name></recipetype>"
+                + "<recipetype id=\"1\"><name>Vegetarian</name></recipetype>"
+                + "</recipetypes>");
+
+        assertEquals(1, registry.positionOf(3));
+        assertEquals(1, registry.positionOf("Healthy"));
+        assertEquals(0, registry.positionOf("Make Ahead"));
+        assertEquals(2, registry.positionOf(1));
+        assertEquals(-1, registry.positionOf(2));
+        assertEquals(-1, registry.positionOf("Fast Food"));
+        assertEquals(-1, registry.positionOf(null));
+    }
+
+    @Test
+    public void positionOf_extendedCatalog() throws Exception {
+        StringBuilder xml = new StringBuilder("<recipetypes>");
+        for (int i = 1; i <= 5000; i++) {
+            xml.append("<recipetype id=\"").append(i).append("\"><name>Type ").append(i).append("</name></recipetype>");
+        }
+        RecipeTypeRegistry registry = parse(xml.append("</recipetypes>").toString());
+
+        assertEquals(5000, registry.getRecipeTypes().size());
+        for (int i = 1; i <= 5000; i++) {
+            assertEquals(i - 1, registry.positionOf(i));
+            assertEquals(i - 1, registry.positionOf("Type " + i));
+        }
+        assertEquals("Type 4321", registry.getById(4321).getName());
+    }
+
+    private static RecipeTypeRegistry parse(String xml) throws Exception {
+        return RecipeTypeRegistry.parse(new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+    }
+}
@@ -0,0 +1,178 @@
+package com.alkathirikhalid.handler;
+
+import android.util.Log;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.recipeapp.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * XML Pull Parser Handler unit test, runs on the development machine (host).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class XMLPullParserHandlerTest {
+    private static final String CATALOG = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<catalog>\n"
+            + "  <recipetypes>\n"
+            + "    <recipetype id=\"3\"><name>Healthy</name></recipetype>\n"
+            + "    <RecipeType id=\"7\"><Name>Dessert</Name><note><b>skipped</b></note></RecipeType>\n"
+            + "  </recipetypes>\n"
+            + "  <recipes>\n"
+            + "    <recipe>\n"
+            + "      <title>Apple Pie</title>\n"
+            + "      <ingredients>- Flour\n- Apple</ingredients>\n"
+            + "      <steps>1. Bake</steps>\n"
+            + "      <type>Dessert</type>\n"
+            + "    </recipe>\n"
+            + "    <recipe><title>Salad</title><type>Healthy</type></recipe>\n"
+            + "  </recipes>\n"
+            + "</catalog>\n";
+
+    @Test
+    public void parse_visitsEveryRecordInOrder() throws Exception {
+        final List<Object> records = new ArrayList<Object>();
+        long count = new XMLPullParserHandler().parse(new StringReader(CATALOG), new XMLPullParserHandler.Visitor() {
+            @Override
+            public boolean visitRecipeType(RecipeType recipeType) {
+                records.add(recipeType);
+                return true;
+            }
+
+            @Override
+            public boolean visitRecipe(Recipe recipe) {
+                records.add(recipe);
+                return true;
+            }
+        });
+
+        assertEquals(4, count);
+        assertEquals(4, records.size());
+        assertEquals(3, ((RecipeType) records.get(0)).getId());
+        assertEquals("Healthy", ((RecipeType) records.get(0)).getName());
+        assertEquals("Dessert", ((RecipeType) records.get(1)).getName());
+        Recipe pie = (Recipe) records.get(2);
+        assertEquals("Apple Pie", pie.getTitle());
+        assertEquals("- Flour\n- Apple", pie.getIngredients());
+        assertEquals("1. Bake", pie.getSteps());
+        assertEquals("Dessert", pie.getType());
+        Recipe salad = (Recipe) records.get(3);
+        assertEquals("", salad.getIngredients());
+        assertEquals("", salad.getSteps());
+        assertEquals("Healthy", salad.getType());
+    }
+
+    @Test
+    public void parse_stopsWhenTheVisitorDoes() throws Exception {
+        final List<RecipeType> recipeTypes = new ArrayList<RecipeType>();
+        long count = new XMLPullParserHandler().parse(new StringReader(CATALOG), new XMLPullParserHandler.Visitor() {
+            @Override
+            public boolean visitRecipeType(RecipeType recipeType) {
+                recipeTypes.add(recipeType);
+                return false;
+            }
+
+            @Override
+            public boolean visitRecipe(Recipe recipe) {
+                fail("Parsing continued after the visitor stopped");
+                return false;
+            }
+        });
+
+        assertEquals(1, count);
+        assertEquals(1, recipeTypes.size());
+    }
+
+    @Test
+    public void parse_reportsTheLineOfAMalformedFile() throws Exception {
+        String xml = "<recipetypes>\n"
+                + "  <recipetype id=\"1\"><name>Healthy</name></recipetype>\n"
+                + "  <recipetype id=\"2\"><name>Dessert</recipetype>\n"
+                + "</recipetypes>\n";
+        try {
+            new XMLPullParserHandler().parse(new StringReader(xml), new CountingVisitor());
+            fail("Malformed XML must not parse");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Line 3: "));
+        }
+    }
+
+    @Test
+    public void parse_rejectsInvalidRecords() throws Exception {
+        assertRejected("<recipes>\n\n<recipe><type>Healthy</type></recipe>\n</recipes>", "Line 3: missing title");
+        assertRejected("<recipes>\n<recipe><title>Salad</title></recipe>\n</recipes>", "Line 2: missing type");
+        assertRejected("<recipetypes>\n<recipetype id=\"x\"><name>Healthy</name></recipetype>\n</recipetypes>",
+                "Line 2: id is not a number: x");
+        assertRejected("<recipetypes>\n<recipetype id=\"1\"/>\n</recipetypes>", "Line 2: missing name");
+    }
+
+    @Test
+    public void parse_legacyListReadsTheAsset() throws Exception {
+        XMLPullParserHandler handler = new XMLPullParserHandler();
+        List<RecipeType> recipeTypes = handler.parse(
+                RuntimeEnvironment.application.getAssets().open(RecipeTypeRegistry.RECIPE_TYPES_ASSET));
+
+        assertEquals(5, recipeTypes.size());
+        assertSame(recipeTypes, handler.getRecipeTypes());
+        assertEquals("Healthy", recipeTypes.get(2).getName());
+    }
+
+    @Test
+    public void parse_legacyListKeepsTheTypesBeforeAnError() throws Exception {
+        String xml = "<recipetypes><recipetype id=\"1\"><name>Healthy</name></recipetype><recipetype>";
+        List<RecipeType> recipeTypes = new XMLPullParserHandler().parse(
+                new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+
+        assertEquals(1, recipeTypes.size());
+        assertEquals("Healthy", recipeTypes.get(0).getName());
+        // The error is logged, not printed to stderr
+        List<ShadowLog.LogItem> logs = ShadowLog.getLogsForTag("XMLPullParserHandler");
+        assertEquals(1, logs.size());
+        assertEquals(Log.ERROR, logs.get(0).type);
+        assertTrue(logs.get(0).throwable instanceof IOException);
+    }
+
+    private static void assertRejected(String xml, String message) throws Exception {
+        try {
+            new XMLPullParserHandler().parse(new StringReader(xml), new CountingVisitor());
+            fail("Invalid record must not parse: " + xml);
+        } catch (IOException expected) {
+            assertEquals(message, expected.getMessage());
+        }
+    }
+
+    private static class CountingVisitor implements XMLPullParserHandler.Visitor {
+        int count;
+
+        @Override
+        public boolean visitRecipeType(RecipeType recipeType) {
+            count++;
+            return true;
+        }
+
+        @Override
+        public boolean visitRecipe(Recipe recipe) {
+            count++;
+            return true;
+        }
+    }
+}
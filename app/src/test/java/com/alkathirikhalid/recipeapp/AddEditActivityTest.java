@@ -0,0 +1,166 @@
+package com.alkathirikhalid.recipeapp;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.EditText;
+import android.widget.Spinner;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.bean.RecipeType;
+import com.alkathirikhalid.db.RecipeChangeNotifier;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+import com.alkathirikhalid.db.RecipeWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Add Edit Activity unit test, counts the recipe writes committed for each lifecycle sequence.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class AddEditActivityTest {
+    private RecipeDBAdaptor recipeDBAdaptor;
+    private long recipeId;
+
+    @Before
+    public void setUp() throws Exception {
+        recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        // Type 3 is Healthy, the third entry of the type spinner
+        recipeId = recipeDBAdaptor.createRecipe("Apple Pie", "- Apple", "1. Bake", 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recipeDBAdaptor.close();
+    }
+
+    @Test
+    public void spinner_selectsTheStoredType() throws Exception {
+        ActivityController<AddEditActivity> controller = edit(recipeId);
+
+        Spinner spinner = (Spinner) controller.get().findViewById(R.id.spinner_activity_add_edit_layout);
+        assertEquals(3, ((RecipeType) spinner.getSelectedItem()).getId());
+
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void rotationWithoutEdits_writesNothing() throws Exception {
+        ActivityController<AddEditActivity> controller = edit(recipeId);
+        long writes = committedWrites();
+
+        controller.pause().saveInstanceState(new Bundle()).stop().destroy();
+
+        assertEquals(0, committedWrites() - writes);
+    }
+
+    @Test
+    public void rotationAfterEdit_writesOnce() throws Exception {
+        ActivityController<AddEditActivity> controller = edit(recipeId);
+        long writes = committedWrites();
+
+        setText(controller, R.id.activity_add_edit_steps, "1. Bake\n2. Serve");
+        controller.pause().saveInstanceState(new Bundle()).stop().destroy();
+
+        assertEquals(1, committedWrites() - writes);
+    }
+
+    @Test
+    public void backgroundedTwiceAfterOneEdit_writesOnce() throws Exception {
+        ActivityController<AddEditActivity> controller = edit(recipeId);
+        long writes = committedWrites();
+
+        setText(controller, R.id.activity_add_edit_title, "Apple Crumble");
+        controller.pause().saveInstanceState(new Bundle()).stop();
+        controller.start().resume().pause().saveInstanceState(new Bundle()).stop().destroy();
+
+        assertEquals(1, committedWrites() - writes);
+    }
+
+    @Test
+    public void newRecipeRotation_insertsOnce() throws Exception {
+        ActivityController<AddEditActivity> controller = Robolectric.buildActivity(AddEditActivity.class,
+                new Intent(RuntimeEnvironment.application, AddEditActivity.class)).create().start().resume();
+        long writes = committedWrites();
+
+        setText(controller, R.id.activity_add_edit_title, "Cherry Pie");
+        setText(controller, R.id.activity_add_edit_ingredients, "- Cherry");
+        setText(controller, R.id.activity_add_edit_steps, "1. Bake");
+        controller.pause().saveInstanceState(new Bundle()).stop().destroy();
+
+        assertEquals(1, committedWrites() - writes);
+    }
+
+    @Test
+    public void newRecipeRecreated_updatesTheInsertedRow() throws Exception {
+        Intent intent = new Intent(RuntimeEnvironment.application, AddEditActivity.class);
+        ActivityController<AddEditActivity> controller = Robolectric.buildActivity(AddEditActivity.class, intent)
+                .create().start().resume();
+        setText(controller, R.id.activity_add_edit_title, "Cherry Pie");
+        setText(controller, R.id.activity_add_edit_ingredients, "- Cherry");
+        setText(controller, R.id.activity_add_edit_steps, "1. Bake");
+        Bundle state = new Bundle();
+        controller.pause().saveInstanceState(state).stop().destroy();
+
+        ActivityController<AddEditActivity> recreated = Robolectric.buildActivity(AddEditActivity.class, intent)
+                .create(state).start().restoreInstanceState(state).resume();
+        setText(recreated, R.id.activity_add_edit_steps, "1. Bake\n2. Serve");
+        recreated.pause().saveInstanceState(new Bundle()).stop().destroy();
+        committedWrites();
+
+        List<Recipe> recipes = recipeDBAdaptor.getRecipesAfter(recipeId, 10);
+        assertEquals(1, recipes.size());
+        assertEquals("1. Bake\n2. Serve", recipes.get(0).getSteps());
+    }
+
+    @Test
+    public void newRecipeRestoredAfterProcessDeath_updatesTheInsertedRow() throws Exception {
+        // All a killed process leaves: the row committed under the key, and the key in the saved state
+        long inserted = recipeDBAdaptor.createRecipe("Cherry Pie", "- Cherry", "1. Bake", 3, "editor-1");
+        Bundle state = new Bundle();
+        state.putString(AddEditActivity.KEY_CLIENT_KEY, "editor-1");
+        Intent intent = new Intent(RuntimeEnvironment.application, AddEditActivity.class);
+
+        ActivityController<AddEditActivity> restored = Robolectric.buildActivity(AddEditActivity.class, intent)
+                .create(state).start().restoreInstanceState(state).resume();
+        setText(restored, R.id.activity_add_edit_steps, "1. Bake\n2. Serve");
+        restored.pause().saveInstanceState(new Bundle()).stop().destroy();
+        committedWrites();
+
+        List<Recipe> recipes = recipeDBAdaptor.getRecipesAfter(recipeId, 10);
+        assertEquals(1, recipes.size());
+        assertEquals(inserted, recipes.get(0).getId());
+        assertEquals("1. Bake\n2. Serve", recipes.get(0).getSteps());
+    }
+
+    private static ActivityController<AddEditActivity> edit(long id) {
+        Intent intent = new Intent(RuntimeEnvironment.application, AddEditActivity.class);
+        intent.putExtra(RecipeDBAdaptor.KEY_ID, id);
+        return Robolectric.buildActivity(AddEditActivity.class, intent).create().start().resume();
+    }
+
+    private static void setText(ActivityController<AddEditActivity> controller, int id, String text) {
+        ((EditText) controller.get().findViewById(id)).setText(text);
+    }
+
+    /**
+     * Number of recipe writes committed so far, every committed write publishes one change.
+     */
+    private static long committedWrites() throws Exception {
+        // The writer runs one task at a time in order, so this delete of no row waits for every write queued before it
+        RecipeWriter.getInstance(RuntimeEnvironment.application).deleteRecipe(0, null).get();
+        return RecipeChangeNotifier.getInstance().getSequence();
+    }
+}
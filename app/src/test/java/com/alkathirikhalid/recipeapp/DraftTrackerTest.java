@@ -0,0 +1,93 @@
+package com.alkathirikhalid.recipeapp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draft Tracker unit test, runs on the development machine (host).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class DraftTrackerTest {
+    private static final long DELAY_MS = 500;
+    private final List<String> written = new ArrayList<String>();
+    private DraftTracker draftTracker;
+
+    @Before
+    public void setUp() throws Exception {
+        draftTracker = new DraftTracker(new DraftTracker.DraftSink() {
+            @Override
+            public void write(String title, String ingredients, String steps, long typeId) {
+                written.add(title + "|" + ingredients + "|" + steps + "|" + typeId);
+            }
+        }, DELAY_MS);
+        draftTracker.setSaved("Apple Pie", "- Apple", "1. Bake", 3);
+    }
+
+    @Test
+    public void save_unchangedValuesWriteNothing() throws Exception {
+        draftTracker.save("Apple Pie", "- Apple", "1. Bake", 3);
+        draftTracker.flush();
+        ShadowLooper.idleMainLooper(DELAY_MS);
+
+        assertEquals(0, draftTracker.getWriteCount());
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void save_burstIsWrittenOnceAfterTheDelay() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            draftTracker.save("Apple Pie", "- Apple", "1. Bake\n2. Wait " + i, 3);
+            ShadowLooper.idleMainLooper(DELAY_MS / 2);
+        }
+        assertTrue(written.isEmpty());
+
+        ShadowLooper.idleMainLooper(DELAY_MS);
+
+        assertEquals(1, draftTracker.getWriteCount());
+        assertEquals("Apple Pie|- Apple|1. Bake\n2. Wait 5|3", written.get(0));
+        assertFalse(draftTracker.hasPendingSave());
+    }
+
+    @Test
+    public void flush_writesHeldBackSaveNow() throws Exception {
+        draftTracker.save("Apple Pie", "- Apple", "1. Bake", 4);
+        assertTrue(draftTracker.hasPendingSave());
+
+        draftTracker.flush();
+        // Flushing again, or saving the values just written, writes nothing more
+        draftTracker.flush();
+        draftTracker.save("Apple Pie", "- Apple", "1. Bake", 4);
+        ShadowLooper.idleMainLooper(DELAY_MS);
+
+        assertEquals(1, draftTracker.getWriteCount());
+    }
+
+    @Test
+    public void save_revertedEditCancelsHeldBackSave() throws Exception {
+        draftTracker.save("Apple Tart", "- Apple", "1. Bake", 3);
+        draftTracker.save("Apple Pie", "- Apple", "1. Bake", 3);
+        ShadowLooper.idleMainLooper(DELAY_MS);
+
+        assertEquals(0, draftTracker.getWriteCount());
+    }
+
+    @Test
+    public void hash_keepsFieldsApart() throws Exception {
+        assertNotEquals(DraftTracker.hash("ab", "c", "", 1), DraftTracker.hash("a", "bc", "", 1));
+        assertNotEquals(DraftTracker.hash("a", "b", "c", 1), DraftTracker.hash("a", "b", "c", 2));
+        assertEquals(DraftTracker.hash("a", "b", "c", 1), DraftTracker.hash("a", "b", "c", 1));
+    }
+}
@@ -0,0 +1,205 @@
+package com.alkathirikhalid.recipeapp;
+
+import android.database.Cursor;
+import android.widget.FrameLayout;
+
+import com.alkathirikhalid.bean.Recipe;
+import com.alkathirikhalid.db.RecipeChange;
+import com.alkathirikhalid.db.RecipeChangeNotifier;
+import com.alkathirikhalid.db.RecipeDBAdaptor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recipe Page Adapter unit test, runs on the development machine (host) against a real SQLite Database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecipePageAdapterTest {
+    private static final int PAGE_SIZE = 10;
+
+    @Test
+    public void applyChanges_keepsPagesInStepWithDatabase() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            List<Recipe> recipes = new ArrayList<Recipe>();
+            for (int i = 0; i < 100; i++) {
+                recipes.add(new Recipe(0, String.format(Locale.US, "Recipe %03d", i), "- Flour", "1. Bake", 3, null));
+            }
+            recipeDBAdaptor.bulkInsert(recipes);
+
+            final RecipePageAdapter adapter = new RecipePageAdapter(RuntimeEnvironment.application, recipeDBAdaptor,
+                    RecipeDBAdaptor.ALL_TYPES, PAGE_SIZE);
+            RecipeChangeNotifier.OnRecipesChangedListener listener = new RecipeChangeNotifier.OnRecipesChangedListener() {
+                @Override
+                public void onRecipesChanged(long sequence, List<RecipeChange> changes) {
+                    adapter.applyChanges(sequence, changes);
+                }
+            };
+            RecipeChangeNotifier.getInstance().addListener(listener);
+            try {
+                // Scroll far enough for the first pages to be evicted
+                FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+                for (int i = 0; i < 80; i++) {
+                    adapter.getView(i, null, parent);
+                }
+                assertTrue(adapter.getCount() >= 80);
+                assertShown(recipeDBAdaptor, adapter, RecipeDBAdaptor.ALL_TYPES);
+
+                // Into an evicted page
+                long inserted = recipeDBAdaptor.createRecipe("Recipe 005a", "- Milk", "1. Stir", 3);
+                assertShown(recipeDBAdaptor, adapter, RecipeDBAdaptor.ALL_TYPES);
+                // Moved from a loaded page to the first one
+                recipeDBAdaptor.updateRecipe(inserted - 40, "Apple Pie", "- Apple", "1. Bake", 3);
+                assertShown(recipeDBAdaptor, adapter, RecipeDBAdaptor.ALL_TYPES);
+                // From an evicted page, then past the last page read
+                recipeDBAdaptor.deleteRecipe(inserted - 95);
+                recipeDBAdaptor.createRecipe("Zucchini Bread", "- Zucchini", "1. Bake", 3);
+                assertShown(recipeDBAdaptor, adapter, RecipeDBAdaptor.ALL_TYPES);
+                // Filtered out lists ignore other types
+                adapter.reset(3);
+                recipeDBAdaptor.createRecipe("Recipe 010a", "- Rice", "1. Boil", 1);
+                assertShown(recipeDBAdaptor, adapter, 3);
+            } finally {
+                RecipeChangeNotifier.getInstance().removeListener(listener);
+            }
+        } finally {
+            recipeDBAdaptor.close();
+        }
+    }
+
+    @Test
+    public void applyChanges_ofRowsAlreadyRead_countsThemOnce() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            List<Recipe> recipes = new ArrayList<Recipe>();
+            for (int i = 0; i < 100; i++) {
+                recipes.add(new Recipe(0, String.format(Locale.US, "Recipe %03d", i), "- Flour", "1. Bake", 3, null));
+            }
+            recipeDBAdaptor.bulkInsert(recipes);
+
+            RecipePageAdapter adapter = new RecipePageAdapter(RuntimeEnvironment.application, recipeDBAdaptor,
+                    RecipeDBAdaptor.ALL_TYPES, PAGE_SIZE);
+            final List<RecipeChange> published = new ArrayList<RecipeChange>();
+            RecipeChangeNotifier.OnRecipesChangedListener listener = new RecipeChangeNotifier.OnRecipesChangedListener() {
+                @Override
+                public void onRecipesChanged(long sequence, List<RecipeChange> changes) {
+                    published.addAll(changes);
+                }
+            };
+            RecipeChangeNotifier.getInstance().addListener(listener);
+            try {
+                FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+                for (int i = 0; i < 80; i++) {
+                    adapter.getView(i, null, parent);
+                }
+                // Committed into an evicted page and a loaded one, the changes are not applied yet
+                long evicted = recipeDBAdaptor.createRecipe("Recipe 005a", "- Milk", "1. Stir", 3);
+                long loaded = recipeDBAdaptor.createRecipe("Recipe 075a", "- Milk", "1. Stir", 3);
+                recipeDBAdaptor.deleteRecipe(evicted - 98);
+                recipeDBAdaptor.deleteRecipe(loaded - 30);
+            } finally {
+                RecipeChangeNotifier.getInstance().removeListener(listener);
+            }
+            assertEquals(4, published.size());
+
+            // Pages read between the commit and the sequence bump already show the rows, as every page does once read again
+            long sequence = RecipeChangeNotifier.getInstance().getSequence() + 1;
+            adapter.applyChanges(sequence, published);
+            adapter.applyChanges(sequence + 1, published);
+            assertShown(recipeDBAdaptor, adapter, RecipeDBAdaptor.ALL_TYPES);
+        } finally {
+            recipeDBAdaptor.close();
+        }
+    }
+
+    @Test
+    public void getItem_inAnyOrder_findsThePageOfThePosition() throws Exception {
+        RecipeDBAdaptor recipeDBAdaptor = new RecipeDBAdaptor(RuntimeEnvironment.application).open();
+        try {
+            List<Recipe> recipes = new ArrayList<Recipe>();
+            for (int i = 0; i < 300; i++) {
+                recipes.add(new Recipe(0, String.format(Locale.US, "Recipe %03d", i), "- Flour", "1. Bake", 3, null));
+            }
+            recipeDBAdaptor.bulkInsert(recipes);
+            RecipePageAdapter adapter = new RecipePageAdapter(RuntimeEnvironment.application, recipeDBAdaptor,
+                    RecipeDBAdaptor.ALL_TYPES, PAGE_SIZE);
+            FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+            for (int i = 0; i < adapter.getCount(); i++) {
+                adapter.getView(i, null, parent);
+            }
+            assertEquals(300, adapter.getCount());
+
+            // Jumps back and forth over evicted pages, then the same after pages before them changed size
+            assertShownInOrder(recipeDBAdaptor, adapter, 7919);
+            RecipeChangeNotifier.OnRecipesChangedListener listener = applying(adapter);
+            RecipeChangeNotifier.getInstance().addListener(listener);
+            try {
+                recipeDBAdaptor.createRecipe("Recipe 000a", "- Milk", "1. Stir", 3);
+                recipeDBAdaptor.createRecipe("Recipe 150a", "- Milk", "1. Stir", 3);
+            } finally {
+                RecipeChangeNotifier.getInstance().removeListener(listener);
+            }
+            assertEquals(302, adapter.getCount());
+            assertShownInOrder(recipeDBAdaptor, adapter, 104729);
+        } finally {
+            recipeDBAdaptor.close();
+        }
+    }
+
+    private static RecipeChangeNotifier.OnRecipesChangedListener applying(final RecipePageAdapter adapter) {
+        return new RecipeChangeNotifier.OnRecipesChangedListener() {
+            @Override
+            public void onRecipesChanged(long sequence, List<RecipeChange> changes) {
+                adapter.applyChanges(sequence, changes);
+            }
+        };
+    }
+
+    /**
+     * Check every position against the Database, visited in the order of a stride coprime to the count
+     */
+    private static void assertShownInOrder(RecipeDBAdaptor recipeDBAdaptor, RecipePageAdapter adapter, int stride) {
+        List<String> expected = new ArrayList<String>();
+        Cursor cursor = recipeDBAdaptor.fetchRecipePage(RecipeDBAdaptor.ALL_TYPES, null, 0, adapter.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                expected.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        int count = adapter.getCount();
+        for (int i = 0, position = 0; i < count; i++, position = (position + stride) % count) {
+            assertEquals(expected.get(position), adapter.getItem(position));
+        }
+    }
+
+    private static void assertShown(RecipeDBAdaptor recipeDBAdaptor, RecipePageAdapter adapter, long typeId) {
+        List<String> expected = new ArrayList<String>();
+        Cursor cursor = recipeDBAdaptor.fetchRecipePage(typeId, null, 0, adapter.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                expected.add(cursor.getString(cursor.getColumnIndexOrThrow(RecipeDBAdaptor.KEY_TITLE)));
+            }
+        } finally {
+            cursor.close();
+        }
+        List<String> shown = new ArrayList<String>();
+        for (int i = 0; i < adapter.getCount(); i++) {
+            shown.add((String) adapter.getItem(i));
+        }
+        assertEquals(expected, shown);
+    }
+}